@@ -34,7 +34,10 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.metamodel.EntityType;
 
 import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
 import org.hibernate.engine.spi.NamedQueryDefinition;
 import org.hibernate.engine.spi.NamedSQLQueryDefinition;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
@@ -43,7 +46,11 @@ import org.hibernate.internal.CriteriaImpl;
 import org.hibernate.internal.SessionImpl;
 import org.hibernate.loader.criteria.CriteriaJoinWalker;
 import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.persister.entity.OuterJoinLoadable;
+import org.hibernate.spatial.SpatialDialect;
+import org.hibernate.type.ManyToOneType;
 
 public final class DataModelUtil {
 
@@ -64,6 +71,80 @@ public final class DataModelUtil {
         return namedQueryDef != null || namedSQLQueryDef != null;
     }
 
+    /**
+     * @param property
+     *        the (component) property path, e.g. {@code geometryEntity.geometry}
+     * @param clazz
+     *        the mapped entity class
+     * @param session
+     *        the session
+     * @return the name of the single column the property is mapped to or {@code null} if the property is not
+     *         mapped to exactly one column
+     */
+    public static String getColumnName(String property, Class<?> clazz, Session session) {
+        EntityPersister persister = getSessionFactory(session).getMetamodel().entityPersister(clazz);
+        if (!(persister instanceof AbstractEntityPersister)) {
+            return null;
+        }
+        try {
+            String[] columns = ((AbstractEntityPersister) persister).getPropertyColumnNames(property);
+            return columns != null && columns.length == 1 ? columns[0] : null;
+        } catch (HibernateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param property
+     *        a many-to-one property of the given entity
+     * @param associatedProperty
+     *        a property of the associated entity
+     * @param tableAlias
+     *        the SQL alias of the associated table within the subquery
+     * @param clazz
+     *        the mapped entity class
+     * @param session
+     *        the session
+     * @return a scalar SQL subquery selecting the associated property of the entity referenced by the row aliased
+     *         {@code {alias}}, or {@code null} if the properties are not mapped to exactly one column each
+     */
+    public static String getAssociatedColumnSubquery(String property, String associatedProperty, String tableAlias,
+            Class<?> clazz, Session session) {
+        String foreignKey = getColumnName(property, clazz, session);
+        EntityPersister persister = getSessionFactory(session).getMetamodel().entityPersister(clazz);
+        if (foreignKey == null || !(persister.getPropertyType(property) instanceof ManyToOneType)) {
+            return null;
+        }
+        String associatedEntity = ((ManyToOneType) persister.getPropertyType(property)).getAssociatedEntityName();
+        EntityPersister associated = getSessionFactory(session).getMetamodel().entityPersister(associatedEntity);
+        if (!(associated instanceof AbstractEntityPersister)) {
+            return null;
+        }
+        AbstractEntityPersister target = (AbstractEntityPersister) associated;
+        try {
+            String[] ids = target.getIdentifierColumnNames();
+            String[] columns = target.getPropertyColumnNames(associatedProperty);
+            if (ids.length != 1 || columns == null || columns.length != 1) {
+                return null;
+            }
+            return "(select " + tableAlias + "." + columns[0]
+                    + " from " + target.getTableName() + " " + tableAlias
+                    + " where " + tableAlias + "." + ids[0] + " = {alias}." + foreignKey + ")";
+        } catch (HibernateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param session
+     *        the session
+     * @return if the session talks to a PostGIS enabled PostgreSQL database
+     */
+    public static boolean isPostgisDialect(Session session) {
+        Dialect dialect = getSessionFactory(session).getJdbcServices().getDialect();
+        return dialect instanceof SpatialDialect && dialect instanceof PostgreSQL81Dialect;
+    }
+
     private static SessionFactoryImplementor getSessionFactory(Session session) {
         return ((SessionImpl) session).getSessionFactory();
     }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+/**
+ * Change marker of a single dataset or a filtered set of datasets. It is derived from the dataset metadata
+ * only and serves as cheap validator for conditional requests. Datasets, or aggregates over datasets, contribute
+ * the fields their outputs depend on (e.g. label, unit, first/last value and the related parameters and their
+ * labels) to a SHA-256 digest, so the tag changes whenever one of these fields changes.
+ */
+public class DatasetChangeMarker {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final byte SEPARATOR = 0x1f;
+
+    private final MessageDigest digest = createDigest();
+
+    private Date firstValueAt;
+
+    private Date lastValueAt;
+
+    private long count;
+
+    private String tag;
+
+    /**
+     * Adds the metadata of a dataset to the marker.
+     *
+     * @param firstValue
+     *        the dataset's first value time, may be {@code null}
+     * @param lastValue
+     *        the dataset's last value time, may be {@code null}
+     * @param fields
+     *        all further fields the dataset outputs depend on
+     */
+    public void add(Date firstValue, Date lastValue, Object... fields) {
+        addAll(1, firstValue, lastValue, fields);
+    }
+
+    /**
+     * Adds the aggregated metadata of several datasets to the marker.
+     *
+     * @param datasets
+     *        the number of aggregated datasets
+     * @param firstValue
+     *        the earliest first value time of the datasets, may be {@code null}
+     * @param lastValue
+     *        the latest last value time of the datasets, may be {@code null}
+     * @param fields
+     *        checksums over all further fields the dataset outputs depend on
+     */
+    public void addAll(long datasets, Date firstValue, Date lastValue, Object... fields) {
+        if (firstValue != null && (firstValueAt == null || firstValue.before(firstValueAt))) {
+            firstValueAt = firstValue;
+        }
+        if (lastValue != null && (lastValueAt == null || lastValue.after(lastValueAt))) {
+            lastValueAt = lastValue;
+        }
+        update(firstValue);
+        update(lastValue);
+        update(datasets);
+        for (Object field : fields) {
+            update(field);
+        }
+        count += datasets;
+        tag = null;
+    }
+
+    public Date getFirstValueAt() {
+        return firstValueAt;
+    }
+
+    public Date getLastValueAt() {
+        return lastValueAt;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return a tag changing whenever one of the added fields changes
+     */
+    public String getTag() {
+        if (tag == null) {
+            try {
+                tag = toHex(((MessageDigest) digest.clone()).digest());
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("Could not create change marker tag.", e);
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * @param variants
+     *        values the rendering of the marked datasets varies with, e.g. query string or requested format
+     * @return a tag changing whenever one of the added fields or one of the given variants changes
+     */
+    public String getTag(String... variants) {
+        MessageDigest variantDigest = createDigest();
+        variantDigest.update(getTag().getBytes(StandardCharsets.UTF_8));
+        for (String variant : variants) {
+            variantDigest.update(SEPARATOR);
+            if (variant != null) {
+                variantDigest.update(variant.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return toHex(variantDigest.digest());
+    }
+
+    private void update(Object field) {
+        String value = field instanceof Date
+                ? Long.toString(((Date) field).getTime())
+                : String.valueOf(field);
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update(SEPARATOR);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Missing " + DIGEST_ALGORITHM + " support.", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+               .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+}
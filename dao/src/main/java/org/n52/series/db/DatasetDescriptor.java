@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.Date;
+
+import org.joda.time.Interval;
+import org.n52.series.db.beans.dataset.DatasetType;
+import org.n52.series.db.beans.dataset.ObservationType;
+import org.n52.series.db.beans.dataset.ValueType;
+
+/**
+ * Compact, read-only descriptor of a dataset holding the attributes data requests need without loading the
+ * dataset entity: its types, its time bounds (as epoch milliseconds) and whether it references other datasets.
+ * A descriptor takes less than 100 bytes.
+ */
+public final class DatasetDescriptor {
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final long id;
+
+    private final DatasetType datasetType;
+
+    private final ObservationType observationType;
+
+    private final ValueType valueType;
+
+    private final long firstValueAt;
+
+    private final long lastValueAt;
+
+    private final boolean referenceValues;
+
+    public DatasetDescriptor(long id,
+                             DatasetType datasetType,
+                             ObservationType observationType,
+                             ValueType valueType,
+                             Date firstValueAt,
+                             Date lastValueAt,
+                             boolean referenceValues) {
+        this.id = id;
+        this.datasetType = datasetType;
+        this.observationType = observationType;
+        this.valueType = valueType;
+        this.firstValueAt = firstValueAt != null ? firstValueAt.getTime() : UNSET;
+        this.lastValueAt = lastValueAt != null ? lastValueAt.getTime() : UNSET;
+        this.referenceValues = referenceValues;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return the time bounds of the dataset's data or {@code null} if unknown
+     */
+    public Interval getBounds() {
+        return firstValueAt != UNSET && lastValueAt != UNSET && firstValueAt <= lastValueAt
+                ? new Interval(firstValueAt, lastValueAt)
+                : null;
+    }
+
+    public boolean hasReferenceValues() {
+        return referenceValues;
+    }
+
+    public DatasetTypesMetadata toDatasetTypesMetadata() {
+        DatasetTypesMetadata metadata = new DatasetTypesMetadata();
+        metadata.setId(Long.toString(id));
+        metadata.setDatasetType(datasetType);
+        metadata.setObservationType(observationType);
+        metadata.setValueType(valueType);
+        return metadata;
+    }
+
+}
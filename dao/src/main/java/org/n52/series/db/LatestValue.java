@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.Objects;
+
+/**
+ * Compact tuple of a dataset's latest observation, i.e. the dataset id, the observation time in epoch
+ * milliseconds and the plain value (a {@link java.math.BigDecimal} for quantities, an {@link Integer} for counts,
+ * a {@link String} for text and category values or a {@link Boolean}).
+ */
+public final class LatestValue {
+
+    private final long datasetId;
+
+    private final long timestamp;
+
+    private final Object value;
+
+    public LatestValue(long datasetId, long timestamp, Object value) {
+        this.datasetId = datasetId;
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    public long getDatasetId() {
+        return datasetId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(datasetId, timestamp, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LatestValue)) {
+            return false;
+        }
+        LatestValue other = (LatestValue) obj;
+        return datasetId == other.datasetId
+                && timestamp == other.timestamp
+                && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public String toString() {
+        return "LatestValue [datasetId=" + datasetId + ", timestamp=" + timestamp + ", value=" + value + "]";
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A cluster of stations falling into the same grid cell, i.e. the number of stations, their centroid and
+ * their bounds. Coordinates are lon/lat.
+ */
+public final class StationCluster {
+
+    private final long count;
+
+    private final Coordinate centroid;
+
+    private final Envelope bounds;
+
+    public StationCluster(long count, Coordinate centroid, Envelope bounds) {
+        this.count = count;
+        this.centroid = centroid;
+        this.bounds = bounds;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the centroid as {@code [lon, lat]}
+     */
+    public double[] getCentroid() {
+        return new double[] {centroid.x, centroid.y};
+    }
+
+    /**
+     * @return the bounds as {@code [minLon, minLat, maxLon, maxLat]}
+     */
+    public double[] getBbox() {
+        return new double[] {bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY()};
+    }
+
+    @Override
+    public String toString() {
+        return "StationCluster{count=" + count + ", centroid=" + centroid + ", bounds=" + bounds + "}";
+    }
+
+}
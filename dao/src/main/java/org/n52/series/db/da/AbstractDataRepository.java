@@ -42,6 +42,8 @@ import org.n52.io.response.DetectionLimitOutput;
 import org.n52.io.response.TimeOutput;
 import org.n52.io.response.dataset.AbstractValue;
 import org.n52.io.response.dataset.Data;
+import org.n52.io.response.dataset.DatasetMetadata;
+import org.n52.series.db.DatasetDescriptor;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.GeometryEntity;
@@ -50,12 +52,17 @@ import org.n52.series.db.beans.parameter.ParameterEntity;
 import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.PrefetchedObservations;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public abstract class AbstractDataRepository<S extends DatasetEntity,
                                              E extends DataEntity<T>,
                                              V extends AbstractValue<?>, T>
         extends SessionAwareRepository implements DataRepository<S, E, V, T> {
 
+    @Autowired(required = false)
+    private DatasetDescriptorRegistry datasetDescriptors;
+
     @Override
     public Data<V> getData(String datasetId, DbQuery dbQuery) {
         Session session = getSession();
@@ -69,13 +76,131 @@ public abstract class AbstractDataRepository<S extends DatasetEntity,
             // if (series.getService() == null) {
             // series.setService(getServiceEntity());
             // }
-            return dbQuery.isExpanded() ? assembleExpandedData(Long.parseLong(datasetId), dbQuery, session)
-                    : assembleData(Long.parseLong(datasetId), dbQuery, session);
+            Long id = Long.parseLong(datasetId);
+            Interval descriptorBounds = getDescriptorBounds(id, dbQuery, session);
+            if (descriptorBounds != null) {
+                // no need to load the dataset
+                if (!dbQuery.isExpanded() || !mayHaveReferenceValues(id, session)) {
+                    dbQuery.setDataBounds(descriptorBounds);
+                }
+                return dbQuery.isExpanded() ? assembleExpandedData(id, dbQuery, session)
+                        : assembleData(id, dbQuery, session);
+            }
+            return assembleWithinDataBounds(id, session.get(DatasetEntity.class, id), dbQuery, session);
         } finally {
             returnSession(session);
         }
     }
 
+    /**
+     * Assembles the data of the given dataset, querying observations only within the dataset's first and last
+     * value times. The bounds are not applied if reference values are requested, as the observations of the
+     * referenced datasets are queried along with the dataset's own.
+     *
+     * @param id
+     *        the dataset id
+     * @param dataset
+     *        the dataset, may be {@code null}
+     * @param dbQuery
+     *        the query
+     * @param session
+     *        the session
+     * @return the data
+     */
+    @SuppressWarnings("unchecked")
+    protected Data<V> assembleWithinDataBounds(Long id, DatasetEntity dataset, DbQuery dbQuery, Session session) {
+        Interval bounds = getDataBounds(dataset);
+        if (bounds != null && !hasReferenceValues(dataset, dbQuery)) {
+            if (isOutOfBounds(dbQuery.getTimespan(), bounds)) {
+                // no observation within the requested timespan, skip querying the observations
+                return assembleOutOfBoundsData((S) dataset, dbQuery, session);
+            }
+            dbQuery.setDataBounds(bounds);
+        }
+        return dbQuery.isExpanded() ? assembleExpandedData(id, dbQuery, session)
+                : assembleData(id, dbQuery, session);
+    }
+
+    /**
+     * Creates the data for a timespan lying entirely before the first or after the last value of the dataset.
+     * The result contains no values, only the outer values if requested.
+     *
+     * @param dataset
+     *        the dataset
+     * @param query
+     *        the query
+     * @param session
+     *        the session
+     * @return the data without values
+     */
+    protected Data<V> assembleOutOfBoundsData(S dataset, DbQuery query, Session session) {
+        Data<V> result = new Data<>();
+        if (query.expandWithNextValuesBeyondInterval()) {
+            DatasetMetadata<V> metadata = new DatasetMetadata<>();
+            if (query.getTimespan().getStart().isAfter(new DateTime(dataset.getLastValueAt()))) {
+                metadata.setValueBeforeTimespan(getLastValue(dataset, session, query));
+            } else {
+                metadata.setValueAfterTimespan(getFirstValue(dataset, session, query));
+            }
+            result.setMetadata(metadata);
+        }
+        return result;
+    }
+
+    /**
+     * Determines the data bounds from the dataset descriptor. As the descriptor's last value time may be
+     * outdated, the descriptor is only used if the requested timespan ends within its bounds. Otherwise the dataset
+     * is loaded, so that a timespan after the last value is detected on the current last value time.
+     *
+     * @return the data bounds or {@code null} if the dataset has to be loaded to decide
+     */
+    Interval getDescriptorBounds(Long id, DbQuery query, Session session) {
+        DatasetDescriptor descriptor = datasetDescriptors != null
+                ? datasetDescriptors.get(id, session)
+                : null;
+        Interval bounds = descriptor != null
+                ? descriptor.getBounds()
+                : null;
+        Interval timespan = query.getTimespan();
+        if (bounds == null || timespan.getEnd().isBefore(bounds.getStart())
+                || timespan.getEnd().isAfter(bounds.getEnd())) {
+            return null;
+        }
+        return bounds;
+    }
+
+    /**
+     * @return {@code false} only if the dataset's descriptor tells that it references no other datasets
+     */
+    protected boolean mayHaveReferenceValues(Long id, Session session) {
+        return datasetDescriptors == null || datasetDescriptors.mayHaveReferenceValues(id, session);
+    }
+
+    public DatasetDescriptorRegistry getDatasetDescriptors() {
+        return datasetDescriptors;
+    }
+
+    public void setDatasetDescriptors(DatasetDescriptorRegistry datasetDescriptors) {
+        this.datasetDescriptors = datasetDescriptors;
+    }
+
+    private Interval getDataBounds(DatasetEntity dataset) {
+        if (dataset == null || !dataset.isSetFirstValueAt() || !dataset.isSetLastValueAt()
+                || dataset.getFirstValueAt().after(dataset.getLastValueAt())) {
+            return null;
+        }
+        return new Interval(new DateTime(dataset.getFirstValueAt()), new DateTime(dataset.getLastValueAt()));
+    }
+
+    private boolean isOutOfBounds(Interval timespan, Interval bounds) {
+        return timespan.getEnd().isBefore(bounds.getStart()) || timespan.getStart().isAfter(bounds.getEnd());
+    }
+
+    private boolean hasReferenceValues(DatasetEntity dataset, DbQuery query) {
+        // reference values may have data within the timespan
+        return query.isExpanded() && dataset.getReferenceValues() != null && !dataset.getReferenceValues().isEmpty();
+    }
+
     protected Data<V> assembleExpandedData(S dataset, DbQuery dbQuery, Session session) {
         return assembleExpandedData(dataset.getId(), dbQuery, session);
     }
@@ -98,15 +223,27 @@ public abstract class AbstractDataRepository<S extends DatasetEntity,
 
     @Override
     public V getFirstValue(S entity, Session session, DbQuery query) {
-        DataEntity<?> value = entity.getFirstObservation() != null ? entity.getFirstObservation()
-                : entity.isSetFirstValueAt() ? createDataDao(session).getDataValueViaTimestart(entity, query) : null;
+        PrefetchedObservations prefetched = query.getPrefetchedObservations();
+        DataEntity<?> value = entity.getFirstObservation();
+        if (value == null && prefetched != null) {
+            value = prefetched.getFirst(entity.getId());
+        }
+        if (value == null && entity.isSetFirstValueAt()) {
+            value = createDataDao(session).getDataValueViaTimestart(entity, query);
+        }
         return value != null ? assembleDataValue(unproxy(value, session), entity, query) : null;
     }
 
     @Override
     public V getLastValue(S entity, Session session, DbQuery query) {
-        DataEntity<?> value = entity.getLastObservation() != null ? entity.getLastObservation()
-                : entity.isSetLastValueAt() ? createDataDao(session).getDataValueViaTimeend(entity, query) : null;
+        PrefetchedObservations prefetched = query.getPrefetchedObservations();
+        DataEntity<?> value = entity.getLastObservation();
+        if (value == null && prefetched != null) {
+            value = prefetched.getLast(entity.getId());
+        }
+        if (value == null && entity.isSetLastValueAt()) {
+            value = createDataDao(session).getDataValueViaTimeend(entity, query);
+        }
         return value != null ? assembleDataValue(unproxy(value, session), entity, query) : null;
     }
 
@@ -52,7 +52,7 @@ public class CategoryDataRepository
     @Override
     protected Data<CategoryValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<CategoryValue> result = new Data<>();
-        DataDao<CategoryDataEntity> dao = new DataDao<>(session);
+        DataDao<CategoryDataEntity> dao = new DataDao<>(session, CategoryDataEntity.class);
         List<CategoryDataEntity> observations = dao.getAllInstancesFor(dataset, query);
         for (CategoryDataEntity observation : observations) {
             if (observation != null) {
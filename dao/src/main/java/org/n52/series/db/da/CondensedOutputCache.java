@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.io.response.ParameterOutput;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Bounded cache of condensed parameter outputs shared across requests. Condensed outputs only depend on the
+ * entity, the requested locale, the {@code fields} selection, the {@code hrefBase}, the requested CRS and the
+ * geometry resolution, so these dimensions form the cache key. Entries expire after a configurable time to live
+ * and can be dropped explicitly via {@link #invalidateAll()}.
+ *
+ * Cached outputs are shared between requests and must not be modified by callers.
+ */
+public class CondensedOutputCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CondensedOutputCache.class);
+
+    private static final long DEFAULT_MAX_SIZE = 50000;
+
+    private static final long DEFAULT_TTL_SECONDS = 600;
+
+    private static final String CRS = "crs";
+
+    private boolean enabled = true;
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    private long ttlSeconds = DEFAULT_TTL_SECONDS;
+
+    private volatile Cache<CacheKey, ParameterOutput> cache;
+
+    // identity set of the handed out outputs, weak so that evicted outputs can be collected once unreferenced
+    private final Set<Object> sharedOutputs = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+    public CondensedOutputCache() {
+        this.cache = createCache();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.cache = createCache();
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        this.cache = createCache();
+    }
+
+    /**
+     * Returns the cached condensed output for the given entity or creates (and caches) it via the given
+     * supplier.
+     *
+     * @param <O>
+     *        the output type
+     * @param type
+     *        the type producing the output, used to separate outputs of different creators
+     * @param entity
+     *        the entity to create the output for
+     * @param query
+     *        the query holding locale, fields, hrefBase and CRS
+     * @param supplier
+     *        creates the output on a cache miss
+     * @return the (possibly cached) condensed output
+     */
+    @SuppressWarnings("unchecked")
+    public <O extends ParameterOutput> O get(Class<?> type, DescribableEntity entity, DbQuery query,
+            Supplier<O> supplier) {
+        if (!enabled || entity == null || entity.getId() == null) {
+            return supplier.get();
+        }
+        CacheKey key = new CacheKey(type, entity.getId(), query);
+        ParameterOutput cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (O) cached;
+        }
+        O output = supplier.get();
+        if (output != null) {
+            cache.put(key, output);
+            sharedOutputs.add(output);
+        }
+        return output;
+    }
+
+    /**
+     * @param output
+     *        an output
+     * @return {@code true} if the given instance has been handed out by this cache and thus may be shared between
+     *         requests, e.g. to decide whether its encoding is worth keeping
+     */
+    public boolean isShared(Object output) {
+        return output != null && sharedOutputs.contains(output);
+    }
+
+    /**
+     * Drops all cached outputs, e.g. after the underlying metadata has been changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        sharedOutputs.clear();
+        LOGGER.debug("Condensed output cache invalidated.");
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStatistics() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public void logStatistics() {
+        if (LOGGER.isDebugEnabled()) {
+            CacheStats stats = getStatistics();
+            LOGGER.debug("Condensed output cache: size={}, hits={}, misses={}, hitRate={}, evictions={}", size(),
+                    stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+        }
+    }
+
+    private Cache<CacheKey, ParameterOutput> createCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    static final class CacheKey {
+
+        private final Class<?> type;
+
+        private final Long id;
+
+        private final String locale;
+
+        private final String fields;
+
+        private final String hrefBase;
+
+        private final String crs;
+
+        private final String databaseSrid;
+
+        private final Double resolution;
+
+        private final int hash;
+
+        CacheKey(Class<?> type, Long id, DbQuery query) {
+            IoParameters parameters = query.getParameters();
+            this.type = type;
+            this.id = id;
+            this.locale = query.getLocale();
+            this.fields = parameters.getAsString(Parameters.FILTER_FIELDS);
+            this.hrefBase = query.getHrefBase();
+            this.crs = parameters.getAsString(CRS);
+            this.databaseSrid = query.getDatabaseSridCode();
+            this.resolution = query.getResolution();
+            this.hash = Objects.hash(type, id, locale, fields, hrefBase, crs, databaseSrid, resolution);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return Objects.equals(type, other.type)
+                    && Objects.equals(id, other.id)
+                    && Objects.equals(locale, other.locale)
+                    && Objects.equals(fields, other.fields)
+                    && Objects.equals(hrefBase, other.hrefBase)
+                    && Objects.equals(crs, other.crs)
+                    && Objects.equals(databaseSrid, other.databaseSrid)
+                    && Objects.equals(resolution, other.resolution);
+        }
+
+    }
+
+}
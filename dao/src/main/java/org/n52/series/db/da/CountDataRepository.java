@@ -51,7 +51,7 @@ public class CountDataRepository extends AbstractNumericalDataRepository<CountDa
     @Override
     protected Data<CountValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<CountValue> result = new Data<>();
-        DataDao<CountDataEntity> dao = new DataDao<>(session);
+        DataDao<CountDataEntity> dao = new DataDao<>(session, CountDataEntity.class);
         List<CountDataEntity> observations = dao.getAllInstancesFor(dataset, query);
         for (CountDataEntity observation : observations) {
             if (observation != null) {
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.Session;
+import org.joda.time.Interval;
+import org.n52.series.db.dao.DatasetDao;
+import org.n52.series.db.dao.IntervalIndex;
+import org.n52.series.db.dao.QueryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of the time coverage {@code [firstValueAt, lastValueAt]} of all published datasets. Temporal
+ * dataset filters are answered as a set of dataset ids so that the dataset query itself only has to restrict
+ * on ids. The index is rebuilt lazily once it is older than the configured refresh interval; requests arriving
+ * during a rebuild keep using the previous index.
+ *
+ * The index is disabled by default, as it makes dataset listings honour the {@code timespan} parameter.
+ */
+public class DatasetCoverageIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetCoverageIndex.class);
+
+    private static final long DEFAULT_REFRESH_SECONDS = 300;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private boolean enabled;
+
+    private long refreshSeconds = DEFAULT_REFRESH_SECONDS;
+
+    private int maxIds = QueryUtils.MAX_IN_LIST_IDS;
+
+    private volatile IntervalIndex index;
+
+    private volatile long lastRefresh;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    public void setRefreshSeconds(long refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    /**
+     * @param maxIds
+     *        the maximum number of covered dataset ids passed to the database. Larger results are left to the
+     *        SQL filter on the datasets' first and last value times.
+     */
+    public void setMaxIds(int maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * @param timespan
+     *        the requested timespan
+     * @param session
+     *        the session used to (re)build the index when stale
+     * @return the ids of all datasets having data within the given timespan or {@code null} if all indexed
+     *         datasets have, i.e. if the ids would not narrow a dataset query, or if more than {@code maxIds}
+     *         datasets have
+     */
+    public Set<Long> getDatasetIds(Interval timespan, Session session) {
+        IntervalIndex current = getIndex(session);
+        Set<Long> ids = current.getOverlapping(timespan.getStartMillis(), timespan.getEndMillis());
+        return ids.size() < current.size() && ids.size() <= maxIds
+                ? ids
+                : null;
+    }
+
+    /**
+     * Forces a rebuild of the index on next access, e.g. after datasets have been changed.
+     */
+    public void invalidate() {
+        lastRefresh = 0;
+    }
+
+    private IntervalIndex getIndex(Session session) {
+        IntervalIndex current = index;
+        if (current != null && !isStale()) {
+            return current;
+        }
+        if (current == null) {
+            // nothing to fall back on, wait for the first build
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            return current;
+        }
+        try {
+            if (index == null || isStale()) {
+                index = build(session);
+                lastRefresh = System.currentTimeMillis();
+            }
+            return index;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean isStale() {
+        return System.currentTimeMillis() - lastRefresh > TimeUnit.SECONDS.toMillis(refreshSeconds);
+    }
+
+    private IntervalIndex build(Session session) {
+        long start = System.currentTimeMillis();
+        List<Object[]> coverage = new DatasetDao<>(session).getTimeCoverage();
+        IntervalIndex.Builder builder = IntervalIndex.builder();
+        for (Object[] tuple : coverage) {
+            Long id = (Long) tuple[0];
+            Date firstValueAt = (Date) tuple[1];
+            Date lastValueAt = (Date) tuple[2];
+            if (id != null && firstValueAt != null && lastValueAt != null) {
+                builder.add(id, firstValueAt.getTime(), lastValueAt.getTime());
+            }
+        }
+        IntervalIndex built = builder.build();
+        LOGGER.debug("Building coverage index of {} datasets takes {} ms", built.size(),
+                System.currentTimeMillis() - start);
+        return built;
+    }
+
+}
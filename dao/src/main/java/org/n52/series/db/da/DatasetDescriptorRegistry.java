@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.Session;
+import org.n52.series.db.DatasetDescriptor;
+import org.n52.series.db.dao.DatasetDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrent map of compact {@link DatasetDescriptor}s of all published datasets. The descriptors are loaded in
+ * bulk on first access and reloaded once older than the configured refresh interval. Datasets published in
+ * between are loaded on demand. Ids not denoting a published dataset are remembered until the next reload, so
+ * that repeated requests for them do not hit the database.
+ *
+ * Descriptors may lag behind the database for up to the refresh interval. Callers must not rely on the last
+ * value time, as new data may have arrived in the meantime. Data inserted before the first value time becomes
+ * visible after the next refresh.
+ */
+public class DatasetDescriptorRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetDescriptorRegistry.class);
+
+    private static final long DEFAULT_REFRESH_SECONDS = 600;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private boolean enabled;
+
+    private long refreshSeconds = DEFAULT_REFRESH_SECONDS;
+
+    private volatile Map<Long, DatasetDescriptor> descriptors;
+
+    private volatile Set<Long> unknown = ConcurrentHashMap.newKeySet();
+
+    private volatile long lastRefresh;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    public void setRefreshSeconds(long refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    /**
+     * @param id
+     *        the dataset id
+     * @param session
+     *        the session used to load missing descriptors
+     * @return the descriptor or {@code null} if disabled or no published dataset exists with the given id
+     */
+    public DatasetDescriptor get(Long id, Session session) {
+        if (!enabled || id == null) {
+            return null;
+        }
+        return getAll(Collections.singleton(id), session).get(id);
+    }
+
+    /**
+     * @param ids
+     *        the dataset ids
+     * @param session
+     *        the session used to load missing descriptors
+     * @return the descriptors of the given datasets, unknown datasets are missing in the result
+     */
+    public Map<Long, DatasetDescriptor> getAll(Collection<Long> ids, Session session) {
+        if (!enabled) {
+            return Collections.emptyMap();
+        }
+        Map<Long, DatasetDescriptor> current = getDescriptors(session);
+        Set<Long> currentUnknown = unknown;
+        Map<Long, DatasetDescriptor> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            DatasetDescriptor descriptor = current.get(id);
+            if (descriptor != null) {
+                result.put(id, descriptor);
+            } else if (!currentUnknown.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (DatasetDescriptor descriptor : new DatasetDao<>(session).getDescriptors(missing)) {
+                current.put(descriptor.getId(), descriptor);
+                result.put(descriptor.getId(), descriptor);
+            }
+            missing.stream()
+                   .filter(id -> !result.containsKey(id))
+                   .forEach(currentUnknown::add);
+        }
+        return result;
+    }
+
+    /**
+     * @param id
+     *        the dataset id
+     * @param session
+     *        the session used to load a missing descriptor
+     * @return {@code false} only if the dataset is known to reference no other datasets
+     */
+    public boolean mayHaveReferenceValues(Long id, Session session) {
+        DatasetDescriptor descriptor = get(id, session);
+        return descriptor == null || descriptor.hasReferenceValues();
+    }
+
+    /**
+     * Forces a reload of all descriptors on next access, e.g. after datasets have been changed.
+     */
+    public void invalidate() {
+        lastRefresh = 0;
+    }
+
+    public int size() {
+        Map<Long, DatasetDescriptor> current = descriptors;
+        return current != null ? current.size() : 0;
+    }
+
+    private Map<Long, DatasetDescriptor> getDescriptors(Session session) {
+        Map<Long, DatasetDescriptor> current = descriptors;
+        if (current != null && !isStale()) {
+            return current;
+        }
+        if (current == null) {
+            // nothing to fall back on, wait for the first load
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            return current;
+        }
+        try {
+            if (descriptors == null || isStale()) {
+                descriptors = load(session);
+                unknown = ConcurrentHashMap.newKeySet();
+                lastRefresh = System.currentTimeMillis();
+            }
+            return descriptors;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean isStale() {
+        return System.currentTimeMillis() - lastRefresh > TimeUnit.SECONDS.toMillis(refreshSeconds);
+    }
+
+    private Map<Long, DatasetDescriptor> load(Session session) {
+        long start = System.currentTimeMillis();
+        List<DatasetDescriptor> loaded = new DatasetDao<>(session).getDescriptors(null);
+        Map<Long, DatasetDescriptor> map = new ConcurrentHashMap<>(loaded.size() * 4 / 3 + 1);
+        for (DatasetDescriptor descriptor : loaded) {
+            map.put(descriptor.getId(), descriptor);
+        }
+        LOGGER.debug("Loading {} dataset descriptors takes {} ms", map.size(), System.currentTimeMillis() - start);
+        return map;
+    }
+
+}
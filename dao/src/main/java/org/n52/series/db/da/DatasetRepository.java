@@ -31,7 +31,10 @@ package org.n52.series.db.da;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.hibernate.Session;
 import org.n52.io.HrefHelper;
@@ -50,16 +53,23 @@ import org.n52.io.response.dataset.TimeseriesMetadataOutput;
 import org.n52.io.response.dataset.TrajectoryOutput;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataRepositoryTypeFactory;
+import org.n52.series.db.DatasetChangeMarker;
+import org.n52.series.db.DatasetDescriptor;
 import org.n52.series.db.DatasetTypesMetadata;
+import org.n52.series.db.LatestValue;
 import org.n52.series.db.beans.AbstractFeatureEntity;
+import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.OfferingEntity;
 import org.n52.series.db.beans.PhenomenonEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.dataset.ValueType;
+import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DatasetDao;
+import org.n52.series.db.dao.DatasetFilterCompiler;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.PrefetchedObservations;
 import org.n52.series.spi.search.DatasetSearchResult;
 import org.n52.series.spi.search.SearchResult;
 import org.slf4j.Logger;
@@ -81,6 +91,15 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
     @Autowired
     private DataRepositoryTypeFactory dataRepositoryFactory;
 
+    @Autowired(required = false)
+    private DatasetCoverageIndex coverageIndex;
+
+    @Autowired(required = false)
+    private DatasetTypesMetadataCache typesMetadataCache;
+
+    @Autowired(required = false)
+    private DatasetDescriptorRegistry datasetDescriptors;
+
     @Override
     public boolean exists(String id, DbQuery query) {
         Session session = getSession();
@@ -115,6 +134,8 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
     @Override
     public List<DatasetOutput<V>> getAllCondensed(DbQuery query, Session session) {
         List<DatasetOutput<V>> results = new ArrayList<>();
+        addCoveredDatasetIds(query, session);
+        addSpatialFeatureIds(query, session);
         // FilterResolver filterResolver = query.getFilterResolver();
         if (query.getParameters().isMatchDomainIds()) {
             // String valueType = query.getHandleAsValueTypeFallback();
@@ -144,6 +165,37 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
         LOGGER.debug("Processing all condensed instances takes {} ms", System.currentTimeMillis() - start);
     }
 
+    private void addCoveredDatasetIds(DbQuery query, Session session) {
+        IoParameters parameters = query.getParameters();
+        if (coverageIndex == null || !coverageIndex.isEnabled()
+                || !parameters.containsParameter(Parameters.TIMESPAN)) {
+            return;
+        }
+        Set<Long> ids = coverageIndex.getDatasetIds(query.getTimespan(), session);
+        if (ids == null) {
+            // nothing to narrow or too many ids to bind, let the database check the value times
+            query.setCoveredTimespan(query.getTimespan());
+            return;
+        }
+        Set<String> requested = parameters.getDatasets();
+        if (!parameters.isMatchDomainIds() && requested != null && !requested.isEmpty()
+                && requested.stream().allMatch(id -> id.matches("\\d+"))) {
+            // intersect with explicitly requested datasets before hitting the database
+            ids.retainAll(requested.stream()
+                                   .map(Long::parseLong)
+                                   .collect(Collectors.toSet()));
+        }
+        query.setCoveredDatasetIds(ids);
+    }
+
+    public DatasetCoverageIndex getCoverageIndex() {
+        return coverageIndex;
+    }
+
+    public void setCoverageIndex(DatasetCoverageIndex coverageIndex) {
+        this.coverageIndex = coverageIndex;
+    }
+
     private DatasetDao<? extends DatasetEntity> getDatasetDao(Class<? extends DatasetEntity> clazz, Session session) {
         return new DatasetDao<>(session, clazz);
     }
@@ -186,6 +238,8 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
     @Override
     public List<DatasetOutput<V>> getAllExpanded(DbQuery query, Session session) {
         List<DatasetOutput<V>> results = new ArrayList<>();
+        addCoveredDatasetIds(query, session);
+        addSpatialFeatureIds(query, session);
         // FilterResolver filterResolver = query.getFilterResolver();
         if (query.getParameters().isMatchDomainIds()) {
             // String valueType = query.getHandleAsValueTypeFallback();
@@ -206,7 +260,9 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
     private void addExpandedResults(DatasetDao<? extends DatasetEntity> dao, DbQuery query,
             List<DatasetOutput<V>> results, Session session) {
         long start = System.currentTimeMillis();
-        for (DatasetEntity dataset : dao.getAllInstances(query)) {
+        List<? extends DatasetEntity> datasets = dao.getAllInstances(query);
+        PrefetchedObservations.prefetch(datasets, query, session);
+        for (DatasetEntity dataset : datasets) {
             if (dataRepositoryFactory.isKnown(dataset.getObservationType().name(), dataset.getValueType().name())) {
                 try {
                     results.add(createExpanded(dataset, query, session));
@@ -275,8 +331,9 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
         Long id = dataset.getId();
         String hrefBase = query.getHrefBase();
         String domainId = dataset.getIdentifier();
-        String uom = dataset.getUnitI18nName(query.getLocale());
-        String label = createDatasetLabel(dataset, query.getLocale());
+        // avoid loading associations which are not rendered
+        String uom = query.isSelected(DatasetOutput.UOM) ? dataset.getUnitI18nName(query.getLocale()) : null;
+        String label = query.isSelected(ParameterOutput.LABEL) ? createDatasetLabel(dataset, query.getLocale()) : null;
 
         result.setId(id.toString());
         result.setValue(DatasetOutput.UOM, uom, parameters, result::setUom);
@@ -287,9 +344,14 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
         result.setValue(DatasetOutput.OBSERVATION_TYPE, dataset.getObservationType().name(), parameters,
                 result::setObservationType);
         result.setValue(DatasetOutput.VALUE_TYPE, dataset.getValueType().name(), parameters, result::setValueType);
-        result.setValue(DatasetOutput.MOBILE, dataset.isMobile(), parameters, result::setMobile);
-        result.setValue(DatasetOutput.INSITU, dataset.isInsitu(), parameters, result::setInsitu);
-        if (dataset.hasSamplingProfile()) {
+        // not projected by the DAO unless selected, see DatasetDao#isProjectable(DbQuery)
+        if (query.isSelected(DatasetOutput.MOBILE)) {
+            result.setValue(DatasetOutput.MOBILE, dataset.isMobile(), parameters, result::setMobile);
+        }
+        if (query.isSelected(DatasetOutput.INSITU)) {
+            result.setValue(DatasetOutput.INSITU, dataset.isInsitu(), parameters, result::setInsitu);
+        }
+        if (query.isSelected(DatasetOutput.HAS_SAMPLINGS) && dataset.hasSamplingProfile()) {
             result.setValue(DatasetOutput.HAS_SAMPLINGS, dataset.getSamplingProfile().hasSamplings(), parameters,
                     result::setHasSamplings);
         }
@@ -304,8 +366,10 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
         result.setValue(DatasetOutput.SMAPLING_TIME_END,
                 createTimeOutput(dataset.getLastValueAt(), dataset.getOriginTimezone(), parameters), parameters,
                 result::setSamplingTimeEnd);
-        result.setValue(DatasetOutput.FEATURE, getCondensedFeature(dataset.getFeature(), query), parameters,
-                result::setFeature);
+        if (query.isSelected(DatasetOutput.FEATURE)) {
+            result.setValue(DatasetOutput.FEATURE, getCondensedFeature(dataset.getFeature(), query), parameters,
+                    result::setFeature);
+        }
 
         return result;
     }
@@ -436,14 +500,131 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
         this.dataRepositoryFactory = dataRepositoryTypeFactory;
     }
 
+    public DatasetChangeMarker getChangeMarker(String datasetId, IoParameters parameters) {
+        Session session = getSession();
+        try {
+            return getDatasetDao(DatasetEntity.class, session).getChangeMarker(datasetId, getDbQuery(parameters));
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    public DatasetChangeMarker getChangeMarker(IoParameters parameters) {
+        Session session = getSession();
+        try {
+            return getDatasetDao(DatasetEntity.class, session).getChangeMarker(getDbQuery(parameters));
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    /**
+     * @param parameters
+     *        the request parameters filtering the datasets
+     * @return the latest values of all matching datasets of plain value types, projected with a single query per
+     *         value type and chunk of datasets
+     */
+    public List<LatestValue> getLatestValues(IoParameters parameters) {
+        Session session = getSession();
+        try {
+            DbQuery query = getDbQuery(parameters);
+            addCoveredDatasetIds(query, session);
+            Map<ValueType, List<Long>> ids = getDatasetDao(DatasetEntity.class, session).getAllIdsByValueType(query);
+            List<LatestValue> values = new ArrayList<>();
+            for (Map.Entry<ValueType, List<Long>> entry : ids.entrySet()) {
+                Class<? extends DataEntity> entityType = DataDao.getValueEntityClass(entry.getKey());
+                if (entityType != null) {
+                    values.addAll(createDataDao(entityType, session).getLatestValues(entry.getValue()));
+                }
+            }
+            return values;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private <E extends DataEntity> DataDao<E> createDataDao(Class<E> entityType, Session session) {
+        return new DataDao<>(session, entityType);
+    }
+
     public List<DatasetTypesMetadata> getDatasetTypesMetadata(IoParameters parameters) {
+        DbQuery query = getDbQuery(parameters);
+        if (isPlainIdLookup(query) && datasetDescriptors != null && datasetDescriptors.isEnabled()) {
+            return getDescribedTypesMetadata(parameters.getDatasets());
+        }
+        if (!isTypesMetadataCacheable(query)) {
+            return getDatasetTypesMetadata(parameters.getDatasets(), query);
+        }
+        typesMetadataCache.validate(this::getCatalogueSignature);
+        List<DatasetTypesMetadata> metadata =
+                typesMetadataCache.getAll(parameters.getDatasets(), missing -> getDatasetTypesMetadata(missing, query));
+        typesMetadataCache.logStatistics();
+        return metadata;
+    }
+
+    private List<DatasetTypesMetadata> getDatasetTypesMetadata(Collection<String> datasets, DbQuery query) {
         Session session = getSession();
         try {
-            return getDatasetDao(DatasetEntity.class, session).getDatasetTypesMetadata(parameters.getDatasets(),
-                    getDbQuery(parameters));
+            return getDatasetDao(DatasetEntity.class, session).getDatasetTypesMetadata(datasets, query);
         } finally {
             returnSession(session);
         }
     }
 
+    private List<DatasetTypesMetadata> getDescribedTypesMetadata(Collection<String> datasets) {
+        List<Long> ids = datasets.stream()
+                                 .map(Long::parseLong)
+                                 .collect(Collectors.toList());
+        Session session = getSession();
+        try {
+            Map<Long, DatasetDescriptor> descriptors = datasetDescriptors.getAll(ids, session);
+            return ids.stream()
+                      .distinct()
+                      .map(descriptors::get)
+                      .filter(Objects::nonNull)
+                      .map(DatasetDescriptor::toDatasetTypesMetadata)
+                      .collect(Collectors.toList());
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private List<Object> getCatalogueSignature() {
+        Session session = getSession();
+        try {
+            return getDatasetDao(DatasetEntity.class, session).getCatalogueSignature();
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private boolean isTypesMetadataCacheable(DbQuery query) {
+        return typesMetadataCache != null
+                && typesMetadataCache.isEnabled()
+                && isPlainIdLookup(query);
+    }
+
+    private boolean isPlainIdLookup(DbQuery query) {
+        // only plain lookups by id can be answered from caches, filtered lookups may exclude datasets
+        return !query.isMatchDomainIds()
+                && !DatasetFilterCompiler.hasDatasetRestrictions(query)
+                && query.getParameters().getDatasets().stream().allMatch(id -> id.matches("\\d+"));
+    }
+
+    public DatasetDescriptorRegistry getDatasetDescriptors() {
+        return datasetDescriptors;
+    }
+
+    public void setDatasetDescriptors(DatasetDescriptorRegistry datasetDescriptors) {
+        this.datasetDescriptors = datasetDescriptors;
+    }
+
+    public DatasetTypesMetadataCache getTypesMetadataCache() {
+        return typesMetadataCache;
+    }
+
+    public void setTypesMetadataCache(DatasetTypesMetadataCache typesMetadataCache) {
+        this.typesMetadataCache = typesMetadataCache;
+    }
+
 }
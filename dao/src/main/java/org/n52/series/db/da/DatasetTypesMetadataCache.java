@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.n52.series.db.DatasetTypesMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of the {@link DatasetTypesMetadata} per dataset id. The dataset, observation and value type of a
+ * dataset almost never change, so data requests can pick the data repository without querying the dataset
+ * table. Missing entries are loaded in bulk with a single query. Entries expire after a configurable time to
+ * live and can be dropped explicitly via {@link #invalidateAll()}.
+ *
+ * Cached entries skip the published and deleted restrictions of the dataset lookup. Callers therefore have to
+ * {@link #validate(Supplier) validate} the cache against a signature of the published datasets, which drops
+ * all entries once the signature changed. The signature is checked after a configurable interval only.
+ *
+ * Cached metadata is shared between requests and must not be modified by callers.
+ */
+public class DatasetTypesMetadataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetTypesMetadataCache.class);
+
+    private static final long DEFAULT_MAX_SIZE = 100000;
+
+    private static final long DEFAULT_TTL_SECONDS = 3600;
+
+    private static final long DEFAULT_CHECK_SECONDS = 30;
+
+    private boolean enabled;
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    private long ttlSeconds = DEFAULT_TTL_SECONDS;
+
+    private long checkSeconds = DEFAULT_CHECK_SECONDS;
+
+    private volatile Cache<String, DatasetTypesMetadata> cache;
+
+    private volatile List<Object> signature;
+
+    private volatile long lastCheck;
+
+    public DatasetTypesMetadataCache() {
+        this.cache = createCache();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.cache = createCache();
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        this.cache = createCache();
+    }
+
+    public long getCheckSeconds() {
+        return checkSeconds;
+    }
+
+    public void setCheckSeconds(long checkSeconds) {
+        this.checkSeconds = checkSeconds;
+    }
+
+    /**
+     * Drops all cached metadata if the signature of the published datasets changed since the last check. The
+     * signature is only queried if the check interval has elapsed.
+     *
+     * @param currentSignature
+     *        supplies the current signature of the published datasets
+     */
+    public void validate(Supplier<List<Object>> currentSignature) {
+        if (!enabled || System.currentTimeMillis() - lastCheck <= TimeUnit.SECONDS.toMillis(checkSeconds)) {
+            return;
+        }
+        synchronized (this) {
+            if (System.currentTimeMillis() - lastCheck > TimeUnit.SECONDS.toMillis(checkSeconds)) {
+                List<Object> current = currentSignature.get();
+                if (!Objects.equals(signature, current)) {
+                    invalidateAll();
+                    signature = current;
+                }
+                lastCheck = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached metadata of the given datasets and loads all missing ones with a single call of the
+     * given loader.
+     *
+     * @param datasets
+     *        the dataset ids
+     * @param loader
+     *        loads the metadata of the given (missing) dataset ids
+     * @return the metadata of all known datasets in the requested order
+     */
+    public List<DatasetTypesMetadata> getAll(Collection<String> datasets,
+                                             Function<Collection<String>, List<DatasetTypesMetadata>> loader) {
+        if (!enabled) {
+            return loader.apply(datasets);
+        }
+        Set<String> requested = new LinkedHashSet<>(datasets);
+        Map<String, DatasetTypesMetadata> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String dataset : requested) {
+            DatasetTypesMetadata metadata = cache.getIfPresent(dataset);
+            if (metadata != null) {
+                found.put(dataset, metadata);
+            } else {
+                missing.add(dataset);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (DatasetTypesMetadata metadata : loader.apply(missing)) {
+                cache.put(metadata.getId(), metadata);
+                found.put(metadata.getId(), metadata);
+            }
+        }
+        List<DatasetTypesMetadata> result = new ArrayList<>(found.size());
+        for (String dataset : requested) {
+            DatasetTypesMetadata metadata = found.get(dataset);
+            if (metadata != null) {
+                result.add(metadata);
+            }
+        }
+        LOGGER.trace("Dataset types metadata of {} datasets, {} loaded.", requested.size(), missing.size());
+        return result;
+    }
+
+    /**
+     * Drops all cached metadata, e.g. after datasets have been changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        LOGGER.debug("Dataset types metadata cache invalidated.");
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStatistics() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public void logStatistics() {
+        if (LOGGER.isDebugEnabled()) {
+            CacheStats stats = getStatistics();
+            LOGGER.debug("Dataset types metadata cache: size={}, hits={}, misses={}, hitRate={}, evictions={}",
+                         size(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+        }
+    }
+
+    private Cache<String, DatasetTypesMetadata> createCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+}
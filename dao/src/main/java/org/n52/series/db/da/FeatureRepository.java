@@ -28,6 +28,9 @@
  */
 package org.n52.series.db.da;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
@@ -61,6 +64,17 @@ public class FeatureRepository extends HierarchicalParameterRepository<FeatureEn
         return new FeatureDao(session);
     }
 
+    @Override
+    protected List<FeatureEntity> getAllInstances(DbQuery query, Session session) {
+        List<Long> nearest = getNearestFeatureIds(query, session);
+        if (nearest == null) {
+            return super.getAllInstances(query, session);
+        }
+        return nearest.isEmpty()
+                ? new ArrayList<>()
+                : orderByIds(super.getAllInstances(createNearestQuery(query, nearest), session), nearest);
+    }
+
     @Override
     protected FeatureOutput createCondensed(FeatureEntity entity, DbQuery query, Session session) {
         return getCondensedFeature(entity, query);
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.Session;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.dao.FeatureDao;
+import org.n52.series.db.dao.QueryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * In-memory R-tree of the feature envelopes in the database CRS. Bbox filters on features are answered as a set
+ * of feature ids so that queries only have to restrict on ids, which also works on databases without a spatial
+ * index.
+ *
+ * The index is built at startup. It is checked for changes of the feature table after a configurable interval and
+ * rebuilt if the geometry signature of the features changed (see {@link FeatureDao#getGeometrySignature()}), or
+ * once it is older than the configured refresh interval. Requests arriving during a rebuild keep using the previous
+ * index.
+ *
+ * The index is disabled by default, as on databases without an envelope checksum moved features are visible to bbox
+ * filters only after the next refresh.
+ */
+public class FeatureSpatialIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeatureSpatialIndex.class);
+
+    private static final long DEFAULT_CHECK_SECONDS = 30;
+
+    private static final long DEFAULT_REFRESH_SECONDS = 3600;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    @Autowired(required = false)
+    private HibernateSessionStore sessionStore;
+
+    private boolean enabled;
+
+    private long checkSeconds = DEFAULT_CHECK_SECONDS;
+
+    private long refreshSeconds = DEFAULT_REFRESH_SECONDS;
+
+    private int maxIds = QueryUtils.MAX_IN_LIST_IDS;
+
+    private volatile STRtree index;
+
+    private volatile List<Object> signature;
+
+    private volatile long lastCheck;
+
+    private volatile long lastBuild;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getCheckSeconds() {
+        return checkSeconds;
+    }
+
+    public void setCheckSeconds(long checkSeconds) {
+        this.checkSeconds = checkSeconds;
+    }
+
+    public long getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    public void setRefreshSeconds(long refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    /**
+     * @param maxIds
+     *        the maximum number of feature ids passed to the database. Larger results are left to the geometry
+     *        filter.
+     */
+    public void setMaxIds(int maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    public void setSessionStore(HibernateSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    /**
+     * Builds the index at startup if enabled. On failure the index is built on first access.
+     */
+    public void init() {
+        if (!enabled || sessionStore == null) {
+            return;
+        }
+        Session session = null;
+        try {
+            session = sessionStore.getSession();
+            getIndex(session);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build spatial feature index at startup.", e);
+        } finally {
+            if (session != null) {
+                sessionStore.returnSession(session);
+            }
+        }
+    }
+
+    /**
+     * @param envelope
+     *        the requested bbox in the database CRS
+     * @param session
+     *        the session used to (re)build the index when stale
+     * @return the ids of all features whose envelope intersects the given bbox or {@code null} if more than
+     *         {@code maxIds} features do
+     */
+    public Set<Long> getFeatureIds(Envelope envelope, Session session) {
+        STRtree current = getIndex(session);
+        Set<Long> ids = new HashSet<>();
+        current.query(envelope, item -> ids.add((Long) item));
+        return ids.size() <= maxIds
+                ? ids
+                : null;
+    }
+
+    /**
+     * Forces a rebuild of the index on next access, e.g. after features have been changed.
+     */
+    public void invalidate() {
+        lastCheck = 0;
+        lastBuild = 0;
+    }
+
+    private STRtree getIndex(Session session) {
+        STRtree current = index;
+        if (current != null && !isElapsed(lastCheck, checkSeconds)) {
+            return current;
+        }
+        if (current == null) {
+            // nothing to fall back on, wait for the first build
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            return current;
+        }
+        try {
+            if (index == null || isElapsed(lastCheck, checkSeconds)) {
+                List<Object> currentSignature = getSignature(session);
+                if (index == null
+                        || !Objects.equals(signature, currentSignature)
+                        || isElapsed(lastBuild, refreshSeconds)) {
+                    index = build(getGeometries(session));
+                    signature = currentSignature;
+                    lastBuild = System.currentTimeMillis();
+                }
+                lastCheck = System.currentTimeMillis();
+            }
+            return index;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean isElapsed(long since, long seconds) {
+        return System.currentTimeMillis() - since > TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    protected List<Object> getSignature(Session session) {
+        return new FeatureDao(session).getGeometrySignature();
+    }
+
+    protected List<Object[]> getGeometries(Session session) {
+        return new FeatureDao(session).getAllGeometries();
+    }
+
+    private STRtree build(List<Object[]> features) {
+        long start = System.currentTimeMillis();
+        STRtree built = new STRtree();
+        for (Object[] tuple : features) {
+            Long id = (Long) tuple[0];
+            GeometryEntity geometryEntity = (GeometryEntity) tuple[1];
+            if (id != null && geometryEntity != null && geometryEntity.isSetGeometry()) {
+                Geometry geometry = geometryEntity.getGeometry();
+                if (geometry != null && !geometry.isEmpty()) {
+                    built.insert(geometry.getEnvelopeInternal(), id);
+                }
+            }
+        }
+        // build eagerly, so the tree is read-only once shared between requests
+        built.build();
+        LOGGER.debug("Building spatial index of {} features takes {} ms", built.size(),
+                System.currentTimeMillis() - start);
+        return built;
+    }
+
+}
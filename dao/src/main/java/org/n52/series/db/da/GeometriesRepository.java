@@ -31,14 +31,21 @@ package org.n52.series.db.da;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
 import org.n52.io.geojson.GeoJSONFeature;
+import org.n52.io.request.FilterResolver;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.io.response.GeometryOutput;
@@ -48,13 +55,15 @@ import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.FeatureEntity;
 import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.FeatureDao;
+import org.n52.series.db.dao.PlatformDao;
 import org.n52.series.db.dao.SamplingGeometryDao;
 import org.n52.series.spi.search.SearchResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 
 public class GeometriesRepository extends SessionAwareRepository implements OutputAssembler<GeometryOutput> {
 
@@ -64,9 +73,6 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
 
     private static final String NAMED_QUERY_PARAMETER_FEATURE_ID = "featureid";
 
-    @Autowired
-    private PlatformRepository platformRepository;
-
     private FeatureDao createFeatureDao(Session session) {
         return new FeatureDao(session);
     }
@@ -151,25 +157,13 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
     private List<GeometryOutput> getAllInstances(DbQuery query, Session session, boolean expanded)
             throws DataAccessException {
         List<GeometryOutput> geometries = new ArrayList<>();
-        // final FilterResolver filterResolver = query.getFilterResolver();
-        // if (filterResolver.shallIncludeInsituDatasets()) {
-        // if (filterResolver.shallIncludePlatformGeometriesSite()) {
-        // geometries.addAll(getAllSites(query, session, expanded));
-        // }
-        // if (filterResolver.shallIncludePlatformGeometriesTrack()) {
-        // geometries.addAll(getAllTracks(query, session, expanded));
-        // }
-        // }
-        // if (filterResolver.shallIncludeRemoteDatasets()) {
-        // if (filterResolver.shallIncludeObservedGeometriesStatic()) {
-        // geometries.addAll(getAllObservedGeometriesStatic(query, session,
-        // expanded));
-        // }
-        // if (filterResolver.shallIncludeObservedGeometriesDynamic()) {
-        // geometries.addAll(getAllObservedGeometriesDynamic(query, session,
-        // expanded));
-        // }
-        // }
+        FilterResolver filterResolver = query.getParameters().getFilterResolver();
+        if (!filterResolver.hasMobileFilter() || !filterResolver.isMobileFilter()) {
+            geometries.addAll(getAllSites(query, session, expanded));
+        }
+        if (!filterResolver.hasMobileFilter() || filterResolver.isMobileFilter()) {
+            geometries.addAll(getAllTracks(query, session, expanded));
+        }
         return geometries;
     }
 
@@ -179,7 +173,7 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         FeatureEntity featureEntity = getFeatureEntity(geometryId, parameters, session);
         if (featureEntity != null) {
             if (GeometryType.isSiteId(id)) {
-                return createSite(featureEntity, parameters, true);
+                return createSite(featureEntity, parameters, true, session);
             } else if (GeometryType.isTrackId(id)) {
                 return createTrack(featureEntity, parameters, true, session);
             }
@@ -199,40 +193,83 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         FeatureDao dao = createFeatureDao(session);
         DbQuery siteQuery =
                 dbQueryFactory.createFrom(parameters.getParameters().replaceWith(Parameters.FILTER_MOBILE, "false"));
-        for (FeatureEntity featureEntity : dao.getAllInstances(siteQuery)) {
-            GeometryOutput geometryInfo = createSite(featureEntity, parameters, expanded);
-            if (geometryInfo != null) {
-                geometryInfoList.add(geometryInfo);
+        List<Object[]> sites = dao.getGeometries(siteQuery);
+        Map<Long, PlatformOutput> platforms = getPlatforms(getFeatureIds(sites), parameters, session);
+        for (Object[] row : sites) {
+            Long featureId = (Long) row[0];
+            GeometryOutput geometryInfo =
+                    createGeometryInfo(GeometryType.PLATFORM_SITE, featureId, platforms.get(featureId), parameters);
+            if (expanded) {
+                addGeometry(geometryInfo, featureId, (GeometryEntity) row[1], parameters);
             }
+            geometryInfoList.add(geometryInfo);
         }
         return geometryInfoList;
     }
 
-    private GeometryOutput createSite(FeatureEntity entity, DbQuery query, boolean expanded)
+    private GeometryOutput createSite(FeatureEntity entity, DbQuery query, boolean expanded, Session session)
             throws DataAccessException {
-        GeometryOutput geometryInfo = createGeometryInfo(GeometryType.PLATFORM_SITE, entity, query);
-        return expanded ? addGeometry(geometryInfo, entity, query) : geometryInfo;
+        GeometryOutput geometryInfo = createGeometryInfo(GeometryType.PLATFORM_SITE, entity, query, session);
+        return expanded ? addGeometry(geometryInfo, entity.getId(), entity.getGeometryEntity(), query) : geometryInfo;
     }
 
     private Collection<GeometryOutput> getAllTracks(DbQuery parameters, Session session, boolean expanded)
             throws DataAccessException {
-        List<GeometryOutput> geometryInfoList = new ArrayList<>();
         FeatureDao featureDao = createFeatureDao(session);
         DbQuery trackQuery =
                 dbQueryFactory.createFrom(parameters.getParameters().replaceWith(Parameters.FILTER_MOBILE, "true"));
-        for (FeatureEntity featureEntity : featureDao.getAllInstances(trackQuery)) {
-            geometryInfoList.add(createTrack(featureEntity, parameters, expanded, session));
+        List<Object[]> tracks = featureDao.getGeometries(trackQuery);
+        Map<Long, PlatformOutput> platforms = getPlatforms(getFeatureIds(tracks), parameters, session);
+        Map<Long, GeometryOutput> geometryInfos = new LinkedHashMap<>();
+        List<Long> withoutGeometry = new ArrayList<>();
+        for (Object[] row : tracks) {
+            Long featureId = (Long) row[0];
+            GeometryEntity geometryEntity = (GeometryEntity) row[1];
+            GeometryOutput geometryInfo =
+                    createGeometryInfo(GeometryType.PLATFORM_TRACK, featureId, platforms.get(featureId), parameters);
+            if (expanded) {
+                if (geometryEntity != null && geometryEntity.isSetGeometry()) {
+                    // track available from feature table
+                    addGeometry(geometryInfo, featureId, geometryEntity, parameters);
+                } else {
+                    withoutGeometry.add(featureId);
+                }
+            }
+            geometryInfos.put(featureId, geometryInfo);
         }
-        return geometryInfoList;
+        if (!withoutGeometry.isEmpty()) {
+            // tracks available as points from observation table, built in the database if possible
+            Map<Long, Geometry> trajectories = getTrajectories(withoutGeometry, parameters, session);
+            List<Long> missing = withoutGeometry.stream()
+                                                .filter(id -> !trajectories.containsKey(id))
+                                                .collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                // loaded at once for all remaining features
+                SamplingGeometryDao dao = new SamplingGeometryDao(session);
+                Map<Long, List<GeometryEntity>> samplingGeometries =
+                        dao.getGeometriesOrderedByTimestamp(missing, parameters);
+                for (Long featureId : missing) {
+                    List<GeometryEntity> points = samplingGeometries.getOrDefault(featureId, Collections.emptyList());
+                    trajectories.put(featureId, createLineString(points, parameters));
+                }
+            }
+            IoParameters ioParameters = parameters.getParameters();
+            for (Long featureId : withoutGeometry) {
+                GeometryOutput geometryInfo = geometryInfos.get(featureId);
+                Geometry lineString = trajectories.get(featureId);
+                geometryInfo.setValue(GeoJSONFeature.GEOMETRY, lineString, ioParameters, geometryInfo::setGeometry);
+            }
+        }
+        return geometryInfos.values();
     }
 
     private GeometryOutput createTrack(FeatureEntity entity, DbQuery query, boolean expanded, Session session)
             throws DataAccessException {
-        GeometryOutput geometryInfo = createGeometryInfo(GeometryType.PLATFORM_TRACK, entity, query);
+        GeometryOutput geometryInfo = createGeometryInfo(GeometryType.PLATFORM_TRACK, entity, query, session);
         if (expanded) {
             if (entity.isSetGeometry()) {
                 // track available from feature table
-                return addGeometry(geometryInfo, entity, query);
+                return addGeometry(geometryInfo, entity.getId(), entity.getGeometryEntity(), query);
             } else {
                 IoParameters parameters = query.getParameters();
                 Geometry lineString = createTrajectory(entity, query, session);
@@ -243,9 +280,10 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         return geometryInfo;
     }
 
-    private GeometryOutput addGeometry(GeometryOutput geometryInfo, FeatureEntity entity, DbQuery query) {
+    private GeometryOutput addGeometry(GeometryOutput geometryInfo, Long featureId, GeometryEntity geometryEntity,
+            DbQuery query) {
         IoParameters parameters = query.getParameters();
-        Geometry geometry = getGeometry(entity.getGeometryEntity(), query);
+        Geometry geometry = getGeometry(featureId, geometryEntity, query);
         geometryInfo.setValue(GeoJSONFeature.GEOMETRY, geometry, parameters, geometryInfo::setGeometry);
         return geometryInfo;
     }
@@ -253,23 +291,32 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
     private Geometry createTrajectory(FeatureEntity featureEntity, DbQuery dbQuery, Session session) {
         String srid = dbQuery.getDatabaseSridCode();
         // track available as points from observation table
-        final List<Coordinate> coordinates = new ArrayList<>();
+        Long featureId = featureEntity.getId();
+        Map<Long, Geometry> trajectories = getTrajectories(Collections.singleton(featureId), dbQuery, session);
+        if (trajectories.containsKey(featureId)) {
+            return trajectories.get(featureId);
+        }
         if (DataModelUtil.isNamedQuerySupported(NAMED_QUERY_GET_SAMPLING_GEOMETRIES_FOR_FEATURE, session)) {
             Query query = session.getNamedQuery(NAMED_QUERY_GET_SAMPLING_GEOMETRIES_FOR_FEATURE);
             query.setLong(NAMED_QUERY_PARAMETER_FEATURE_ID, featureEntity.getId());
-            for (Object entity : query.list()) {
+            List<?> rows = query.list();
+            // packed x/y ordinates instead of a coordinate object per sample
+            double[] ordinates = new double[rows.size() * 2];
+            int index = 0;
+            for (Object entity : rows) {
                 Object[] row = (Object[]) entity;
                 // phenomenonTime is needed for ordering only
                 // Date phenomenonTime = (Date) row[0];
                 if (row.length > 2) {
-                    coordinates.add(new Coordinate((double) row[1], (double) row[2]));
+                    ordinates[index++] = (double) row[1];
+                    ordinates[index++] = (double) row[2];
                 } else {
-                    Geometry geom = (Geometry) row[1];
-                    coordinates.add(geom.getCoordinate());
+                    Coordinate coordinate = ((Geometry) row[1]).getCoordinate();
+                    ordinates[index++] = coordinate.x;
+                    ordinates[index++] = coordinate.y;
                 }
             }
-            Coordinate[] points = coordinates.toArray(new Coordinate[0]);
-            return getCrsUtils().createLineString(points, srid);
+            return simplify(PackedGeometries.createLineString(ordinates, srid), dbQuery);
         } else {
             // when named query not configured --> bad performance
             final SamplingGeometryDao dao = new SamplingGeometryDao(session);
@@ -281,12 +328,51 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
     }
 
     private Geometry createLineString(List<GeometryEntity> samplingGeometries, DbQuery query) {
-        List<Coordinate> coordinates = new ArrayList<>();
+        double[] ordinates = new double[samplingGeometries.size() * 2];
+        int index = 0;
         for (GeometryEntity geometryEntity : samplingGeometries) {
-            Point geometry = (Point) getGeometry(geometryEntity, query);
-            coordinates.add(geometry.getCoordinate());
+            // read in the database CRS, the line gets transformed as a whole instead of a point per sample
+            Point geometry = (Point) geometryEntity.getGeometry();
+            ordinates[index++] = geometry.getX();
+            ordinates[index++] = geometry.getY();
         }
-        return getCrsUtils().createLineString(coordinates.toArray(new Coordinate[0]), query.getDatabaseSridCode());
+        String srid = query.getDatabaseSridCode();
+        Geometry line = transformToInner(query, PackedGeometries.createLineString(ordinates, srid));
+        return simplify(PackedGeometries.toLineString(line, srid), query);
+    }
+
+    private Geometry simplify(Geometry lineString, DbQuery query) {
+        Double resolution = query.getResolution();
+        return resolution != null
+                ? TopologyPreservingSimplifier.simplify(lineString, resolution)
+                : lineString;
+    }
+
+    /**
+     * Builds the trajectories of the given features in the database (simplified to the requested resolution).
+     *
+     * @param featureIds
+     *        the feature ids
+     * @param query
+     *        the query
+     * @param session
+     *        the session
+     * @return the trajectories per feature id, empty if the database cannot build them
+     */
+    private Map<Long, Geometry> getTrajectories(Collection<Long> featureIds, DbQuery query, Session session) {
+        SamplingGeometryDao dao = new SamplingGeometryDao(session);
+        Map<Long, byte[]> wkbs = dao.getTrajectories(featureIds, query.getResolution(), query);
+        Map<Long, Geometry> trajectories = new HashMap<>();
+        if (wkbs == null) {
+            return trajectories;
+        }
+        String srid = query.getDatabaseSridCode();
+        for (Map.Entry<Long, byte[]> wkb : wkbs.entrySet()) {
+            // decoded into packed ordinates right away
+            Geometry line = getGeometry(wkb.getValue(), PackedGeometries.getFactory(srid), query);
+            trajectories.put(wkb.getKey(), PackedGeometries.toLineString(line, srid));
+        }
+        return trajectories;
     }
 
     private Collection<GeometryOutput> getAllObservedGeometriesStatic(DbQuery parameters, Session session,
@@ -309,27 +395,67 @@ public class GeometriesRepository extends SessionAwareRepository implements Outp
         return null;
     }
 
-    private GeometryOutput createGeometryInfo(GeometryType type, FeatureEntity featureEntity, DbQuery query)
-            throws DataAccessException {
+    private GeometryOutput createGeometryInfo(GeometryType type, FeatureEntity entity, DbQuery query,
+                                              Session session) {
+        Long featureId = entity.getId();
+        Map<Long, PlatformOutput> platforms = getPlatforms(Collections.singleton(featureId), query, session);
+        return createGeometryInfo(type, featureId, platforms.get(featureId), query);
+    }
+
+    private GeometryOutput createGeometryInfo(GeometryType type, Long featureId, PlatformOutput platform,
+                                              DbQuery query) {
         GeometryOutput geometryInfo = new GeometryOutput();
-        PlatformOutput platform = getPlatfom(featureEntity, query);
         String hrefBase = query.getHrefBase();
 
         IoParameters parameters = query.getParameters();
-        geometryInfo.setId(Long.toString(featureEntity.getId()));
+        geometryInfo.setId(Long.toString(featureId));
         geometryInfo.setValue(GeometryOutput.GEOMETRY_TYPE, type, parameters, geometryInfo::setGeometryType);
         geometryInfo.setValue(GeometryOutput.PROPERTIES, platform, parameters, geometryInfo::setPlatform);
         geometryInfo.setValue(GeometryOutput.PROPERTIES, hrefBase, parameters, geometryInfo::setHrefBase);
         return geometryInfo;
     }
 
-    private PlatformOutput getPlatfom(FeatureEntity entity, DbQuery parameters) throws DataAccessException {
-        DbQuery platformQuery = dbQueryFactory
-                .createFrom(parameters.getParameters().extendWith(Parameters.FEATURES, String.valueOf(entity.getId()))
-                        .removeAllOf(Parameters.FILTER_FIELDS));
+    private List<Long> getFeatureIds(List<Object[]> rows) {
+        return rows.stream()
+                   .map(row -> (Long) row[0])
+                   .collect(Collectors.toList());
+    }
 
-        List<PlatformOutput> platforms = platformRepository.getAllCondensed(platformQuery);
-        return platforms.iterator().next();
+    /**
+     * Resolves the platforms of all given features at once, i.e. with one query for the feature/platform
+     * relations of the datasets and one for the platforms themselves.
+     *
+     * @param featureIds
+     *        the feature ids
+     * @param query
+     *        the query
+     * @param session
+     *        the session
+     * @return the condensed platform per feature id
+     */
+    private Map<Long, PlatformOutput> getPlatforms(Collection<Long> featureIds, DbQuery query, Session session) {
+        Map<Long, PlatformOutput> platforms = new HashMap<>();
+        if (featureIds.isEmpty()) {
+            return platforms;
+        }
+        DbQuery platformQuery = dbQueryFactory.createFrom(query.getParameters()
+                                                               .removeAllOf(Parameters.FEATURES)
+                                                               .removeAllOf(Parameters.FILTER_FIELDS));
+        List<Object[]> featurePlatforms = new DatasetDao<>(session).getPlatformIdsByFeature(featureIds);
+        Set<Long> platformIds = featurePlatforms.stream()
+                                                .map(row -> (Long) row[1])
+                                                .collect(Collectors.toSet());
+        Map<Long, PlatformOutput> outputs = new HashMap<>();
+        for (PlatformEntity platform : new PlatformDao(session).getInstances(platformIds, platformQuery)) {
+            outputs.put(platform.getId(), getCondensedPlatform(platform, platformQuery));
+        }
+        for (Object[] row : featurePlatforms) {
+            PlatformOutput platform = outputs.get(row[1]);
+            if (platform != null) {
+                platforms.putIfAbsent((Long) row[0], platform);
+            }
+        }
+        return platforms;
     }
 
 }
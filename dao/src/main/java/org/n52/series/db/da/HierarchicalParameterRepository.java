@@ -67,7 +67,7 @@ public abstract class HierarchicalParameterRepository<E extends HierarchicalEnti
         long start = System.currentTimeMillis();
         if (entities != null) {
             LOGGER.debug("Condensed entities raw: " + entities.size());
-            List<O> result = entities.parallelStream().map(entity -> createCondensed(entity, query, session))
+            List<O> result = entities.parallelStream().map(entity -> createCachedCondensed(entity, query, session))
                     .filter(Objects::nonNull).collect(Collectors.toList());
             LOGGER.debug("Condensed entities processed: " + result.size());
             LOGGER.debug("Processing all condensed instances takes {} ms", System.currentTimeMillis() - start);
@@ -28,12 +28,22 @@
  */
 package org.n52.series.db.da;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.hibernate.Session;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.CategoryOutput;
 import org.n52.io.response.FeatureOutput;
@@ -43,7 +53,6 @@ import org.n52.io.response.dataset.DatasetOutput;
 import org.n52.io.response.sampling.MeasuringProgramOutput;
 import org.n52.io.response.sampling.ProducerOutput;
 import org.n52.io.response.sampling.SamplingOutput;
-import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.sampling.MeasuringProgramEntity;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.MeasuringProgramDao;
@@ -51,9 +60,28 @@ import org.n52.series.db.dao.SearchableDao;
 import org.n52.series.spi.search.MeasuringProgramSearchResult;
 import org.n52.series.spi.search.SearchResult;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 public class MeasuringProgramRepository extends ParameterRepository<MeasuringProgramEntity, MeasuringProgramOutput>
         implements OutputAssembler<MeasuringProgramOutput> {
 
+    // lon/lat in XY axis order, the inner CRS of CRSUtils
+    private static final GeometryFactory INNER_GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private static final long OBSERVED_AREAS_MAX_SIZE = 10000;
+
+    // bounds how long moved feature geometries go unnoticed, the signature only covers the datasets and features
+    private static final long OBSERVED_AREAS_TTL_SECONDS = 3600;
+
+    private static final long OBSERVED_AREAS_CHECK_MILLIS = 30 * 1000;
+
+    private final Cache<Long, ObservedArea> observedAreas = CacheBuilder.newBuilder()
+                                                                        .maximumSize(OBSERVED_AREAS_MAX_SIZE)
+                                                                        .expireAfterWrite(OBSERVED_AREAS_TTL_SECONDS,
+                                                                                          TimeUnit.SECONDS)
+                                                                        .build();
+
     @Override
     protected MeasuringProgramOutput prepareEmptyParameterOutput() {
         return new MeasuringProgramOutput();
@@ -89,11 +117,28 @@ public class MeasuringProgramRepository extends ParameterRepository<MeasuringPro
                 getMeasuringtimeEnd(measuringProgram, parameters), parameters, result::setMeasuringProgramTimeEnd);
         result.setValue(MeasuringProgramOutput.PRODUCER,
                 getCondensedProducer(measuringProgram.getProducer(), parameters), parameters, result::setProducer);
-        result.setValue(MeasuringProgramOutput.OBSERVED_AREA, getObservedArea(measuringProgram, query), parameters,
-                result::setObservedArea);
+        result.setValue(MeasuringProgramOutput.OBSERVED_AREA,
+                query.isSelected(MeasuringProgramOutput.OBSERVED_AREA)
+                        ? getObservedArea(measuringProgram, query, session)
+                        : null,
+                parameters, result::setObservedArea);
         return result;
     }
 
+    @Override
+    protected List<MeasuringProgramOutput> createCondensed(Collection<MeasuringProgramEntity> allInstances,
+            DbQuery query, Session session) {
+        checkObservedAreas(allInstances, query, session);
+        return super.createCondensed(allInstances, query, session);
+    }
+
+    @Override
+    protected List<MeasuringProgramOutput> createExpanded(Collection<MeasuringProgramEntity> allInstances,
+            DbQuery query, Session session) {
+        checkObservedAreas(allInstances, query, session);
+        return super.createExpanded(allInstances, query, session);
+    }
+
     private TimeOutput getMeasuringtimeEnd(MeasuringProgramEntity measuringProgram, IoParameters parameters) {
         if (measuringProgram.isSetMeasuringTimeEnd()) {
             return createTimeOutput(measuringProgram.getMeasuringTimeStart(), parameters);
@@ -163,21 +208,87 @@ public class MeasuringProgramRepository extends ParameterRepository<MeasuringPro
         return null;
     }
 
-    private Geometry getObservedArea(MeasuringProgramEntity measuringProgram, DbQuery query) {
-        Geometry observedArea = null;
-        if (measuringProgram.hasDatasets()) {
-            for (DatasetEntity dataset : measuringProgram.getDatasets()) {
-                if (dataset.isSetFeature() && dataset.getFeature().isSetGeometry()) {
-                    Geometry featureGeometry = createGeometry(dataset.getFeature(), query);
-                    if (observedArea == null) {
-                        observedArea = featureGeometry;
-                    } else {
-                        observedArea.getEnvelopeInternal().expandToInclude(featureGeometry.getEnvelopeInternal());
-                    }
-                }
+    /**
+     * The observed area is the envelope of the features of the program's datasets. It is aggregated in the database
+     * and cached per measuring program until the program's datasets change or the entry expires.
+     */
+    private Geometry getObservedArea(MeasuringProgramEntity measuringProgram, DbQuery query, Session session) {
+        Long id = measuringProgram.getId();
+        ObservedArea observedArea = observedAreas.getIfPresent(id);
+        if (observedArea == null || observedArea.isCheckDue()) {
+            observedArea = checkObservedAreas(Collections.singleton(id), session).get(id);
+        }
+        Envelope area = observedArea.envelope;
+        if (area == null) {
+            return null;
+        }
+        Coordinate[] corners = transformToInner(query,
+                                                new Coordinate(area.getMinX(), area.getMinY()),
+                                                new Coordinate(area.getMaxX(), area.getMaxY()));
+        return INNER_GEOMETRY_FACTORY.toGeometry(new Envelope(corners[0], corners[1]));
+    }
+
+    /**
+     * Checks the cached observed areas of a listing with a single signature query instead of one per program.
+     */
+    private void checkObservedAreas(Collection<MeasuringProgramEntity> measuringPrograms, DbQuery query,
+            Session session) {
+        if (query.isSelected(MeasuringProgramOutput.OBSERVED_AREA)) {
+            Set<Long> due = measuringPrograms.stream()
+                                             .map(MeasuringProgramEntity::getId)
+                                             .filter(id -> {
+                                                 ObservedArea observedArea = observedAreas.getIfPresent(id);
+                                                 return observedArea == null || observedArea.isCheckDue();
+                                             })
+                                             .collect(Collectors.toSet());
+            if (!due.isEmpty()) {
+                checkObservedAreas(due, session);
+            }
+        }
+    }
+
+    private Map<Long, ObservedArea> checkObservedAreas(Set<Long> ids, Session session) {
+        MeasuringProgramDao dao = createDao(session);
+        Map<Long, List<Object>> signatures = dao.getDatasetSignatures(ids);
+        Map<Long, ObservedArea> checked = new HashMap<>();
+        for (Long id : ids) {
+            List<Object> signature = signatures.getOrDefault(id, Collections.emptyList());
+            ObservedArea observedArea = observedAreas.getIfPresent(id);
+            if (observedArea != null && observedArea.signature.equals(signature)) {
+                observedArea.checked();
+            } else {
+                observedArea = new ObservedArea(signature, signature.isEmpty()
+                        ? null
+                        : dao.getObservedArea(id));
+                observedAreas.put(id, observedArea);
             }
+            checked.put(id, observedArea);
+        }
+        return checked;
+    }
+
+    private static final class ObservedArea {
+
+        private final List<Object> signature;
+
+        // in the database CRS
+        private final Envelope envelope;
+
+        private volatile long lastCheck;
+
+        ObservedArea(List<Object> signature, Envelope envelope) {
+            this.signature = signature;
+            this.envelope = envelope;
+            checked();
+        }
+
+        void checked() {
+            lastCheck = System.currentTimeMillis();
+        }
+
+        boolean isCheckDue() {
+            return System.currentTimeMillis() - lastCheck > OBSERVED_AREAS_CHECK_MILLIS;
         }
-        return observedArea;
     }
 
 }
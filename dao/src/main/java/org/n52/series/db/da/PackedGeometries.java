@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.n52.io.crs.CRSUtils;
+
+/**
+ * Creates geometries backed by packed coordinate sequences, i.e. a single primitive array of ordinates instead of
+ * one {@link Coordinate} object per point. Meant for trajectories which may consist of millions of points.
+ * Geometries derived via JTS operations (e.g. simplification) keep the packed representation.
+ */
+public final class PackedGeometries {
+
+    private static final int DIMENSION = 2;
+
+    private static final Map<Integer, GeometryFactory> FACTORIES = new ConcurrentHashMap<>();
+
+    private PackedGeometries() {
+    }
+
+    /**
+     * @param srsId
+     *        the CRS code, e.g. {@code EPSG:4326}, may be {@code null}
+     * @return a shared geometry factory creating packed coordinate sequences
+     */
+    public static GeometryFactory getFactory(String srsId) {
+        return getFactory(srsId == null ? 0 : CRSUtils.getSrsIdFrom(srsId));
+    }
+
+    /**
+     * @param srid
+     *        the SRID
+     * @return a shared geometry factory creating packed coordinate sequences
+     */
+    public static GeometryFactory getFactory(int srid) {
+        return FACTORIES.computeIfAbsent(srid, PackedGeometries::createFactory);
+    }
+
+    private static GeometryFactory createFactory(int srid) {
+        PrecisionModel pm = new PrecisionModel(PrecisionModel.FLOATING);
+        return new GeometryFactory(pm, srid, PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+    }
+
+    /**
+     * @param ordinates
+     *        the x/y ordinates of the points in order, the array is used as is and must not be modified afterwards
+     * @param srsId
+     *        the CRS code, may be {@code null}
+     * @return a line string backed by the given ordinates
+     */
+    public static LineString createLineString(double[] ordinates, String srsId) {
+        CoordinateSequence points = new PackedCoordinateSequence.Double(ordinates, DIMENSION, 0);
+        return getFactory(srsId).createLineString(points);
+    }
+
+    /**
+     * @param geometry
+     *        the geometry whose coordinates form the line
+     * @param srsId
+     *        the CRS code, may be {@code null}
+     * @return a packed line string of the x/y ordinates of the given geometry, the geometry itself if it is a packed
+     *         line string already
+     */
+    public static LineString toLineString(Geometry geometry, String srsId) {
+        if (geometry instanceof LineString) {
+            CoordinateSequence sequence = ((LineString) geometry).getCoordinateSequence();
+            if (sequence instanceof PackedCoordinateSequence.Double && sequence.getDimension() == DIMENSION) {
+                return (LineString) geometry;
+            }
+            double[] ordinates = new double[sequence.size() * DIMENSION];
+            for (int i = 0; i < sequence.size(); i++) {
+                ordinates[i * DIMENSION] = sequence.getX(i);
+                ordinates[i * DIMENSION + 1] = sequence.getY(i);
+            }
+            return createLineString(ordinates, srsId);
+        }
+        Coordinate[] coordinates = geometry.getCoordinates();
+        double[] ordinates = new double[coordinates.length * DIMENSION];
+        for (int i = 0; i < coordinates.length; i++) {
+            ordinates[i * DIMENSION] = coordinates[i].x;
+            ordinates[i * DIMENSION + 1] = coordinates[i].y;
+        }
+        return createLineString(ordinates, srsId);
+    }
+
+}
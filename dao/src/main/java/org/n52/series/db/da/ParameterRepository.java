@@ -88,15 +88,27 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
             return createCondensed(allInstances, query, session);
         } finally {
             LOGGER.debug("Processing allCondensed takes: " + (System.currentTimeMillis() - start));
+            if (getCondensedOutputCache() != null) {
+                getCondensedOutputCache().logStatistics();
+            }
         }
     }
 
     protected List<O> createCondensed(Collection<E> allInstances, DbQuery query, Session session) {
-        List<O> result = allInstances.parallelStream().map(entity -> createCondensed(entity, query, session))
+        List<O> result = allInstances.parallelStream().map(entity -> createCachedCondensed(entity, query, session))
                 .filter(Objects::nonNull).collect(Collectors.toList());
         return result;
     }
 
+    /**
+     * Looks up the condensed output of the given entity in the shared cache and creates it via
+     * {@link #createCondensed(DescribableEntity, DbQuery, Session)} on a miss. Only use for outputs which are
+     * returned as is, as the cached instances are shared between requests.
+     */
+    protected O createCachedCondensed(E entity, DbQuery query, Session session) {
+        return getCachedCondensed(getClass(), entity, query, () -> createCondensed(entity, query, session));
+    }
+
     protected O createCondensed(E entity, DbQuery query, Session session) {
         try {
             O result = prepareEmptyParameterOutput();
@@ -154,7 +166,7 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
     protected List<E> getAllInstances(DbQuery parameters, Session session) {
         long start = System.currentTimeMillis();
         try {
-            return createDao(session).getAllInstances(parameters);
+            return createDao(session).getAllInstances(addSpatialFeatureIds(parameters, session));
         } finally {
             LOGGER.debug("Querying allInstances takes: " + (System.currentTimeMillis() - start));
         }
@@ -28,8 +28,12 @@
  */
 package org.n52.series.db.da;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -38,8 +42,11 @@ import org.n52.io.response.PlatformOutput;
 import org.n52.io.response.dataset.AbstractValue;
 import org.n52.series.db.DataRepositoryTypeFactory;
 import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.NearFilter;
 import org.n52.series.db.dao.PlatformDao;
+import org.n52.series.db.dao.QueryUtils;
 import org.n52.series.db.dao.SearchableDao;
 import org.n52.series.spi.search.PlatformSearchResult;
 import org.n52.series.spi.search.SearchResult;
@@ -52,6 +59,9 @@ import org.springframework.beans.factory.annotation.Autowired;
  */
 public class PlatformRepository extends ParameterRepository<PlatformEntity, PlatformOutput> {
 
+    // bounds widening the nearest features when many of them belong to the same platforms
+    private static final int MAX_NEAREST_FEATURES = QueryUtils.MAX_IN_LIST_IDS;
+
     @Autowired
     private DatasetRepository<AbstractValue<?>> datasetRepository;
 
@@ -78,6 +88,51 @@ public class PlatformRepository extends ParameterRepository<PlatformEntity, Plat
         return new PlatformDao(session);
     }
 
+    /**
+     * Returns the {@code limit} platforms nearest to the center of a near filter. A platform is as near as its
+     * nearest feature. As several features may belong to the same platform, the number of nearest features is
+     * widened until {@code limit} distinct platforms are found or no further features exist.
+     */
+    @Override
+    protected List<PlatformEntity> getAllInstances(DbQuery query, Session session) {
+        NearFilter near = query.getNearFilter();
+        if (near == null) {
+            return super.getAllInstances(query, session);
+        }
+        int limit = near.getLimit();
+        int featureLimit = limit;
+        List<Long> nearest = getNearestFeatureIds(query, featureLimit, session);
+        List<Long> platformIds = getPlatformIdsByDistance(nearest, session);
+        while (platformIds.size() < limit && nearest.size() == featureLimit && featureLimit < MAX_NEAREST_FEATURES) {
+            featureLimit = Math.min(featureLimit * 2, MAX_NEAREST_FEATURES);
+            nearest = getNearestFeatureIds(query, featureLimit, session);
+            platformIds = getPlatformIdsByDistance(nearest, session);
+        }
+        if (platformIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> selected = platformIds.size() > limit
+                ? platformIds.subList(0, limit)
+                : platformIds;
+        return orderByIds(super.getAllInstances(createNearestQuery(query, nearest), session), selected);
+    }
+
+    private List<Long> getPlatformIdsByDistance(List<Long> nearest, Session session) {
+        if (nearest.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Integer> featureRanks = new HashMap<>();
+        for (int i = 0; i < nearest.size(); i++) {
+            featureRanks.put(nearest.get(i), i);
+        }
+        return new DatasetDao<>(session).getPlatformIdsByFeature(nearest)
+                                        .stream()
+                                        .sorted(Comparator.comparing(t -> featureRanks.get(t[0])))
+                                        .map(tuple -> (Long) tuple[1])
+                                        .distinct()
+                                        .collect(Collectors.toList());
+    }
+
     @Override
     protected PlatformOutput createExpanded(PlatformEntity entity, DbQuery query, Session session) {
         // PlatformOutput result = createCondensed(entity, query, session);
@@ -77,6 +77,11 @@ public class QuantityDataRepository
         return new QuantityValue();
     }
 
+    @Override
+    protected DataDao<QuantityDataEntity> createDataDao(Session session) {
+        return new DataDao<>(session, QuantityDataEntity.class);
+    }
+
     @Override
     public QuantityValue getFirstValue(DatasetEntity entity, Session session, DbQuery query) {
         if (entity.getFirstQuantityValue() != null) {
@@ -133,6 +138,12 @@ public class QuantityDataRepository
     @Override
     protected Data<QuantityValue> assembleExpandedData(Long datasetId, DbQuery query, Session session)
             throws DataAccessException {
+        if (!query.expandWithNextValuesBeyondInterval() && !mayHaveReferenceValues(datasetId, session)) {
+            // nothing to expand, no need to load the dataset
+            Data<QuantityValue> result = assembleData(datasetId, query, session);
+            result.setMetadata(new DatasetMetadata<>());
+            return result;
+        }
         DatasetEntity dataset = session.get(DatasetEntity.class, datasetId);
 
         Map<Long, List<QuantityDataEntity>> dataIncludeReferences = getDataIncludeReferences(dataset, query, session);
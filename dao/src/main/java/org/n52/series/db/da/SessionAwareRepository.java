@@ -29,17 +29,32 @@
 package org.n52.series.db.da;
 
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.hibernate.Session;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.operation.distance.DistanceOp;
 import org.n52.io.crs.CRSUtils;
 import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
 import org.n52.io.response.CategoryOutput;
 import org.n52.io.response.FeatureOutput;
 import org.n52.io.response.OfferingOutput;
@@ -68,6 +83,8 @@ import org.n52.series.db.da.mapper.MapperFactory;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.DbQueryFactory;
 import org.n52.series.db.dao.DefaultDbQueryFactory;
+import org.n52.series.db.dao.FeatureDao;
+import org.n52.series.db.dao.NearFilter;
 import org.n52.web.exception.BadRequestException;
 import org.n52.web.exception.ResourceNotFoundException;
 import org.opengis.referencing.FactoryException;
@@ -95,6 +112,15 @@ public abstract class SessionAwareRepository {
     @Autowired
     private HibernateSessionStore sessionStore;
 
+    @Autowired(required = false)
+    private CondensedOutputCache condensedOutputCache;
+
+    @Autowired(required = false)
+    private FeatureSpatialIndex featureSpatialIndex;
+
+    @Autowired(required = false)
+    private SimplifiedGeometryCache simplifiedGeometryCache;
+
     public DbQueryFactory getDbQueryFactory() {
         return dbQueryFactory != null ? dbQueryFactory : new DefaultDbQueryFactory();
     }
@@ -123,18 +149,240 @@ public abstract class SessionAwareRepository {
         return mapperFactory;
     }
 
+    public CondensedOutputCache getCondensedOutputCache() {
+        return condensedOutputCache;
+    }
+
+    public void setCondensedOutputCache(CondensedOutputCache condensedOutputCache) {
+        this.condensedOutputCache = condensedOutputCache;
+    }
+
+    public SimplifiedGeometryCache getSimplifiedGeometryCache() {
+        return simplifiedGeometryCache;
+    }
+
+    public void setSimplifiedGeometryCache(SimplifiedGeometryCache simplifiedGeometryCache) {
+        this.simplifiedGeometryCache = simplifiedGeometryCache;
+    }
+
+    public FeatureSpatialIndex getFeatureSpatialIndex() {
+        return featureSpatialIndex;
+    }
+
+    public void setFeatureSpatialIndex(FeatureSpatialIndex featureSpatialIndex) {
+        this.featureSpatialIndex = featureSpatialIndex;
+    }
+
+    /**
+     * Resolves the spatial filter of the query to the ids of the matching features via the in-memory feature
+     * index, if enabled.
+     *
+     * @param query
+     *        the query
+     * @param session
+     *        the session used to (re)build the index when stale
+     * @return the query
+     */
+    protected DbQuery addSpatialFeatureIds(DbQuery query, Session session) {
+        if (featureSpatialIndex == null || !featureSpatialIndex.isEnabled()) {
+            return query;
+        }
+        Envelope envelope = query.getSpatialFilter();
+        // too many features within the bbox are left to the geometry filter
+        return envelope != null
+                ? query.setSpatialFeatureIds(featureSpatialIndex.getFeatureIds(envelope, session))
+                : query;
+    }
+
+    protected <O extends ParameterOutput> O getCachedCondensed(Class<?> type, DescribableEntity entity,
+            DbQuery query, Supplier<O> supplier) {
+        return condensedOutputCache != null
+                ? condensedOutputCache.get(type, entity, query, supplier)
+                : supplier.get();
+    }
+
     protected Geometry getGeometry(GeometryEntity geometryEntity, DbQuery query) {
-        if (geometryEntity == null) {
+        return getGeometry(null, geometryEntity, query);
+    }
+
+    /**
+     * Gets the feature's geometry simplified to the requested resolution, if any. Simplified geometries are shared
+     * across requests via the {@link SimplifiedGeometryCache}.
+     *
+     * @param featureId
+     *        the feature owning the geometry
+     * @param geometryEntity
+     *        the geometry
+     * @param query
+     *        the query
+     * @return the (simplified) geometry transformed from the database CRS
+     */
+    protected Geometry getGeometry(Long featureId, GeometryEntity geometryEntity, DbQuery query) {
+        return SimplifiedGeometryCache.getGeometry(simplifiedGeometryCache, featureId, geometryEntity, query,
+                                                   getCrsUtils());
+    }
+
+    /**
+     * @param wkb
+     *        a geometry in WKB as computed by the database, e.g. via {@code ST_AsBinary}
+     * @param query
+     *        the query
+     * @return the geometry transformed from the database CRS or {@code null} if no WKB is given
+     */
+    protected Geometry getGeometry(byte[] wkb, DbQuery query) {
+        return getGeometry(wkb, createGeometryFactory(query.getDatabaseSridCode()), query);
+    }
+
+    /**
+     * @param wkb
+     *        a geometry in WKB as computed by the database, e.g. via {@code ST_AsBinary}
+     * @param factory
+     *        the factory to decode the geometry with, its coordinate sequence factory determines how the
+     *        coordinates are held
+     * @param query
+     *        the query
+     * @return the geometry transformed from the database CRS or {@code null} if no WKB is given
+     */
+    protected Geometry getGeometry(byte[] wkb, GeometryFactory factory, DbQuery query) {
+        if (wkb == null) {
+            return null;
+        }
+        try {
+            return transformToInner(query, new WKBReader(factory).read(wkb));
+        } catch (ParseException e) {
+            throw new DataAccessException("Error while creating geometry!", e);
+        }
+    }
+
+    /**
+     * @param query
+     *        the query
+     * @param geometry
+     *        a geometry in the database CRS
+     * @return the geometry transformed from the database CRS
+     */
+    protected Geometry transformToInner(DbQuery query, Geometry geometry) {
+        try {
+            return getCrsUtils().transformOuterToInner(geometry, query.getDatabaseSridCode());
+        } catch (FactoryException | TransformException e) {
+            throw new DataAccessException("Error while creating geometry!", e);
+        }
+    }
+
+    /**
+     * @param query
+     *        the query
+     * @param coordinates
+     *        coordinates in the database CRS
+     * @return the coordinates transformed from the database CRS
+     */
+    protected Coordinate[] transformToInner(DbQuery query, Coordinate... coordinates) {
+        String srid = query.getDatabaseSridCode();
+        Geometry points = createGeometryFactory(srid).createMultiPointFromCoords(coordinates);
+        try {
+            return getCrsUtils().transformOuterToInner(points, srid).getCoordinates();
+        } catch (FactoryException | TransformException e) {
+            throw new DataAccessException("Error while transforming coordinates!", e);
+        }
+    }
+
+    /**
+     * Resolves the near filter of the query to the nearest features. The database orders the features by distance
+     * on the spheroid where supported, otherwise the feature geometries matching the query are ranked by their
+     * great-circle distance in memory.
+     *
+     * @param query
+     *        the query
+     * @param session
+     *        the session
+     * @return the ids of at most {@code limit} features ordered by distance, or {@code null} if the query contains
+     *         no near filter
+     */
+    protected List<Long> getNearestFeatureIds(DbQuery query, Session session) {
+        NearFilter near = query.getNearFilter();
+        return near != null
+                ? getNearestFeatureIds(query, near.getLimit(), session)
+                : null;
+    }
+
+    /**
+     * @param query
+     *        the query
+     * @param limit
+     *        the maximum number of features, overriding the near filter's limit
+     * @param session
+     *        the session
+     * @return the ids of at most {@code limit} features ordered by distance, or {@code null} if the query contains
+     *         no near filter
+     */
+    protected List<Long> getNearestFeatureIds(DbQuery query, int limit, Session session) {
+        NearFilter near = query.getNearFilter();
+        if (near == null) {
             return null;
-        } else {
-            String srid = query.getDatabaseSridCode();
-            geometryEntity.setGeometryFactory(createGeometryFactory(srid));
-            try {
-                return getCrsUtils().transformOuterToInner(geometryEntity.getGeometry(), srid);
-            } catch (FactoryException | TransformException e) {
-                throw new DataAccessException("Error while creating geometry!", e);
+        }
+        FeatureDao dao = new FeatureDao(session);
+        addSpatialFeatureIds(query, session);
+        List<Long> nearest = dao.getNearest(query, limit);
+        return nearest != null
+                ? nearest
+                : getNearestInMemory(dao.getGeometries(query), near, limit, query);
+    }
+
+    List<Long> getNearestInMemory(List<Object[]> features, NearFilter near, int limit, DbQuery query) {
+        Point center = createGeometryFactory(null).createPoint(near.getCenter());
+        // rank all features on the sphere, as the k nearest by lon/lat distance may differ from the k nearest
+        Map<Long, Double> distances = new HashMap<>();
+        for (Object[] feature : features) {
+            Geometry geometry = getGeometry((GeometryEntity) feature[1], query);
+            if (geometry != null && !geometry.isEmpty()) {
+                double distance = near.distance(DistanceOp.nearestPoints(geometry, center)[0]);
+                if (near.getRadius() == null || distance <= near.getRadius()) {
+                    distances.merge((Long) feature[0], distance, Math::min);
+                }
             }
         }
+        return distances.keySet()
+                        .stream()
+                        .sorted(Comparator.comparing(distances::get))
+                        .limit(limit)
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * @param query
+     *        the query containing a near filter
+     * @param featureIds
+     *        the nearest features
+     * @return a query selecting the given features instead of filtering by distance
+     */
+    protected DbQuery createNearestQuery(DbQuery query, Collection<Long> featureIds) {
+        IoParameters parameters = query.getParameters()
+                                       .removeAllOf(Parameters.NEAR)
+                                       .removeAllOf(NearFilter.RADIUS)
+                                       .removeAllOf(Parameters.LIMIT)
+                                       .removeAllOf(Parameters.OFFSET)
+                                       .removeAllOf(Parameters.MATCH_DOMAIN_IDS);
+        return getDbQuery(parameters.replaceWith(Parameters.FEATURES, featureIds.stream()
+                                                                                .map(Object::toString)
+                                                                                .collect(Collectors.toList())));
+    }
+
+    /**
+     * @param entities
+     *        the entities to order
+     * @param ids
+     *        the ids in the requested order
+     * @return the entities ordered as the given ids, entities not contained are dropped
+     */
+    protected <E extends DescribableEntity> List<E> orderByIds(Collection<E> entities, List<Long> ids) {
+        Map<Long, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            ranks.putIfAbsent(ids.get(i), i);
+        }
+        return entities.stream()
+                       .filter(entity -> ranks.containsKey(entity.getId()))
+                       .sorted(Comparator.comparing(entity -> ranks.get(entity.getId())))
+                       .collect(Collectors.toList());
     }
 
     private GeometryFactory createGeometryFactory(String srsId) {
@@ -204,7 +452,8 @@ public abstract class SessionAwareRepository {
     }
 
     protected PhenomenonOutput getCondensedPhenomenon(PhenomenonEntity entity, DbQuery parameters) {
-        return getMapperFactory().getPhenomenonMapper().createCondensed(entity, parameters);
+        return getCachedCondensed(PhenomenonOutput.class, entity, parameters,
+                () -> getMapperFactory().getPhenomenonMapper().createCondensed(entity, parameters));
     }
 
     protected PhenomenonOutput getCondensedExtendedPhenomenon(PhenomenonEntity entity, DbQuery parameters) {
@@ -212,7 +461,8 @@ public abstract class SessionAwareRepository {
     }
 
     protected OfferingOutput getCondensedOffering(OfferingEntity entity, DbQuery parameters) {
-        return getMapperFactory().getOfferingMapper().createCondensed(entity, parameters);
+        return getCachedCondensed(OfferingOutput.class, entity, parameters,
+                () -> getMapperFactory().getOfferingMapper().createCondensed(entity, parameters));
     }
 
     protected OfferingOutput getCondensedExtendedOffering(OfferingEntity entity, DbQuery parameters) {
@@ -220,7 +470,8 @@ public abstract class SessionAwareRepository {
     }
 
     protected ProcedureOutput getCondensedProcedure(ProcedureEntity entity, DbQuery parameters) {
-        return getMapperFactory().getProcedureMapper().createCondensed(entity, parameters);
+        return getCachedCondensed(ProcedureOutput.class, entity, parameters,
+                () -> getMapperFactory().getProcedureMapper().createCondensed(entity, parameters));
     }
 
     protected ProcedureOutput getCondensedExtendedProcedure(ProcedureEntity entity, DbQuery parameters) {
@@ -228,7 +479,8 @@ public abstract class SessionAwareRepository {
     }
 
     protected ServiceOutput getCondensedService(ServiceEntity entity, DbQuery query) {
-        return getMapperFactory().getServiceMapper().createCondensed(entity, query);
+        return getCachedCondensed(ServiceOutput.class, entity, query,
+                () -> getMapperFactory().getServiceMapper().createCondensed(entity, query));
     }
 
     protected ServiceOutput getCondensedExtendedService(ServiceEntity entity, DbQuery parameters) {
@@ -237,11 +489,13 @@ public abstract class SessionAwareRepository {
 
 
     protected PlatformOutput getCondensedPlatform(PlatformEntity entity, DbQuery parameters) {
-        return getMapperFactory().getPlatformMapper().createCondensed(entity, parameters);
+        return getCachedCondensed(PlatformOutput.class, entity, parameters,
+                () -> getMapperFactory().getPlatformMapper().createCondensed(entity, parameters));
     }
 
     protected FeatureOutput getCondensedFeature(AbstractFeatureEntity<?> entity, DbQuery parameters) {
-        return getMapperFactory().getFeatureMapper().createCondensed((FeatureEntity) entity, parameters);
+        return getCachedCondensed(FeatureOutput.class, entity, parameters,
+                () -> getMapperFactory().getFeatureMapper().createCondensed((FeatureEntity) entity, parameters));
     }
 
     protected FeatureOutput getCondensedExtendedFeature(AbstractFeatureEntity<?> entity, DbQuery parameters) {
@@ -249,7 +503,8 @@ public abstract class SessionAwareRepository {
     }
 
     protected CategoryOutput getCondensedCategory(CategoryEntity entity, DbQuery parameters) {
-        return getMapperFactory().getCategoryMapper().createCondensed(entity, parameters);
+        return getCachedCondensed(CategoryOutput.class, entity, parameters,
+                () -> getMapperFactory().getCategoryMapper().createCondensed(entity, parameters));
     }
 
     protected CategoryOutput getCondensedExtendedCategory(CategoryEntity entity, DbQuery parameters) {
@@ -281,7 +536,9 @@ public abstract class SessionAwareRepository {
     }
 
     protected Geometry createGeometry(AbstractFeatureEntity<?> featureEntity, DbQuery query) {
-        return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
+        return featureEntity.isSetGeometry()
+                ? getGeometry(featureEntity.getId(), featureEntity.getGeometryEntity(), query)
+                : null;
     }
 
     private void assertServiceAvailable(DescribableEntity entity) throws IllegalStateException {
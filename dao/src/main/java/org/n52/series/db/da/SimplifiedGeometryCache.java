@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.n52.io.crs.CRSUtils;
+import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of simplified feature geometries shared across requests. Requested resolutions are rounded down to
+ * a power of two, so that neighbouring map zoom levels share the same simplified geometry which is never coarser
+ * than requested. Entries are keyed by feature id, resolution bucket and database CRS.
+ *
+ * Cached geometries are shared between requests and must not be modified by callers. The cache is disabled by
+ * default: entries are only dropped on expiry or {@link #invalidateAll()}, so enable it only where feature
+ * geometries change rarely or the TTL is short enough to serve outdated geometries meanwhile.
+ */
+public class SimplifiedGeometryCache {
+
+    private static final long DEFAULT_MAX_SIZE = 10000;
+
+    private static final long DEFAULT_TTL_SECONDS = 600;
+
+    private boolean enabled;
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    private long ttlSeconds = DEFAULT_TTL_SECONDS;
+
+    private volatile Cache<CacheKey, Geometry> cache;
+
+    public SimplifiedGeometryCache() {
+        this.cache = createCache();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.cache = createCache();
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        this.cache = createCache();
+    }
+
+    /**
+     * @param featureId
+     *        the feature owning the geometry
+     * @param tolerance
+     *        the resolution bucket, see {@link #toBucket(double)}
+     * @param databaseSrid
+     *        the database CRS the geometry has been simplified in
+     * @param supplier
+     *        simplifies and transforms the geometry on a cache miss
+     * @return the (possibly cached) simplified geometry
+     */
+    public Geometry get(Long featureId, double tolerance, String databaseSrid, Supplier<Geometry> supplier) {
+        if (!enabled || featureId == null) {
+            return supplier.get();
+        }
+        CacheKey key = new CacheKey(featureId, tolerance, databaseSrid);
+        Geometry cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        Geometry geometry = supplier.get();
+        if (geometry != null) {
+            cache.put(key, geometry);
+        }
+        return geometry;
+    }
+
+    /**
+     * Resolves a feature's geometry from the database CRS. If the query requests a resolution, the geometry is
+     * simplified to the resolution's bucket before being transformed and shared via the given cache.
+     *
+     * @param cache
+     *        the cache of simplified geometries, may be {@code null}
+     * @param featureId
+     *        the feature owning the geometry, may be {@code null} to skip caching
+     * @param geometryEntity
+     *        the geometry
+     * @param query
+     *        the query
+     * @param crsUtils
+     *        transforms from the database CRS
+     * @return the (simplified) geometry transformed from the database CRS
+     */
+    public static Geometry getGeometry(SimplifiedGeometryCache cache, Long featureId, GeometryEntity geometryEntity,
+            DbQuery query, CRSUtils crsUtils) {
+        Double resolution = query.getResolution();
+        if (resolution == null || geometryEntity == null) {
+            return transform(geometryEntity, query, null, crsUtils);
+        }
+        double tolerance = toBucket(resolution);
+        Supplier<Geometry> simplified = () -> transform(geometryEntity, query, tolerance, crsUtils);
+        return cache != null
+                ? cache.get(featureId, tolerance, query.getDatabaseSridCode(), simplified)
+                : simplified.get();
+    }
+
+    private static Geometry transform(GeometryEntity geometryEntity, DbQuery query, Double tolerance,
+            CRSUtils crsUtils) {
+        if (geometryEntity == null) {
+            return null;
+        }
+        String srid = query.getDatabaseSridCode();
+        PrecisionModel pm = new PrecisionModel(PrecisionModel.FLOATING);
+        geometryEntity.setGeometryFactory(srid == null
+                ? new GeometryFactory(pm)
+                : new GeometryFactory(pm, CRSUtils.getSrsIdFrom(srid)));
+        try {
+            // simplify before transformation, so fewer coordinates have to be transformed
+            Geometry geometry = tolerance != null
+                    ? simplify(geometryEntity.getGeometry(), tolerance)
+                    : geometryEntity.getGeometry();
+            return crsUtils.transformOuterToInner(geometry, srid);
+        } catch (FactoryException | TransformException e) {
+            throw new DataAccessException("Error while creating geometry!", e);
+        }
+    }
+
+    /**
+     * Drops all cached geometries, e.g. after feature geometries have been changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @param resolution
+     *        the requested resolution
+     * @return the largest power of two not greater than the resolution
+     */
+    public static double toBucket(double resolution) {
+        return Math.pow(2, Math.floor(Math.log(resolution) / Math.log(2)));
+    }
+
+    /**
+     * @param geometry
+     *        the geometry to simplify
+     * @param tolerance
+     *        the distance tolerance in units of the geometry's CRS
+     * @return the simplified geometry, points are returned as is
+     */
+    public static Geometry simplify(Geometry geometry, double tolerance) {
+        return geometry == null || geometry.getDimension() == 0
+                ? geometry
+                : TopologyPreservingSimplifier.simplify(geometry, tolerance);
+    }
+
+    private Cache<CacheKey, Geometry> createCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    static final class CacheKey {
+
+        private final Long featureId;
+
+        private final double tolerance;
+
+        private final String databaseSrid;
+
+        private final int hash;
+
+        CacheKey(Long featureId, double tolerance, String databaseSrid) {
+            this.featureId = featureId;
+            this.tolerance = tolerance;
+            this.databaseSrid = databaseSrid;
+            this.hash = Objects.hash(featureId, tolerance, databaseSrid);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return Objects.equals(featureId, other.featureId)
+                    && Double.compare(tolerance, other.tolerance) == 0
+                    && Objects.equals(databaseSrid, other.databaseSrid);
+        }
+
+    }
+
+}
@@ -30,15 +30,23 @@ package org.n52.series.db.da;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.hibernate.Session;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.n52.io.crs.BoundingBox;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.dataset.StationOutput;
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.StationCluster;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.FeatureDao;
 import org.n52.series.spi.search.SearchResult;
@@ -52,6 +60,23 @@ import org.n52.web.exception.ResourceNotFoundException;
 public class StationRepository extends SessionAwareRepository
         implements OutputAssembler<StationOutput>, SearchableRepository {
 
+    /**
+     * Parameter for the number of grid cells across the longer bbox side when clustering stations.
+     */
+    public static final String GRID_SIZE = "gridSize";
+
+    /**
+     * Parameter for the map zoom level to derive the clustering grid from, alternatively to {@link #GRID_SIZE}.
+     */
+    public static final String ZOOM = "zoom";
+
+    private static final int DEFAULT_GRID_SIZE = 64;
+
+    private static final int MAX_GRID_SIZE = 512;
+
+    // cells per 256 pixel map tile when clustering by zoom level
+    private static final int CELLS_PER_TILE = 4;
+
     private FeatureDao createDao(Session session) {
         return new FeatureDao(session);
     }
@@ -132,9 +157,107 @@ public class StationRepository extends SessionAwareRepository
         return results;
     }
 
+    /**
+     * Clusters the stations within the requested bbox by the cells of a regular grid, so the result size is
+     * bounded by the number of cells rather than the number of stations. The grid has square cells laid over the
+     * longer side of the bbox and is either given by
+     * {@link #GRID_SIZE} or derived from a map {@link #ZOOM} level. Grouping is done in the database where
+     * supported, otherwise the station locations are grouped in memory.
+     *
+     * @param parameters
+     *        the query, must contain a bbox of non-zero width and height
+     * @return the clusters of all occupied grid cells
+     * @throws DataAccessException
+     *         if accessing the database fails
+     */
+    public List<StationCluster> getClusters(DbQuery parameters) throws DataAccessException {
+        DbQuery query = addPointLocationOnlyRestriction(parameters);
+        BoundingBox bbox = query.getParameters().getSpatialFilter();
+        Envelope envelope = query.getSpatialFilter();
+        if (bbox == null || envelope == null) {
+            throw new BadRequestException("Clustering stations requires a bbox.");
+        }
+        double width = bbox.getUpperRight().getX() - bbox.getLowerLeft().getX();
+        double height = bbox.getUpperRight().getY() - bbox.getLowerLeft().getY();
+        if (!(width > 0 && height > 0 && envelope.getWidth() > 0 && envelope.getHeight() > 0)) {
+            throw new BadRequestException("Clustering stations requires a bbox of non-zero width and height.");
+        }
+        // square cells sized by the longer side, so the number of cells is bounded by the grid size squared
+        double extent = Math.max(width, height);
+        int gridSize = getGridSize(query.getParameters(), extent);
+        Session session = getSession();
+        try {
+            FeatureDao dao = createDao(session);
+            double cellSize = Math.max(envelope.getWidth(), envelope.getHeight()) / gridSize;
+            List<Object[]> cells = dao.getClusters(query, envelope.getMinX(), envelope.getMinY(), cellSize);
+            return cells != null
+                    ? toClusters(cells, query)
+                    : clusterInMemory(dao.getGeometries(query), bbox, extent / gridSize, query);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private int getGridSize(IoParameters parameters, double extent) {
+        String zoom = parameters.getAsString(ZOOM);
+        String gridSize = parameters.getAsString(GRID_SIZE);
+        try {
+            int size = DEFAULT_GRID_SIZE;
+            if (zoom != null) {
+                double cellWidth = 360d / Math.pow(2, Integer.parseInt(zoom)) / CELLS_PER_TILE;
+                size = (int) Math.ceil(extent / cellWidth);
+            } else if (gridSize != null) {
+                size = Integer.parseInt(gridSize);
+            }
+            return Math.max(1, Math.min(MAX_GRID_SIZE, size));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid grid size or zoom level.", e);
+        }
+    }
+
+    private List<StationCluster> toClusters(List<Object[]> cells, DbQuery query) {
+        List<StationCluster> clusters = new ArrayList<>(cells.size());
+        for (Object[] cell : cells) {
+            Coordinate[] coordinates = transformToInner(query,
+                                                        new Coordinate((Double) cell[1], (Double) cell[2]),
+                                                        new Coordinate((Double) cell[3], (Double) cell[4]),
+                                                        new Coordinate((Double) cell[5], (Double) cell[6]));
+            Envelope bounds = new Envelope(coordinates[1], coordinates[2]);
+            clusters.add(new StationCluster((Long) cell[0], coordinates[0], bounds));
+        }
+        return clusters;
+    }
+
+    private List<StationCluster> clusterInMemory(List<Object[]> features, BoundingBox bbox, double cellSize,
+                                                 DbQuery query) {
+        double minX = bbox.getLowerLeft().getX();
+        double minY = bbox.getLowerLeft().getY();
+        Map<Long, Cell> cells = new LinkedHashMap<>();
+        for (Object[] feature : features) {
+            Geometry geometry = getGeometry((GeometryEntity) feature[1], query);
+            if (geometry != null && !geometry.isEmpty()) {
+                Coordinate location = geometry.getCoordinate();
+                long column = (long) Math.floor((location.x - minX) / cellSize);
+                long row = (long) Math.floor((location.y - minY) / cellSize);
+                cells.computeIfAbsent((column << 32) | (row & 0xFFFFFFFFL), key -> new Cell()).add(location);
+            }
+        }
+        return cells.values()
+                    .stream()
+                    .map(Cell::toCluster)
+                    .collect(Collectors.toList());
+    }
+
     private List<FeatureEntity> getAllInstances(DbQuery parameters, Session session) throws DataAccessException {
         FeatureDao featureDao = createDao(session);
-        return featureDao.getAllInstances(addPointLocationOnlyRestriction(parameters));
+        DbQuery query = addPointLocationOnlyRestriction(parameters);
+        List<Long> nearest = getNearestFeatureIds(query, session);
+        if (nearest == null) {
+            return featureDao.getAllInstances(addSpatialFeatureIds(query, session));
+        }
+        return nearest.isEmpty()
+                ? new ArrayList<>()
+                : orderByIds(featureDao.getAllInstances(createNearestQuery(query, nearest)), nearest);
     }
 
     @Override
@@ -198,7 +321,31 @@ public class StationRepository extends SessionAwareRepository
     }
 
     private Geometry getGeometry(FeatureEntity featureEntity, DbQuery query) {
-        return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
+        return featureEntity.isSetGeometry()
+                ? getGeometry(featureEntity.getId(), featureEntity.getGeometryEntity(), query)
+                : null;
+    }
+
+    private static final class Cell {
+
+        private final Envelope bounds = new Envelope();
+
+        private long count;
+
+        private double sumX;
+
+        private double sumY;
+
+        void add(Coordinate location) {
+            count++;
+            sumX += location.x;
+            sumY += location.y;
+            bounds.expandToInclude(location);
+        }
+
+        StationCluster toCluster() {
+            return new StationCluster(count, new Coordinate(sumX / count, sumY / count), bounds);
+        }
     }
 
     private DbQuery addPointLocationOnlyRestriction(DbQuery query) {
@@ -51,7 +51,7 @@ public class TextDataRepository extends AbstractDataRepository<DatasetEntity, Te
     @Override
     protected Data<TextValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<TextValue> result = new Data<>();
-        DataDao<TextDataEntity> dao = new DataDao<>(session);
+        DataDao<TextDataEntity> dao = new DataDao<>(session, TextDataEntity.class);
         List<TextDataEntity> observations = dao.getAllInstancesFor(dataset, query);
         for (TextDataEntity observation : observations) {
             if (observation != null) {
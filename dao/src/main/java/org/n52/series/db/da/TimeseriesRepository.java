@@ -52,6 +52,7 @@ import org.n52.series.db.beans.ServiceEntity;
 import org.n52.series.db.beans.dataset.ValueType;
 import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.PrefetchedObservations;
 import org.n52.series.spi.search.SearchResult;
 import org.n52.series.spi.search.TimeseriesSearchResult;
 import org.n52.web.exception.ResourceNotFoundException;
@@ -148,7 +149,9 @@ public class TimeseriesRepository extends SessionAwareRepository implements Outp
     public List<TimeseriesMetadataOutput> getAllExpanded(DbQuery query, Session session) throws DataAccessException {
         List<TimeseriesMetadataOutput> results = new ArrayList<>();
         DatasetDao<DatasetEntity> seriesDao = createDao(session);
-        for (DatasetEntity timeseries : seriesDao.getAllInstances(query)) {
+        List<DatasetEntity> allTimeseries = seriesDao.getAllInstances(query);
+        PrefetchedObservations.prefetch(allTimeseries, query, session);
+        for (DatasetEntity timeseries : allTimeseries) {
             results.add(createExpanded(timeseries, query, session));
         }
         return results;
@@ -178,7 +181,7 @@ public class TimeseriesRepository extends SessionAwareRepository implements Outp
     protected TimeseriesMetadataOutput createExpanded(DatasetEntity series, DbQuery query, Session session)
             throws DataAccessException {
         TimeseriesMetadataOutput result = createCondensed(series, query, session);
-        List<ReferenceValueOutput<QuantityValue>> refValues = createReferenceValueOutputs(series, query);
+        List<ReferenceValueOutput<QuantityValue>> refValues = createReferenceValueOutputs(series, query, session);
         DatasetParameters timeseries = createTimeseriesOutput(series, query.withoutFieldsFilter());
 
         QuantityValue firstValue = repository.getFirstValue(series, session, query);
@@ -192,9 +195,13 @@ public class TimeseriesRepository extends SessionAwareRepository implements Outp
         return result;
     }
 
-    private List<ReferenceValueOutput<QuantityValue>> createReferenceValueOutputs(DatasetEntity series, DbQuery query)
-            throws DataAccessException {
+    private List<ReferenceValueOutput<QuantityValue>> createReferenceValueOutputs(DatasetEntity series, DbQuery query,
+            Session session) throws DataAccessException {
         List<ReferenceValueOutput<QuantityValue>> outputs = new ArrayList<>();
+        if (!repository.mayHaveReferenceValues(series.getId(), session)) {
+            // avoid initializing the reference values collection
+            return outputs;
+        }
         List<DatasetEntity> referenceValues = series.getReferenceValues();
         for (DatasetEntity referenceSeriesEntity : referenceValues) {
             if (referenceSeriesEntity != null && referenceSeriesEntity.isPublished()
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.Puntal;
+import org.locationtech.jts.geom.TopologyException;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.n52.web.exception.BadRequestException;
+
+/**
+ * A tile of the Web Mercator tile grid addressed by zoom level, column and row ({@code z/x/y}) as used by
+ * slippy maps. Transforms lon/lat geometries into the integer coordinate grid of the tile.
+ */
+public final class VectorTile {
+
+    public static final int DEFAULT_EXTENT = 4096;
+
+    public static final int DEFAULT_BUFFER = 64;
+
+    public static final int MAX_ZOOM = 24;
+
+    private static final double MAX_LATITUDE = 85.0511287798066;
+
+    private static final PrecisionModel TILE_GRID = new PrecisionModel(1d);
+
+    private final int z;
+
+    private final int x;
+
+    private final int y;
+
+    private final int extent;
+
+    private final int buffer;
+
+    private final double tiles;
+
+    public VectorTile(int z, int x, int y) {
+        this(z, x, y, DEFAULT_EXTENT, DEFAULT_BUFFER);
+    }
+
+    public VectorTile(int z, int x, int y, int extent, int buffer) {
+        if (z < 0 || z > MAX_ZOOM) {
+            throw new BadRequestException("Invalid zoom level: " + z);
+        }
+        long count = 1L << z;
+        if (x < 0 || x >= count || y < 0 || y >= count) {
+            throw new BadRequestException("Invalid tile: " + z + "/" + x + "/" + y);
+        }
+        this.z = z;
+        this.x = x;
+        this.y = y;
+        this.extent = extent;
+        this.buffer = buffer;
+        this.tiles = count;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * @return the lon/lat envelope of the tile including its buffer
+     */
+    public Envelope getEnvelope() {
+        double margin = (double) buffer / extent;
+        return new Envelope(Math.max(-180d, toLongitude(x - margin)),
+                            Math.min(180d, toLongitude(x + 1 + margin)),
+                            Math.max(-MAX_LATITUDE, toLatitude(y + 1 + margin)),
+                            Math.min(MAX_LATITUDE, toLatitude(y - margin)));
+    }
+
+    /**
+     * Projects the given geometry to the tile grid, clips it at the tile buffer, simplifies it to the grid's
+     * resolution and snaps it to integer coordinates.
+     *
+     * @param geometry
+     *        the geometry in lon/lat
+     * @return the geometry in tile coordinates or {@code null} if nothing remains within the tile
+     */
+    public Geometry toTileGeometry(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        Geometry projected = geometry.copy();
+        projected.apply(new TileProjection());
+        Envelope clip = new Envelope(-buffer, extent + buffer, -buffer, extent + buffer);
+        if (!clip.intersects(projected.getEnvelopeInternal())) {
+            return null;
+        }
+        try {
+            Geometry clipped = clip.contains(projected.getEnvelopeInternal())
+                    ? projected
+                    : projected.intersection(projected.getFactory().toGeometry(clip));
+            Geometry simplified = clipped instanceof Puntal
+                    ? clipped
+                    : TopologyPreservingSimplifier.simplify(clipped, 1d);
+            Geometry snapped = GeometryPrecisionReducer.reduce(simplified, TILE_GRID);
+            return snapped.isEmpty()
+                    ? null
+                    : snapped;
+        } catch (TopologyException | IllegalArgumentException e) {
+            // invalid source geometry, nothing sensible to render
+            return null;
+        }
+    }
+
+    double toTileX(double longitude) {
+        return ((longitude + 180d) / 360d * tiles - x) * extent;
+    }
+
+    double toTileY(double latitude) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double radians = Math.toRadians(clamped);
+        double mercator = Math.log(Math.tan(radians) + 1d / Math.cos(radians));
+        return ((1d - mercator / Math.PI) / 2d * tiles - y) * extent;
+    }
+
+    private double toLongitude(double column) {
+        return column / tiles * 360d - 180d;
+    }
+
+    private double toLatitude(double row) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1d - 2d * row / tiles))));
+    }
+
+    @Override
+    public String toString() {
+        return z + "/" + x + "/" + y;
+    }
+
+    private final class TileProjection implements CoordinateSequenceFilter {
+
+        @Override
+        public void filter(CoordinateSequence sequence, int i) {
+            double tileX = toTileX(sequence.getX(i));
+            double tileY = toTileY(sequence.getY(i));
+            sequence.setOrdinate(i, CoordinateSequence.X, tileX);
+            sequence.setOrdinate(i, CoordinateSequence.Y, tileY);
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Encodes features as Mapbox Vector Tile (specification version 2.1). Geometries have to be given in tile
+ * coordinates already, see {@link VectorTile#toTileGeometry(Geometry)}.
+ */
+public final class VectorTileEncoder {
+
+    public static final String MEDIA_TYPE = "application/vnd.mapbox-vector-tile";
+
+    private static final int VERSION = 2;
+
+    private static final int GEOM_POINT = 1;
+
+    private static final int GEOM_LINESTRING = 2;
+
+    private static final int GEOM_POLYGON = 3;
+
+    private static final int CMD_MOVE_TO = 1;
+
+    private static final int CMD_LINE_TO = 2;
+
+    private static final int CMD_CLOSE_PATH = 7;
+
+    private final int extent;
+
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+
+    public VectorTileEncoder(int extent) {
+        this.extent = extent;
+    }
+
+    /**
+     * @param layerName
+     *        the layer to add the feature to
+     * @param id
+     *        the feature id, may be {@code null}
+     * @param attributes
+     *        the attributes with string, number or boolean values
+     * @param geometry
+     *        the geometry in tile coordinates, features without geometry are skipped
+     */
+    public void addFeature(String layerName, Long id, Map<String, ?> attributes, Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return;
+        }
+        if (isMixedCollection(geometry)) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                addFeature(layerName, id, attributes, geometry.getGeometryN(i));
+            }
+            return;
+        }
+        Feature feature = new Feature(id);
+        if (!feature.setGeometry(geometry)) {
+            return;
+        }
+        Layer layer = layers.computeIfAbsent(layerName, Layer::new);
+        for (Map.Entry<String, ?> attribute : attributes.entrySet()) {
+            if (attribute.getValue() != null) {
+                feature.tags.add(layer.keyIndex(attribute.getKey()));
+                feature.tags.add(layer.valueIndex(attribute.getValue()));
+            }
+        }
+        layer.features.add(feature);
+    }
+
+    public boolean isEmpty() {
+        return layers.isEmpty();
+    }
+
+    public byte[] encode() {
+        ProtobufWriter tile = new ProtobufWriter();
+        for (Layer layer : layers.values()) {
+            tile.message(3, layer.encode(extent));
+        }
+        return tile.toByteArray();
+    }
+
+    private static boolean isMixedCollection(Geometry geometry) {
+        return geometry instanceof GeometryCollection
+                && !(geometry instanceof MultiPoint)
+                && !(geometry instanceof MultiLineString)
+                && !(geometry instanceof MultiPolygon);
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static final class Layer {
+
+        private final String name;
+
+        private final List<Feature> features = new ArrayList<>();
+
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+
+        private final Map<Object, Integer> values = new LinkedHashMap<>();
+
+        Layer(String name) {
+            this.name = name;
+        }
+
+        int keyIndex(String key) {
+            return keys.computeIfAbsent(key, k -> keys.size());
+        }
+
+        int valueIndex(Object value) {
+            return values.computeIfAbsent(value, v -> values.size());
+        }
+
+        ProtobufWriter encode(int extent) {
+            ProtobufWriter layer = new ProtobufWriter();
+            layer.string(1, name);
+            for (Feature feature : features) {
+                layer.message(2, feature.encode());
+            }
+            for (String key : keys.keySet()) {
+                layer.string(3, key);
+            }
+            for (Object value : values.keySet()) {
+                layer.message(4, encodeValue(value));
+            }
+            layer.uint(5, extent);
+            layer.uint(15, VERSION);
+            return layer;
+        }
+
+        private ProtobufWriter encodeValue(Object value) {
+            ProtobufWriter writer = new ProtobufWriter();
+            if (value instanceof Boolean) {
+                writer.uint(7, ((Boolean) value) ? 1 : 0);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+                writer.uint(4, ((Number) value).longValue());
+            } else if (value instanceof Number) {
+                writer.fixed64(3, ((Number) value).doubleValue());
+            } else {
+                writer.string(1, value.toString());
+            }
+            return writer;
+        }
+    }
+
+    private static final class Feature {
+
+        private final Long id;
+
+        private final List<Integer> tags = new ArrayList<>();
+
+        private final List<Integer> commands = new ArrayList<>();
+
+        private int type;
+
+        private int cursorX;
+
+        private int cursorY;
+
+        Feature(Long id) {
+            this.id = id;
+        }
+
+        boolean setGeometry(Geometry geometry) {
+            if (geometry instanceof Point || geometry instanceof MultiPoint) {
+                type = GEOM_POINT;
+                addPoints(geometry.getCoordinates());
+            } else if (geometry instanceof LineString || geometry instanceof MultiLineString) {
+                type = GEOM_LINESTRING;
+                for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                    addLine(geometry.getGeometryN(i).getCoordinates());
+                }
+            } else if (geometry instanceof Polygon || geometry instanceof MultiPolygon) {
+                type = GEOM_POLYGON;
+                for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                    addPolygon((Polygon) geometry.getGeometryN(i));
+                }
+            }
+            return !commands.isEmpty();
+        }
+
+        private void addPoints(Coordinate[] coordinates) {
+            commands.add(command(CMD_MOVE_TO, coordinates.length));
+            for (Coordinate coordinate : coordinates) {
+                moveCursor(coordinate);
+            }
+        }
+
+        private void addLine(Coordinate[] coordinates) {
+            List<Coordinate> points = withoutRepeatedPoints(coordinates);
+            if (points.size() < 2) {
+                return;
+            }
+            commands.add(command(CMD_MOVE_TO, 1));
+            moveCursor(points.get(0));
+            commands.add(command(CMD_LINE_TO, points.size() - 1));
+            for (Coordinate point : points.subList(1, points.size())) {
+                moveCursor(point);
+            }
+        }
+
+        private void addPolygon(Polygon polygon) {
+            addRing(polygon.getExteriorRing(), true);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                addRing(polygon.getInteriorRingN(i), false);
+            }
+        }
+
+        private void addRing(LinearRing ring, boolean exterior) {
+            Coordinate[] coordinates = ring.getCoordinates();
+            // the closing point is implied by ClosePath
+            List<Coordinate> points =
+                    withoutRepeatedPoints(Arrays.copyOf(coordinates, Math.max(0, coordinates.length - 1)));
+            if (points.size() < 3) {
+                return;
+            }
+            // exterior rings are clockwise (positive area) in tile coordinates, interior rings counterclockwise
+            double area = getArea(points);
+            if (area == 0) {
+                return;
+            }
+            if ((area > 0) != exterior) {
+                Collections.reverse(points);
+            }
+            addLine(points.toArray(new Coordinate[0]));
+            commands.add(command(CMD_CLOSE_PATH, 1));
+        }
+
+        private void moveCursor(Coordinate coordinate) {
+            int tileX = (int) Math.round(coordinate.x);
+            int tileY = (int) Math.round(coordinate.y);
+            commands.add(zigZag(tileX - cursorX));
+            commands.add(zigZag(tileY - cursorY));
+            cursorX = tileX;
+            cursorY = tileY;
+        }
+
+        ProtobufWriter encode() {
+            ProtobufWriter feature = new ProtobufWriter();
+            if (id != null && id >= 0) {
+                feature.uint(1, id);
+            }
+            if (!tags.isEmpty()) {
+                feature.packed(2, tags);
+            }
+            feature.uint(3, type);
+            feature.packed(4, commands);
+            return feature;
+        }
+
+        private static List<Coordinate> withoutRepeatedPoints(Coordinate[] coordinates) {
+            List<Coordinate> points = new ArrayList<>(coordinates.length);
+            for (Coordinate coordinate : coordinates) {
+                if (points.isEmpty() || !isSamePoint(points.get(points.size() - 1), coordinate)) {
+                    points.add(coordinate);
+                }
+            }
+            return points;
+        }
+
+        private static boolean isSamePoint(Coordinate a, Coordinate b) {
+            return Math.round(a.x) == Math.round(b.x) && Math.round(a.y) == Math.round(b.y);
+        }
+
+        private static double getArea(List<Coordinate> points) {
+            double sum = 0;
+            for (int i = 0; i < points.size(); i++) {
+                Coordinate current = points.get(i);
+                Coordinate next = points.get((i + 1) % points.size());
+                sum += current.x * next.y - next.x * current.y;
+            }
+            return sum / 2d;
+        }
+    }
+
+    /**
+     * Minimal writer for the protobuf wire format.
+     */
+    private static final class ProtobufWriter {
+
+        private static final int WIRE_VARINT = 0;
+
+        private static final int WIRE_FIXED64 = 1;
+
+        private static final int WIRE_LENGTH_DELIMITED = 2;
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void uint(int field, long value) {
+            tag(field, WIRE_VARINT);
+            varint(value);
+        }
+
+        void fixed64(int field, double value) {
+            tag(field, WIRE_FIXED64);
+            long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < 8; i++) {
+                out.write((int) (bits >>> (8 * i)) & 0xFF);
+            }
+        }
+
+        void string(int field, String value) {
+            bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void message(int field, ProtobufWriter message) {
+            bytes(field, message.toByteArray());
+        }
+
+        void packed(int field, List<Integer> values) {
+            ProtobufWriter packed = new ProtobufWriter();
+            for (Integer value : values) {
+                packed.varint(value & 0xFFFFFFFFL);
+            }
+            bytes(field, packed.toByteArray());
+        }
+
+        private void bytes(int field, byte[] bytes) {
+            tag(field, WIRE_LENGTH_DELIMITED);
+            varint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private void tag(int field, int wireType) {
+            varint((field << 3) | wireType);
+        }
+
+        private void varint(long value) {
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                out.write((int) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.write((int) remaining);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+}
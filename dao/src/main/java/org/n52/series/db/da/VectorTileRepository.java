@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.FeatureDao;
+import org.n52.series.db.dao.SamplingGeometryDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates Mapbox Vector Tiles of the stationary features (stations) and the tracks of mobile platforms. Only
+ * features within the tile envelope are loaded (via the spatial index of the geometry column), geometries are
+ * clipped and quantized to the tile grid and encoded directly. Tracks lacking a feature geometry are built from
+ * the sampling geometries within the (buffered) tile envelope only.
+ */
+public class VectorTileRepository extends SessionAwareRepository {
+
+    public static final String STATIONS_LAYER = "stations";
+
+    public static final String TRACKS_LAYER = "tracks";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VectorTileRepository.class);
+
+    private static final String ATTRIBUTE_ID = "id";
+
+    private static final String ATTRIBUTE_LABEL = "label";
+
+    public byte[] getStationTile(int z, int x, int y, IoParameters parameters) throws DataAccessException {
+        VectorTile tile = new VectorTile(z, x, y);
+        long start = System.currentTimeMillis();
+        Session session = getSession();
+        try {
+            DbQuery query = createTileQuery(tile, parameters, false);
+            VectorTileEncoder encoder = new VectorTileEncoder(tile.getExtent());
+            for (Object[] row : new FeatureDao(session).getGeometries(query)) {
+                Geometry geometry = getGeometry((GeometryEntity) row[1], query);
+                encoder.addFeature(STATIONS_LAYER, (Long) row[0], createAttributes(row[0], row[2]),
+                                   tile.toTileGeometry(geometry));
+            }
+            return encoder.encode();
+        } finally {
+            returnSession(session);
+            LOGGER.debug("Created station tile {} in {} ms.", tile, System.currentTimeMillis() - start);
+        }
+    }
+
+    public byte[] getTrackTile(int z, int x, int y, IoParameters parameters) throws DataAccessException {
+        VectorTile tile = new VectorTile(z, x, y);
+        long start = System.currentTimeMillis();
+        Session session = getSession();
+        try {
+            DbQuery query = createTileQuery(tile, parameters, true);
+            Double tolerance = getPixelSize(tile, query.getSpatialFilter());
+            VectorTileEncoder encoder = new VectorTileEncoder(tile.getExtent());
+            FeatureDao featureDao = new FeatureDao(session);
+            for (Object[] row : featureDao.getGeometries(query)) {
+                Geometry geometry = getGeometry((GeometryEntity) row[1], query);
+                encoder.addFeature(TRACKS_LAYER, (Long) row[0], createAttributes(row[0], row[2]),
+                                   tile.toTileGeometry(geometry));
+            }
+            // tracks built from sampling geometries have no feature geometry to filter by the tile envelope
+            DbQuery withoutEnvelope = createTileQuery(tile, parameters, true).setSpatialEnvelope(null);
+            Map<Long, Object> withoutGeometry = new HashMap<>();
+            for (Object[] row : featureDao.getWithoutGeometry(withoutEnvelope)) {
+                withoutGeometry.put((Long) row[0], row[1]);
+            }
+            if (!withoutGeometry.isEmpty()) {
+                // only sampling geometries within the tile envelope are aggregated
+                Map<Long, Geometry> trajectories = getTrajectories(withoutGeometry.keySet(), tolerance, query, session);
+                for (Map.Entry<Long, Geometry> trajectory : trajectories.entrySet()) {
+                    Long id = trajectory.getKey();
+                    encoder.addFeature(TRACKS_LAYER, id, createAttributes(id, withoutGeometry.get(id)),
+                                       tile.toTileGeometry(trajectory.getValue()));
+                }
+            }
+            return encoder.encode();
+        } finally {
+            returnSession(session);
+            LOGGER.debug("Created track tile {} in {} ms.", tile, System.currentTimeMillis() - start);
+        }
+    }
+
+    private DbQuery createTileQuery(VectorTile tile, IoParameters parameters, boolean mobile) {
+        IoParameters tileParameters = parameters.removeAllOf(Parameters.BBOX)
+                                                .removeAllOf(Parameters.NEAR)
+                                                .replaceWith(Parameters.FILTER_MOBILE, Boolean.toString(mobile));
+        return dbQueryFactory.createFrom(tileParameters)
+                             .setSpatialEnvelope(tile.getEnvelope());
+    }
+
+    private Map<Long, Geometry> getTrajectories(Collection<Long> featureIds, Double tolerance, DbQuery query,
+                                                Session session) {
+        SamplingGeometryDao dao = new SamplingGeometryDao(session);
+        Map<Long, byte[]> wkbs = dao.getTrajectories(featureIds, tolerance, query);
+        Map<Long, Geometry> trajectories = new HashMap<>();
+        if (wkbs != null) {
+            wkbs.forEach((id, wkb) -> trajectories.put(id, getGeometry(wkb, query)));
+            return trajectories;
+        }
+        // database cannot build the lines, load all sampling geometries at once instead
+        Map<Long, List<GeometryEntity>> samplingGeometries = dao.getGeometriesOrderedByTimestamp(featureIds, query);
+        for (Map.Entry<Long, List<GeometryEntity>> points : samplingGeometries.entrySet()) {
+            double[] ordinates = new double[points.getValue().size() * 2];
+            int index = 0;
+            for (GeometryEntity point : points.getValue()) {
+                Coordinate coordinate = getGeometry(point, query).getCoordinate();
+                ordinates[index++] = coordinate.x;
+                ordinates[index++] = coordinate.y;
+            }
+            String srid = query.getDatabaseSridCode();
+            trajectories.put(points.getKey(), PackedGeometries.createLineString(ordinates, srid));
+        }
+        return trajectories;
+    }
+
+    /**
+     * @return the size of a tile grid cell in units of the database CRS, used as simplification tolerance
+     */
+    private Double getPixelSize(VectorTile tile, Envelope envelope) {
+        return envelope != null
+                ? envelope.getWidth() / (tile.getExtent() + 2 * VectorTile.DEFAULT_BUFFER)
+                : null;
+    }
+
+    private Map<String, Object> createAttributes(Object id, Object label) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(ATTRIBUTE_ID, Long.toString((Long) id));
+        attributes.put(ATTRIBUTE_LABEL, label);
+        return attributes;
+    }
+
+}
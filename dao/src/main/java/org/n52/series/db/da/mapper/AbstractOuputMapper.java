@@ -40,8 +40,6 @@ import org.hibernate.Session;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.PrecisionModel;
 import org.n52.io.crs.CRSUtils;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.AbstractOutput;
@@ -64,9 +62,8 @@ import org.n52.series.db.beans.PhenomenonEntity;
 import org.n52.series.db.beans.PlatformEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.ServiceEntity;
+import org.n52.series.db.da.SimplifiedGeometryCache;
 import org.n52.series.db.dao.DbQuery;
-import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -146,22 +143,12 @@ public abstract class AbstractOuputMapper<T extends ParameterOutput, S extends D
     }
 
     protected Geometry getGeometry(GeometryEntity geometryEntity, DbQuery query) {
-        if (geometryEntity == null) {
-            return null;
-        } else {
-            String srid = query.getDatabaseSridCode();
-            geometryEntity.setGeometryFactory(createGeometryFactory(srid));
-            try {
-                return crsUtils.transformOuterToInner(geometryEntity.getGeometry(), srid);
-            } catch (FactoryException | TransformException e) {
-                throw new DataAccessException("Error while creating geometry!", e);
-            }
-        }
+        return getGeometry(null, geometryEntity, query);
     }
 
-    private GeometryFactory createGeometryFactory(String srsId) {
-        PrecisionModel pm = new PrecisionModel(PrecisionModel.FLOATING);
-        return srsId == null ? new GeometryFactory(pm) : new GeometryFactory(pm, CRSUtils.getSrsIdFrom(srsId));
+    protected Geometry getGeometry(Long featureId, GeometryEntity geometryEntity, DbQuery query) {
+        return SimplifiedGeometryCache.getGeometry(getMapperFactory().getSimplifiedGeometryCache(), featureId,
+                                                   geometryEntity, query, crsUtils);
     }
 
     protected List<T> createCondensed(Collection<S> entities, DbQuery query, Session session) {
@@ -135,7 +135,9 @@ public class FeatureMapper extends AbstractOuputMapper<FeatureOutput, FeatureEnt
     }
 
     protected Geometry createGeometry(AbstractFeatureEntity<?> featureEntity, DbQuery query) {
-        return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
+        return featureEntity.isSetGeometry()
+                ? getGeometry(featureEntity.getId(), featureEntity.getGeometryEntity(), query)
+                : null;
     }
 
 }
@@ -31,7 +31,6 @@ package org.n52.series.db.dao;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.geolatte.geom.GeometryType;
@@ -43,7 +42,6 @@ import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
-import org.hibernate.criterion.SimpleExpression;
 import org.hibernate.criterion.Subqueries;
 import org.hibernate.engine.spi.LoadQueryInfluencers;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
@@ -53,16 +51,12 @@ import org.hibernate.loader.criteria.CriteriaJoinWalker;
 import org.hibernate.loader.criteria.CriteriaQueryTranslator;
 import org.hibernate.persister.entity.OuterJoinLoadable;
 import org.hibernate.transform.RootEntityResultTransformer;
-import org.n52.io.request.FilterResolver;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
-import org.n52.series.db.beans.dataset.DatasetType;
-import org.n52.series.db.beans.dataset.ObservationType;
-import org.n52.series.db.beans.dataset.ValueType;
 import org.n52.series.db.beans.i18n.I18nEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -148,7 +142,7 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
         return hasTranslation(query, clazz) ? query.addLocaleTo(criteria, clazz) : criteria;
     }
 
-    private <I extends I18nEntity> boolean hasTranslation(DbQuery parameters, Class<I> clazz) {
+    protected <I extends I18nEntity> boolean hasTranslation(DbQuery parameters, Class<I> clazz) {
         Criteria i18nCriteria = session.createCriteria(clazz);
         return parameters.checkTranslationForLocale(i18nCriteria);
     }
@@ -166,47 +160,68 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
     }
 
     protected Criteria getDefaultCriteria(String alias, DbQuery query, Class<?> clazz) {
+        return createDefaultCriteria(alias, query, clazz, false);
+    }
+
+    private Criteria createDefaultCriteria(String alias, DbQuery query, Class<?> clazz, boolean parameterFilters) {
         String nonNullAlias = alias != null ? alias : getDefaultAlias();
         Criteria criteria = session.createCriteria(clazz, nonNullAlias);
         criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
-        addDatasetFilters(query, criteria);
-        addMobileInsituFilter(getDatasetProperty(), criteria, query);
-        addDatasetTypesFilter(getDatasetProperty(), criteria, query);
+        addDatasetFilters(query, criteria, parameterFilters);
         // addGeometryTypeFilter(query, criteria);
         return criteria;
     }
 
-    protected Criteria addDatasetFilters(DbQuery query, Criteria criteria) {
-        DetachedCriteria filter = createDatasetSubqueryViaExplicitJoin(query);
-        return criteria.add(Subqueries.propertyIn(DescribableEntity.PROPERTY_ID, filter));
+    /**
+     * Creates the default criteria including the parameter filters (phenomena, procedures, offerings,
+     * features, ...) of the query and applies limit and offset.
+     *
+     * @param query
+     *            the query
+     * @return the filtered criteria
+     * @see #getUnpagedFilteredCriteria(DbQuery)
+     */
+    protected Criteria getFilteredCriteria(DbQuery query) {
+        return query.addLimitAndOffsetFilter(getUnpagedFilteredCriteria(query));
     }
 
-    private DetachedCriteria createDatasetSubqueryViaExplicitJoin(DbQuery query) {
-        DetachedCriteria subquery = DetachedCriteria.forClass(DatasetEntity.class).add(createPublishedDatasetFilter());
-        if (query.getLastValueMatches() != null) {
-            subquery.add(createLastValuesFilter(query));
-        }
-        if (getDatasetProperty().equalsIgnoreCase(DatasetEntity.PROPERTY_FEATURE)) {
-            DetachedCriteria featureCriteria = addSpatialFilter(query, subquery);
-            return featureCriteria.setProjection(Projections.property(DescribableEntity.PROPERTY_ID));
-        } else {
-            addSpatialFilter(query, subquery);
-            return subquery.createCriteria(getDatasetProperty())
-                    .setProjection(Projections.property(DescribableEntity.PROPERTY_ID));
+    /**
+     * Creates the default criteria including the parameter filters of the query, but without limit, offset and
+     * paging order, e.g. to aggregate over all matching entities. The parameter filters are compiled into the same
+     * dataset subquery as the published, mobile/insitu, dataset type and spatial filters. Subclasses whose
+     * default criteria do not filter via {@link #addDatasetFilters(DbQuery, Criteria, boolean)} have to override
+     * this method.
+     *
+     * @param query
+     *            the query
+     * @return the filtered criteria
+     */
+    protected Criteria getUnpagedFilteredCriteria(DbQuery query) {
+        return createDefaultCriteria(null, query, getEntityClass(), true);
+    }
 
-        }
+    /**
+     * @param query
+     *            the query
+     * @param criteria
+     *            the criteria to add the dataset subquery to
+     * @param parameterFilters
+     *            if the parameter filters of the query shall be compiled into the dataset subquery
+     * @return the criteria for chaining
+     */
+    protected Criteria addDatasetFilters(DbQuery query, Criteria criteria, boolean parameterFilters) {
+        DetachedCriteria filter = new DatasetFilterCompiler(query, session)
+                .withParameterFilters(parameterFilters)
+                .compile(getDatasetProperty());
+        return criteria.add(Subqueries.propertyIn(DescribableEntity.PROPERTY_ID, filter));
     }
 
     protected final Criterion createLastValuesFilter(DbQuery query) {
-        return Restrictions.between(DatasetEntity.PROPERTY_LAST_VALUE_AT,
-                query.getLastValueMatches().getStart().toDate(), query.getLastValueMatches().getEnd().toDate());
+        return DatasetFilterCompiler.createLastValuesFilter(query);
     }
 
     protected final Conjunction createPublishedDatasetFilter() {
-        return Restrictions.and(Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED, true),
-                Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false),
-                Restrictions.isNotNull(DatasetEntity.PROPERTY_FIRST_VALUE_AT),
-                Restrictions.isNotNull(DatasetEntity.PROPERTY_LAST_VALUE_AT));
+        return DatasetFilterCompiler.createPublishedDatasetFilter();
     }
 
     /**
@@ -217,87 +232,42 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
      * @return the detached criteria for chaining
      */
     protected DetachedCriteria addSpatialFilter(DbQuery query, DetachedCriteria criteria) {
-        return query.addSpatialFilter(criteria.createCriteria(DatasetEntity.PROPERTY_FEATURE));
+        return query.addFeatureSpatialFilter(criteria.createCriteria(DatasetEntity.PROPERTY_FEATURE));
 //        return query.addSpatialFilter(criteria);
     }
 
     protected Criteria addSpatialFilter(DbQuery query, Criteria criteria) {
-        return query.addSpatialFilter(criteria.createCriteria(DatasetEntity.PROPERTY_FEATURE));
+        return query.addFeatureSpatialFilter(criteria.createCriteria(DatasetEntity.PROPERTY_FEATURE));
 //        return query.addSpatialFilter(criteria);
     }
 
     protected Criteria addDatasetTypesFilter(String parameter, Criteria criteria, DbQuery query) {
-        IoParameters parameters = query.getParameters();
-        Set<String> datasetTypes = parameters.getDatasetTypes();
-        Set<String> observationsTypes = parameters.getObservationTypes();
-        Set<String> valueTypes = parameters.getValueTypes();
-        if (!datasetTypes.isEmpty() || !observationsTypes.isEmpty() || !valueTypes.isEmpty()) {
-            FilterResolver filterResolver = parameters.getFilterResolver();
-            if (parameters.shallBehaveBackwardsCompatible() || !filterResolver.shallIncludeAllDatasetTypes()) {
-                Criterion containsDatasetType = !datasetTypes.isEmpty()
-                        ? Restrictions.in(DatasetEntity.PROPERTY_DATASET_TYPE, DatasetType.convert(datasetTypes))
-                        : null;
-                Criterion containsObservationType =
-                        !observationsTypes.isEmpty() ? Restrictions.in(DatasetEntity.PROPERTY_OBSERVATION_TYPE,
-                                ObservationType.convert(observationsTypes)) : null;
-                Criterion containsValueType = !valueTypes.isEmpty()
-                        ? Restrictions.in(DatasetEntity.PROPERTY_VALUE_TYPE, ValueType.convert(valueTypes))
-                        : null;
-                if (parameter == null || parameter.isEmpty()) {
-                    // series table itself
-                    if (containsDatasetType != null) {
-                        criteria.add(containsDatasetType);
-                    }
-                    if (containsObservationType != null) {
-                        criteria.add(containsObservationType);
-                    }
-                    if (containsValueType != null) {
-                        criteria.add(containsValueType);
-                    }
-                } else {
-                    ProjectionList onPkids = matchPropertyPkids(DatasetEntity.ENTITY_ALIAS, parameter);
-                    DetachedCriteria c = DetachedCriteria.forClass(DatasetEntity.class, DatasetEntity.ENTITY_ALIAS);
-                    if (containsDatasetType != null) {
-                        c.add(containsDatasetType);
-                    }
-                    if (containsObservationType != null) {
-                        c.add(containsObservationType);
-                    }
-                    if (containsValueType != null) {
-                        c.add(containsValueType);
-                    }
-                    c.setProjection(onPkids);
-                    criteria.add(matchPropertyPkids(parameter, c));
-                }
+        Criterion containsDatasetTypes = DatasetFilterCompiler.createDatasetTypesCriterion(query.getParameters());
+        if (containsDatasetTypes != null) {
+            if (parameter == null || parameter.isEmpty()) {
+                // series table itself
+                criteria.add(containsDatasetTypes);
+            } else {
+                ProjectionList onPkids = matchPropertyPkids(DatasetEntity.ENTITY_ALIAS, parameter);
+                DetachedCriteria c = DetachedCriteria.forClass(DatasetEntity.class, DatasetEntity.ENTITY_ALIAS);
+                c.add(containsDatasetTypes);
+                c.setProjection(onPkids);
+                criteria.add(matchPropertyPkids(parameter, c));
             }
         }
         return criteria;
     }
 
     protected Criteria addMobileInsituFilter(String parameter, Criteria criteria, DbQuery query) {
-        IoParameters parameters = query.getParameters();
-        FilterResolver filterResolver = parameters.getFilterResolver();
-        if (!filterResolver.shallIncludeAllDatasets()) {
-            SimpleExpression mobileExpression = createMobileExpression(filterResolver);
-            SimpleExpression insituExpression = createInsituExpression(filterResolver);
+        Criterion mobileInsitu = DatasetFilterCompiler.createMobileInsituCriterion(query.getParameters());
+        if (mobileInsitu != null) {
             if (parameter == null) {
                 // apply filter directly on table table
-                if (mobileExpression != null) {
-                    criteria.add(mobileExpression);
-                }
-                if (insituExpression != null) {
-                    criteria.add(insituExpression);
-                }
+                criteria.add(mobileInsitu);
             } else {
                 // apply filter on dataset table
                 DetachedCriteria c = DetachedCriteria.forClass(DatasetEntity.class);
-                if (mobileExpression != null) {
-                    c.add(mobileExpression);
-                }
-                if (insituExpression != null) {
-                    c.add(insituExpression);
-                }
-
+                c.add(mobileInsitu);
                 QueryUtils.setFilterProjectionOn(parameter, c);
                 criteria.add(Subqueries.propertyIn(DescribableEntity.PROPERTY_ID, c));
             }
@@ -305,22 +275,6 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
         return criteria;
     }
 
-    private SimpleExpression createMobileExpression(FilterResolver filterResolver) {
-        if (filterResolver.hasMobileFilter()) {
-            boolean mobile = filterResolver.isMobileFilter();
-            return Restrictions.eq(DatasetEntity.PROPERTY_MOBILE, mobile);
-        }
-        return null;
-    }
-
-    private SimpleExpression createInsituExpression(FilterResolver filterResolver) {
-        if (filterResolver.hasInsituFilter()) {
-            boolean insitu = filterResolver.isInsituFilter();
-            return Restrictions.eq(DatasetEntity.PROPERTY_INSITU, insitu);
-        }
-        return null;
-    }
-
     private ProjectionList matchPropertyPkids(String alias, String property) {
         String member = QueryUtils.createAssociation(alias, property);
         String association = QueryUtils.createAssociation(member, DescribableEntity.PROPERTY_ID);
@@ -365,7 +319,9 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
                 }
             }
         }
-        return params != null ? new DbQuery(params) : query;
+        return params != null
+                ? query.withParameters(params)
+                : query;
     }
 
     protected List<String> toStringList(Collection<Long> set) {
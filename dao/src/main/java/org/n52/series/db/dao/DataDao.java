@@ -29,8 +29,12 @@
 package org.n52.series.db.dao;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.time.DateUtils;
@@ -39,19 +43,30 @@ import org.hibernate.Session;
 import org.hibernate.criterion.CriteriaSpecification;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
 import org.joda.time.DateTime;
 import org.n52.io.request.IoParameters;
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.LatestValue;
+import org.n52.series.db.beans.BooleanDataEntity;
+import org.n52.series.db.beans.CategoryDataEntity;
+import org.n52.series.db.beans.CountDataEntity;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.series.db.beans.TextDataEntity;
+import org.n52.series.db.beans.dataset.ValueType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Lists;
+
 /**
  * TODO: JavaDoc
  *
@@ -67,6 +82,8 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
 
     private static final Order DEFAULT_ORDER = Order.asc(DataEntity.PROPERTY_SAMPLING_TIME_END);
 
+    private static final String BULK_DATASET_ALIAS = "bulk_ds";
+
     private final Class<T> entityType;
 
     @SuppressWarnings("unchecked")
@@ -123,7 +140,7 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         DbQuery query = checkLevelParameterForHierarchyQuery(q);
         LOGGER.debug("get all instances for series '{}': {}", dataset, query);
         Criteria criteria = getDefaultCriteria(query);
-        criteria.createCriteria(DataEntity.PROPERTY_DATASET).add(Restrictions.eq(DatasetEntity.PROPERTY_ID, dataset));
+        criteria.add(Restrictions.eq(DataEntity.PROPERTY_DATASET_ID, dataset));
         query.addTimespanTo(criteria);
         return criteria.list();
     }
@@ -136,6 +153,145 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         return criteria.list();
     }
 
+    /**
+     * Resolves the latest values of many datasets at once. Observations are matched via the datasets' last value
+     * time, for multiple observations at that time the one with the latest result time wins. Only the dataset id,
+     * the time and the value are projected, so the dao has to be created for a concrete value entity type (see
+     * {@link #getValueEntityClass(ValueType)}).
+     *
+     * @param datasetIds
+     *        the dataset ids
+     * @return the latest values of the given datasets
+     */
+    @SuppressWarnings("unchecked")
+    public List<LatestValue> getLatestValues(Collection<Long> datasetIds) {
+        String datasetId = QueryUtils.createAssociation(BULK_DATASET_ALIAS, DescribableEntity.PROPERTY_ID);
+        String datasetTime = QueryUtils.createAssociation(BULK_DATASET_ALIAS, DatasetEntity.PROPERTY_LAST_VALUE_AT);
+        ProjectionList projection = Projections.projectionList()
+                                               .add(Projections.property(datasetId))
+                                               .add(Projections.property(DataEntity.PROPERTY_SAMPLING_TIME_END))
+                                               .add(Projections.property(DataEntity.PROPERTY_RESULT_TIME))
+                                               .add(Projections.property(DataEntity.PROPERTY_VALUE));
+        List<Object[]> tuples = new ArrayList<>();
+        for (List<Long> ids : Lists.partition(new ArrayList<>(datasetIds), QueryUtils.MAX_IN_LIST_IDS)) {
+            Criteria criteria = getDefaultCriteria().createAlias(DataEntity.PROPERTY_DATASET, BULK_DATASET_ALIAS)
+                                                    .add(Restrictions.in(datasetId, ids))
+                                                    .add(Restrictions.eqProperty(DataEntity.PROPERTY_SAMPLING_TIME_END,
+                                                                                 datasetTime))
+                                                    .add(Restrictions.isNull(DataEntity.PROPERTY_PARENT))
+                                                    .setProjection(projection);
+            tuples.addAll(criteria.list());
+        }
+        return toLatestValues(tuples);
+    }
+
+    /**
+     * @param tuples
+     *        tuples of dataset id, sampling time end, result time and value
+     * @return the latest value per dataset, preferring the latest result time. Tuples without time or value are
+     *         ignored.
+     */
+    static List<LatestValue> toLatestValues(List<Object[]> tuples) {
+        Map<Long, Object[]> latest = new LinkedHashMap<>();
+        for (Object[] tuple : tuples) {
+            if (tuple[0] != null && tuple[1] != null && tuple[3] != null) {
+                latest.merge((Long) tuple[0], tuple, DataDao::getLaterTuple);
+            }
+        }
+        List<LatestValue> values = new ArrayList<>(latest.size());
+        for (Object[] tuple : latest.values()) {
+            values.add(new LatestValue((Long) tuple[0], ((Date) tuple[1]).getTime(), tuple[3]));
+        }
+        return values;
+    }
+
+    private static Object[] getLaterTuple(Object[] current, Object[] candidate) {
+        Date currentResultTime = (Date) current[2];
+        Date candidateResultTime = (Date) candidate[2];
+        return currentResultTime == null
+                || candidateResultTime != null && candidateResultTime.after(currentResultTime)
+                        ? candidate
+                        : current;
+    }
+
+    /**
+     * @param valueType
+     *        the value type
+     * @return the entity type holding plain values of the given type or {@code null} if values of this type are
+     *         not plain (e.g. profiles or records)
+     */
+    public static Class<? extends DataEntity> getValueEntityClass(ValueType valueType) {
+        if (valueType == null) {
+            return null;
+        }
+        switch (valueType) {
+            case count:
+                return CountDataEntity.class;
+            case quantity:
+                return QuantityDataEntity.class;
+            case text:
+                return TextDataEntity.class;
+            case category:
+                return CategoryDataEntity.class;
+            case bool:
+                return BooleanDataEntity.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Resolves the first observations of many datasets at once, i.e. the observations starting at the datasets'
+     * first value time. For multiple observations at that time the one with the latest result time wins.
+     *
+     * @param datasetIds
+     *        the dataset ids
+     * @return the first observations by dataset id
+     */
+    public Map<Long, T> getFirstObservations(Collection<Long> datasetIds) {
+        return getObservationsAt(datasetIds, DataEntity.PROPERTY_SAMPLING_TIME_START,
+                                 DatasetEntity.PROPERTY_FIRST_VALUE_AT);
+    }
+
+    /**
+     * Resolves the last observations of many datasets at once, i.e. the observations ending at the datasets' last
+     * value time. For multiple observations at that time the one with the latest result time wins.
+     *
+     * @param datasetIds
+     *        the dataset ids
+     * @return the last observations by dataset id
+     */
+    public Map<Long, T> getLastObservations(Collection<Long> datasetIds) {
+        return getObservationsAt(datasetIds, DataEntity.PROPERTY_SAMPLING_TIME_END,
+                                 DatasetEntity.PROPERTY_LAST_VALUE_AT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, T> getObservationsAt(Collection<Long> datasetIds, String column, String datasetProperty) {
+        Map<Long, T> observations = new LinkedHashMap<>();
+        String datasetId = QueryUtils.createAssociation(BULK_DATASET_ALIAS, DescribableEntity.PROPERTY_ID);
+        String datasetTime = QueryUtils.createAssociation(BULK_DATASET_ALIAS, datasetProperty);
+        for (List<Long> ids : Lists.partition(new ArrayList<>(datasetIds), QueryUtils.MAX_IN_LIST_IDS)) {
+            Criteria criteria = getDefaultCriteria().createAlias(DataEntity.PROPERTY_DATASET, BULK_DATASET_ALIAS)
+                                                    .add(Restrictions.in(datasetId, ids))
+                                                    .add(Restrictions.eqProperty(column, datasetTime))
+                                                    .add(Restrictions.isNull(DataEntity.PROPERTY_PARENT));
+            for (T data : (List<T>) criteria.list()) {
+                observations.merge(data.getDataset().getId(), data, this::getLaterResult);
+            }
+        }
+        return observations;
+    }
+
+    private T getLaterResult(T current, T candidate) {
+        Date currentResultTime = current.getResultTime();
+        Date candidateResultTime = candidate.getResultTime();
+        return currentResultTime == null
+                || candidateResultTime != null && candidateResultTime.after(currentResultTime)
+                        ? candidate
+                        : current;
+    }
+
     @SuppressWarnings("unchecked")
     public T getClosestOuterPreviousValue(final DatasetEntity dataset, final DateTime lowerBound, final DbQuery query) {
         final String column = DataEntity.PROPERTY_SAMPLING_TIME_START;
@@ -188,7 +344,7 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
 
         query.addSpatialFilter(criteria);
         query.addResultTimeFilter(criteria);
-        query.addOdataFilterForData(criteria);
+        query.addOdataFilterForData(criteria, entityType);
 
 //        criteria = query.isComplexParent()
 //                ? criteria.add(Restrictions.isNull(DataEntity.PROPERTY_PARENT))
@@ -28,19 +28,19 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.DetachedCriteria;
-import org.hibernate.criterion.MoreRestrictions;
 import org.hibernate.criterion.Projections;
-import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.dataset.ValueType;
 import org.n52.shetland.ogc.filter.ComparisonFilter;
 import org.n52.shetland.ogc.filter.Filter;
 import org.n52.shetland.ogc.filter.SpatialFilter;
@@ -53,6 +53,12 @@ import org.n52.shetland.ogc.filter.SpatialFilter;
  */
 public class DataFESCriterionGenerator extends FESCriterionGenerator {
 
+    private static final String DATASET_ALIAS = "odf_ds";
+
+    private final Class<?> entityClass;
+
+    private String datasetAlias;
+
     /**
      * Creates a new {@code DataFESCriterionGenerator}.
      *
@@ -71,18 +77,48 @@ public class DataFESCriterionGenerator extends FESCriterionGenerator {
                                      boolean unsupportedIsTrue,
                                      boolean matchDomainIds,
                                      boolean complexParent) {
-        super(criteria, unsupportedIsTrue, matchDomainIds, complexParent);
+        this(criteria, unsupportedIsTrue, matchDomainIds, complexParent, Collections.emptySet(), null);
+    }
+
+    /**
+     * Creates a new {@code DataFESCriterionGenerator}.
+     *
+     * @param criteria
+     *        the criteria
+     * @param unsupportedIsTrue
+     *        if the generator encounters a filter expression it could not translate it may generate a
+     *        criterion that is always {@code true} or always {@code false} depending on this flag
+     * @param matchDomainIds
+     *        if filter on observation parameters like feature, offering or procedure should match on
+     *        their respective domain identifiers or on the primary keys in the database
+     * @param complexParent
+     *        if the queries should result in the parent observation and hide the child observations
+     * @param valueTypes
+     *        the value types of the filtered datasets, an empty set queries all types
+     * @param entityClass
+     *        the data entity class the criteria is created for, may be {@code null}
+     */
+    public DataFESCriterionGenerator(Criteria criteria,
+                                     boolean unsupportedIsTrue,
+                                     boolean matchDomainIds,
+                                     boolean complexParent,
+                                     Collection<ValueType> valueTypes,
+                                     Class<?> entityClass) {
+        super(criteria, unsupportedIsTrue, matchDomainIds, complexParent, valueTypes);
+        this.entityClass = entityClass;
     }
 
     @Override
     protected Criterion createResultCriterion(ComparisonFilter filter) {
-        return getResultSubqueries(filter)
+        Optional<Criterion> direct = getDirectResultCriterion(filter, entityClass);
+        if (direct.isPresent()) {
+            return direct.get();
+        }
+        return createResultDisjunction(getResultSubqueries(filter)
                                           // just get the ID
                                           .map(q -> q.setProjection(Projections.property(DataEntity.PROPERTY_ID)))
                                           // create a property IN expression for each query
-                                          .map(q -> Subqueries.propertyIn(DataEntity.PROPERTY_ID, q))
-                                          // and wrap everything into a disjunction
-                                          .collect(MoreRestrictions.toDisjunction());
+                                          .map(q -> Subqueries.propertyIn(DataEntity.PROPERTY_ID, q)));
     }
 
     @Override
@@ -92,13 +128,13 @@ public class DataFESCriterionGenerator extends FESCriterionGenerator {
 
     @Override
     protected Criterion createDatasetCriterion(String property, ComparisonFilter filter) {
-
+        String alias = addDatasetAlias(property);
         Object value;
         if (isMatchDomainIds()) {
-            filter.setValueReference(DescribableEntity.PROPERTY_DOMAIN_ID);
+            filter.setValueReference(QueryUtils.createAssociation(alias, DescribableEntity.PROPERTY_DOMAIN_ID));
             value = filter.getValue();
         } else {
-            filter.setValueReference(DescribableEntity.PROPERTY_ID);
+            filter.setValueReference(QueryUtils.createAssociation(alias, DescribableEntity.PROPERTY_ID));
             Optional<Long> id = parseLong(filter.getValue());
             if (!id.isPresent()) {
                 return unsupported(filter);
@@ -106,34 +142,35 @@ public class DataFESCriterionGenerator extends FESCriterionGenerator {
             value = id.get();
         }
 
-        return createDatasetCriterion(property, createComparison(filter, value));
+        return createComparison(filter, value);
     }
 
     @Override
     protected Criterion createDatasetCriterion(String property, SpatialFilter filter) {
-        return createDatasetCriterion(property, createSpatialFilterCriterion(filter));
+        String alias = addDatasetAlias(property);
+        filter.setValueReference(QueryUtils.createAssociation(alias, filter.getValueReference()));
+        return createSpatialFilterCriterion(filter);
     }
 
     /**
-     * Return a criterion for the {@linkplain DataEntity data entity} that applies {@code criterion} to the
-     * supplied
-     * {@code property} of the {@linkplain DatasetEntity dataset}.
+     * Joins the {@linkplain DatasetEntity dataset} and the supplied {@code property} of it to the data criteria,
+     * so that all dataset predicates are applied to the same joined row instead of one {@code IN} subquery per
+     * predicate. The {@code deleted} and {@code published} conditions are added once, when the dataset is joined.
      *
      * @param property
      *        the property of the dataset
-     * @param criterion
-     *        the criterion to apply
-     * @return the data entity criterion
+     * @return the alias of the joined property
      */
-    private Criterion createDatasetCriterion(String property, Criterion criterion) {
-        DetachedCriteria subquery = DetachedCriteria.forClass(DatasetEntity.class)
-                                                    .setProjection(Property.forName(DatasetEntity.PROPERTY_ID))
-                                                    .add(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, Boolean.FALSE))
-                                                    .add(Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED,
-                                                                         Boolean.TRUE))
-                                                    .createCriteria(property)
-                                                    .add(criterion);
-
-        return Subqueries.propertyIn(DataEntity.PROPERTY_DATASET, subquery);
+    private String addDatasetAlias(String property) {
+        if (datasetAlias == null) {
+            datasetAlias = addAlias(DataEntity.PROPERTY_DATASET, DATASET_ALIAS);
+            getCriteria().add(Restrictions.eq(QueryUtils.createAssociation(datasetAlias,
+                                                                           DatasetEntity.PROPERTY_DELETED),
+                                              Boolean.FALSE))
+                         .add(Restrictions.eq(QueryUtils.createAssociation(datasetAlias,
+                                                                           DatasetEntity.PROPERTY_PUBLISHED),
+                                              Boolean.TRUE));
+        }
+        return addAlias(QueryUtils.createAssociation(datasetAlias, property), datasetAlias + "_" + property);
     }
 }
@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.Session;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.beans.dataset.DatasetType;
+import org.n52.series.db.beans.dataset.ObservationType;
+import org.n52.series.db.beans.dataset.ValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory snapshot of the dataset catalogue. For each published dataset the snapshot holds the ids of the
+ * related phenomenon, procedure, offering, feature, category and platform (including the parents of hierarchical
+ * parameters) as well as the dataset, observation and value type. Each parameter value is mapped to a bitmap of
+ * dataset positions, so that filter combinations are evaluated as bitmap unions and intersections and the SQL
+ * query only has to restrict on the resulting dataset ids.
+ *
+ * The snapshot is checked for changes of the dataset table after a configurable interval and rebuilt if the
+ * signature of the published datasets changed (see {@link DatasetDao#getCatalogueSignature()}), or once it is
+ * older than the configured refresh interval. Requests arriving during a rebuild keep using the previous snapshot.
+ */
+public class DatasetCatalogue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetCatalogue.class);
+
+    private static final long DEFAULT_CHECK_SECONDS = 30;
+
+    private static final long DEFAULT_REFRESH_SECONDS = 3600;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private boolean enabled;
+
+    private long checkSeconds = DEFAULT_CHECK_SECONDS;
+
+    private long refreshSeconds = DEFAULT_REFRESH_SECONDS;
+
+    private int maxIds = QueryUtils.MAX_IN_LIST_IDS;
+
+    private volatile Snapshot snapshot;
+
+    private volatile List<Object> signature;
+
+    private volatile long lastCheck;
+
+    private volatile long lastBuild;
+
+    public enum Dimension {
+        PHENOMENON,
+        PROCEDURE,
+        PROCEDURE_PARENT,
+        OFFERING,
+        OFFERING_PARENT,
+        FEATURE,
+        FEATURE_PARENT,
+        CATEGORY,
+        PLATFORM,
+        DATASET_TYPE,
+        OBSERVATION_TYPE,
+        VALUE_TYPE
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getCheckSeconds() {
+        return checkSeconds;
+    }
+
+    public void setCheckSeconds(long checkSeconds) {
+        this.checkSeconds = checkSeconds;
+    }
+
+    public long getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    public void setRefreshSeconds(long refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    /**
+     * @param maxIds
+     *        the maximum number of matching dataset ids passed to the database. Larger results are left to the
+     *        SQL filters.
+     */
+    public void setMaxIds(int maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Forces a rebuild of the snapshot on next access, e.g. after datasets have been changed.
+     */
+    public void invalidate() {
+        lastCheck = 0;
+        lastBuild = 0;
+    }
+
+    /**
+     * Evaluates the parameter filters of the given query against the catalogue snapshot.
+     *
+     * @param query
+     *        the query
+     * @param includeTypes
+     *        if the dataset, observation and value type filters shall be evaluated as well
+     * @param session
+     *        the session used to check for changes and to (re)build the snapshot
+     * @return the ids of the matching datasets or {@code null} if the catalogue cannot answer the query, e.g.
+     *         when disabled, when matching domain ids, when no filter applies or when too many datasets match
+     */
+    public Set<Long> getDatasetIds(DbQuery query, boolean includeTypes, Session session) {
+        IoParameters parameters = query.getParameters();
+        if (!enabled || session == null || query.isMatchDomainIds()
+                || hasValues(parameters.getSamplings())
+                || hasValues(parameters.getMeasuringPrograms())) {
+            return null;
+        }
+        Map<Dimension, Set<String>> filters = createFilters(query, includeTypes);
+        Set<String> datasets = parameters.getDatasets();
+        if (filters.isEmpty() && !hasValues(datasets)) {
+            return null;
+        }
+        Snapshot current = getSnapshot(session);
+        BitSet matches = current.select(filters, query.isIncludeHierarchy());
+        if (hasValues(datasets)) {
+            matches.and(current.positionsOf(datasets));
+        }
+        if (matches.cardinality() > maxIds) {
+            return null;
+        }
+        return current.toIds(matches);
+    }
+
+    private Map<Dimension, Set<String>> createFilters(DbQuery query, boolean includeTypes) {
+        IoParameters parameters = query.getParameters();
+        Map<Dimension, Set<String>> filters = new EnumMap<>(Dimension.class);
+        addFilter(filters, Dimension.PHENOMENON, parameters.getPhenomena());
+        addFilter(filters, Dimension.PROCEDURE, parameters.getProcedures());
+        addFilter(filters, Dimension.OFFERING, parameters.getOfferings());
+        addFilter(filters, Dimension.FEATURE, parameters.getFeatures());
+        addFilter(filters, Dimension.CATEGORY, parameters.getCategories());
+        addFilter(filters, Dimension.PLATFORM, parameters.getPlatforms());
+        if (includeTypes && DatasetFilterCompiler.createDatasetTypesCriterion(parameters) != null) {
+            // convert the types the same way as the SQL filter does
+            addFilter(filters, Dimension.DATASET_TYPE,
+                      toTypeKeys(DatasetType.convert(parameters.getDatasetTypes())));
+            addFilter(filters, Dimension.OBSERVATION_TYPE,
+                      toTypeKeys(ObservationType.convert(parameters.getObservationTypes())));
+            addFilter(filters, Dimension.VALUE_TYPE,
+                      toTypeKeys(ValueType.convert(parameters.getValueTypes())));
+        }
+        return filters;
+    }
+
+    private void addFilter(Map<Dimension, Set<String>> filters, Dimension dimension, Set<String> values) {
+        if (hasValues(values)) {
+            filters.put(dimension, values);
+        }
+    }
+
+    private Set<String> toTypeKeys(Collection<? extends Enum<?>> types) {
+        Set<String> keys = new HashSet<>();
+        for (Enum<?> type : types) {
+            if (type != null) {
+                keys.add(Snapshot.toKey(type));
+            }
+        }
+        return keys;
+    }
+
+    private static boolean hasValues(Set<String> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    private Snapshot getSnapshot(Session session) {
+        Snapshot current = snapshot;
+        if (current != null && !isElapsed(lastCheck, checkSeconds)) {
+            return current;
+        }
+        if (current == null) {
+            // nothing to fall back on, wait for the first build
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            return current;
+        }
+        try {
+            if (snapshot == null || isElapsed(lastCheck, checkSeconds)) {
+                DatasetDao<DatasetEntity> dao = new DatasetDao<>(session);
+                List<Object> currentSignature = dao.getCatalogueSignature();
+                if (snapshot == null
+                        || !Objects.equals(signature, currentSignature)
+                        || isElapsed(lastBuild, refreshSeconds)) {
+                    snapshot = build(dao, session);
+                    signature = currentSignature;
+                    lastBuild = System.currentTimeMillis();
+                }
+                lastCheck = System.currentTimeMillis();
+            }
+            return snapshot;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean isElapsed(long since, long seconds) {
+        return System.currentTimeMillis() - since > TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    private Snapshot build(DatasetDao<DatasetEntity> dao, Session session) {
+        long start = System.currentTimeMillis();
+        Snapshot.Builder builder = Snapshot.builder();
+        for (Object[] tuple : dao.getCatalogueEntries()) {
+            long id = (Long) tuple[0];
+            builder.add(id, Dimension.PHENOMENON, tuple[1]);
+            builder.add(id, Dimension.PROCEDURE, tuple[2]);
+            builder.add(id, Dimension.OFFERING, tuple[3]);
+            builder.add(id, Dimension.FEATURE, tuple[4]);
+            builder.add(id, Dimension.CATEGORY, tuple[5]);
+            builder.add(id, Dimension.PLATFORM, tuple[6]);
+            builder.add(id, Dimension.DATASET_TYPE, tuple[7]);
+            builder.add(id, Dimension.OBSERVATION_TYPE, tuple[8]);
+            builder.add(id, Dimension.VALUE_TYPE, tuple[9]);
+        }
+        addParents(builder, dao, DatasetEntity.PROPERTY_FEATURE, Dimension.FEATURE_PARENT);
+        if (DataModelUtil.isPropertyNameSupported(ProcedureEntity.PROPERTY_PARENTS, ProcedureEntity.class, session)) {
+            addParents(builder, dao, DatasetEntity.PROPERTY_PROCEDURE, Dimension.PROCEDURE_PARENT);
+        }
+        if (DataModelUtil.isPropertyNameSupported(OfferingEntity.PROPERTY_PARENTS, OfferingEntity.class, session)) {
+            addParents(builder, dao, DatasetEntity.PROPERTY_OFFERING, Dimension.OFFERING_PARENT);
+        }
+        Snapshot built = builder.build();
+        LOGGER.debug("Building dataset catalogue of {} datasets takes {} ms", built.size(),
+                     System.currentTimeMillis() - start);
+        return built;
+    }
+
+    private void addParents(Snapshot.Builder builder,
+                            DatasetDao<DatasetEntity> dao,
+                            String property,
+                            Dimension dimension) {
+        for (Object[] tuple : dao.getParentEntries(property)) {
+            builder.add((Long) tuple[0], dimension, tuple[1]);
+        }
+    }
+
+    /**
+     * Immutable bitmap index of the dataset catalogue. Datasets are identified by their position within the
+     * sorted array of dataset ids.
+     */
+    public static final class Snapshot {
+
+        private final long[] datasetIds;
+
+        private final Map<Dimension, Map<String, BitSet>> bitmaps;
+
+        private Snapshot(long[] datasetIds, Map<Dimension, Map<String, BitSet>> bitmaps) {
+            this.datasetIds = datasetIds;
+            this.bitmaps = bitmaps;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public int size() {
+            return datasetIds.length;
+        }
+
+        /**
+         * @param filters
+         *        the values to filter for per dimension. Values of a dimension are united, dimensions are
+         *        intersected.
+         * @param includeHierarchy
+         *        if values of the feature, procedure and offering dimensions shall also match their children
+         * @return the positions of the matching datasets
+         */
+        public BitSet select(Map<Dimension, Set<String>> filters, boolean includeHierarchy) {
+            BitSet result = new BitSet(datasetIds.length);
+            result.set(0, datasetIds.length);
+            for (Map.Entry<Dimension, Set<String>> filter : filters.entrySet()) {
+                Dimension dimension = filter.getKey();
+                BitSet selected = select(dimension, filter.getValue());
+                if (includeHierarchy) {
+                    Dimension parent = getParentDimension(dimension);
+                    if (parent != null) {
+                        selected.or(select(parent, filter.getValue()));
+                    }
+                }
+                result.and(selected);
+            }
+            return result;
+        }
+
+        /**
+         * @param dimension
+         *        the dimension
+         * @param values
+         *        the values to select
+         * @return the positions of the datasets matching any of the given values
+         */
+        public BitSet select(Dimension dimension, Collection<String> values) {
+            BitSet result = new BitSet(datasetIds.length);
+            Map<String, BitSet> valueBitmaps = bitmaps.get(dimension);
+            if (valueBitmaps != null) {
+                for (String value : values) {
+                    BitSet bitmap = valueBitmaps.get(value);
+                    if (bitmap != null) {
+                        result.or(bitmap);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @param ids
+         *        the dataset ids
+         * @return the positions of the given datasets, unknown or non-numeric ids are ignored
+         */
+        public BitSet positionsOf(Collection<String> ids) {
+            BitSet result = new BitSet(datasetIds.length);
+            for (String id : ids) {
+                try {
+                    int position = Arrays.binarySearch(datasetIds, Long.parseLong(id));
+                    if (position >= 0) {
+                        result.set(position);
+                    }
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring non-numeric dataset id '{}'.", id);
+                }
+            }
+            return result;
+        }
+
+        public Set<Long> toIds(BitSet positions) {
+            Set<Long> ids = new HashSet<>(positions.cardinality() * 2);
+            for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                ids.add(datasetIds[i]);
+            }
+            return ids;
+        }
+
+        static String toKey(Enum<?> type) {
+            return type.name();
+        }
+
+        private static Dimension getParentDimension(Dimension dimension) {
+            switch (dimension) {
+                case FEATURE:
+                    return Dimension.FEATURE_PARENT;
+                case PROCEDURE:
+                    return Dimension.PROCEDURE_PARENT;
+                case OFFERING:
+                    return Dimension.OFFERING_PARENT;
+                default:
+                    return null;
+            }
+        }
+
+        public static final class Builder {
+
+            private final Set<Long> datasetIds = new TreeSet<>();
+
+            private final Map<Dimension, Map<String, List<Long>>> values = new EnumMap<>(Dimension.class);
+
+            private Builder() {
+            }
+
+            /**
+             * @param datasetId
+             *        the dataset id
+             * @param dimension
+             *        the dimension
+             * @param value
+             *        the related id or type, ignored if {@code null}
+             * @return this builder
+             */
+            public Builder add(long datasetId, Dimension dimension, Object value) {
+                datasetIds.add(datasetId);
+                if (value != null) {
+                    String key = value instanceof Enum
+                            ? toKey((Enum<?>) value)
+                            : value.toString();
+                    values.computeIfAbsent(dimension, d -> new HashMap<>())
+                          .computeIfAbsent(key.intern(), k -> new ArrayList<>())
+                          .add(datasetId);
+                }
+                return this;
+            }
+
+            public Snapshot build() {
+                long[] ids = datasetIds.stream()
+                                       .mapToLong(Long::longValue)
+                                       .toArray();
+                Map<Dimension, Map<String, BitSet>> bitmaps = new EnumMap<>(Dimension.class);
+                for (Map.Entry<Dimension, Map<String, List<Long>>> dimension : values.entrySet()) {
+                    Map<String, BitSet> valueBitmaps = new HashMap<>();
+                    for (Map.Entry<String, List<Long>> value : dimension.getValue().entrySet()) {
+                        BitSet bitmap = new BitSet(ids.length);
+                        for (Long id : value.getValue()) {
+                            bitmap.set(Arrays.binarySearch(ids, id));
+                        }
+                        valueBitmaps.put(value.getKey(), bitmap);
+                    }
+                    bitmaps.put(dimension.getKey(), valueBitmaps);
+                }
+                return new Snapshot(ids, bitmaps);
+            }
+
+        }
+
+    }
+
+}
@@ -28,19 +28,36 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.sql.JoinType;
 import org.hibernate.transform.ResultTransformer;
+import org.hibernate.transform.Transformers;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+import org.joda.time.Interval;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.DatasetChangeMarker;
+import org.n52.series.db.DatasetDescriptor;
 import org.n52.series.db.DatasetTypesMetadata;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
@@ -61,6 +78,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Lists;
+
 @Transactional
 public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implements SearchableDao<T> {
 
@@ -73,6 +92,66 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
     private static final String FIRST_OBSERVATION_ALIAS = "firstObservation";
     private static final String LAST_OBSERVATION_ALIAS = "lastObservation";
     private static final String PARAMETERS_ALIAS = "parameters";
+    private static final String PROPERTY_PARENTS = "parents";
+    private static final String PROPERTY_REFERENCE_VALUES = "referenceValues";
+    private static final String PROPERTY_ORIGIN_TIMEZONE = "originTimezone";
+
+    private static final String FIELD_LABEL = "label";
+    private static final String FIELD_DOMAIN_ID = "domainId";
+    private static final String FIELD_FEATURE = "feature";
+    private static final String FIELD_UOM = "uom";
+    private static final String FIELD_HAS_SAMPLINGS = "hasSamplings";
+    private static final String FIELD_MOBILE = "mobile";
+    private static final String FIELD_INSITU = "insitu";
+    private static final String FIELD_ORIGIN_TIMEZONE = "originTimezone";
+    private static final String FIELD_SAMPLING_TIME_START = "samplingTimeStart";
+    private static final String FIELD_SAMPLING_TIME_END = "samplingTimeEnd";
+
+    private static final String[] PROJECTABLE_FIELDS = {
+        "id",
+        FIELD_LABEL,
+        FIELD_DOMAIN_ID,
+        "href",
+        "hrefBase",
+        "datasetType",
+        "observationType",
+        "valueType",
+        FIELD_MOBILE,
+        FIELD_INSITU,
+        FIELD_ORIGIN_TIMEZONE,
+        FIELD_SAMPLING_TIME_START,
+        FIELD_SAMPLING_TIME_END
+    };
+
+    /**
+     * Prime the dataset ids are reduced by before weighting foreign keys, keeping the checksums small.
+     */
+    private static final int SIGNATURE_MODULUS = 1009;
+
+    private static final String CHANGE_CHECKSUM_ALIAS = "cm_checksum";
+
+    private static final String[] CHANGE_MARKER_PROPERTIES = {DescribableEntity.PROPERTY_ID,
+                                                              DatasetEntity.PROPERTY_FIRST_VALUE_AT,
+                                                              DatasetEntity.PROPERTY_LAST_VALUE_AT,
+                                                              DescribableEntity.PROPERTY_NAME,
+                                                              DatasetEntity.PROPERTY_UNIT,
+                                                              FIRST_OBSERVATION_ALIAS,
+                                                              LAST_OBSERVATION_ALIAS};
+
+    /**
+     * The parameters the dataset label is composed of.
+     */
+    private static final String[] LABEL_PROPERTIES = {DatasetEntity.PROPERTY_PHENOMENON,
+                                                      DatasetEntity.PROPERTY_PROCEDURE,
+                                                      DatasetEntity.PROPERTY_OFFERING,
+                                                      DatasetEntity.PROPERTY_FEATURE};
+
+    private static final String[] PARAMETER_PROPERTIES = {DatasetEntity.PROPERTY_FEATURE,
+                                                              DatasetEntity.PROPERTY_PHENOMENON,
+                                                              DatasetEntity.PROPERTY_PROCEDURE,
+                                                              DatasetEntity.PROPERTY_OFFERING,
+                                                              DatasetEntity.PROPERTY_CATEGORY,
+                                                              DatasetEntity.PROPERTY_PLATFORM};
 
     private final Class<T> entityType;
 
@@ -135,8 +214,17 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
     public List<T> getAllInstances(DbQuery q) throws DataAccessException {
         DbQuery query = checkLevelParameterForHierarchyQuery(q);
         LOGGER.debug("get all instances: {}", query);
-        Criteria criteria = query.addFilters(getDefaultCriteria(query), getDatasetProperty(), session);
-        addFetchModes(criteria, q);
+        Set<Long> coveredDatasetIds = query.getCoveredDatasetIds();
+        if (coveredDatasetIds != null && coveredDatasetIds.isEmpty()) {
+            LOGGER.debug("No dataset covers the requested timespan.");
+            return Collections.emptyList();
+        }
+        Criteria criteria = createAllInstancesCriteria(query);
+        if (isProjectable(q)) {
+            addProjection(criteria, q);
+        } else {
+            addFetchModes(criteria, q);
+        }
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(toSQLString(criteria));
         }
@@ -148,6 +236,265 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
         }
     }
 
+    /**
+     * @param q
+     *        the query
+     * @return the ids of all datasets matching the given query
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> getAllIds(DbQuery q) {
+        DbQuery query = checkLevelParameterForHierarchyQuery(q);
+        Set<Long> coveredDatasetIds = query.getCoveredDatasetIds();
+        if (coveredDatasetIds != null && coveredDatasetIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return createAllInstancesCriteria(query).setProjection(Projections.distinct(Projections.id()))
+                                                .list();
+    }
+
+    /**
+     * @param q
+     *        the query
+     * @return the ids of all datasets matching the given query, grouped by value type
+     */
+    @SuppressWarnings("unchecked")
+    public Map<ValueType, List<Long>> getAllIdsByValueType(DbQuery q) {
+        DbQuery query = checkLevelParameterForHierarchyQuery(q);
+        Set<Long> coveredDatasetIds = query.getCoveredDatasetIds();
+        if (coveredDatasetIds != null && coveredDatasetIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Object[]> tuples = createAllInstancesCriteria(query)
+                .setProjection(Projections.distinct(Projections.projectionList()
+                                                               .add(Projections.id())
+                                                               .add(Projections.property(
+                                                                       DatasetEntity.PROPERTY_VALUE_TYPE))))
+                .list();
+        Map<ValueType, List<Long>> ids = new EnumMap<>(ValueType.class);
+        for (Object[] tuple : tuples) {
+            if (tuple[1] != null) {
+                ids.computeIfAbsent((ValueType) tuple[1], v -> new ArrayList<>())
+                   .add((Long) tuple[0]);
+            }
+        }
+        return ids;
+    }
+
+    private Criteria createAllInstancesCriteria(DbQuery query) {
+        Criteria criteria = query.addFilters(getDefaultCriteria(query), getDatasetProperty(), session);
+        Set<Long> coveredDatasetIds = query.getCoveredDatasetIds();
+        Interval coveredTimespan = query.getCoveredTimespan();
+        if (coveredDatasetIds != null) {
+            criteria.add(QueryUtils.createChunkedIn(DescribableEntity.PROPERTY_ID, coveredDatasetIds));
+        } else if (coveredTimespan != null) {
+            criteria.add(Restrictions.le(DatasetEntity.PROPERTY_FIRST_VALUE_AT, coveredTimespan.getEnd().toDate()))
+                    .add(Restrictions.ge(DatasetEntity.PROPERTY_LAST_VALUE_AT, coveredTimespan.getStart().toDate()));
+        }
+        return criteria;
+    }
+
+    /**
+     * @return tuples of id, first and last value time of all published datasets having data
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getTimeCoverage() {
+        Criteria criteria = session.createCriteria(DatasetEntity.class)
+                                   .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                                   .setProjection(Projections.projectionList()
+                                                             .add(Projections.id())
+                                                             .add(Projections.property(
+                                                                     DatasetEntity.PROPERTY_FIRST_VALUE_AT))
+                                                             .add(Projections.property(
+                                                                     DatasetEntity.PROPERTY_LAST_VALUE_AT)));
+        return criteria.list();
+    }
+
+    /**
+     * Creates a cheap signature of the published datasets which changes whenever a dataset is published, added,
+     * removed or moved to another parameter or type. Besides the number, the highest id and the sum of the ids,
+     * the signature contains a checksum per parameter weighting each foreign key by its dataset's id, as well
+     * as the number and id sum of datasets per type combination.
+     *
+     * @return the signature of the published datasets
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> getCatalogueSignature() {
+        ProjectionList projections = Projections.projectionList()
+                                                .add(Projections.rowCount())
+                                                .add(Projections.max(DescribableEntity.PROPERTY_ID))
+                                                .add(Projections.sum(DescribableEntity.PROPERTY_ID));
+        String idColumn = DataModelUtil.getColumnName(DescribableEntity.PROPERTY_ID, DatasetEntity.class, session);
+        for (String property : PARAMETER_PROPERTIES) {
+            String column = DataModelUtil.getColumnName(property, DatasetEntity.class, session);
+            if (idColumn != null && column != null) {
+                String alias = "cs_" + property;
+                String checksum = "sum(mod({alias}." + idColumn + ", " + SIGNATURE_MODULUS + ") * {alias}." + column
+                        + ") as " + alias;
+                projections.add(Projections.sqlProjection(checksum,
+                                                          new String[] {alias},
+                                                          new Type[] {StandardBasicTypes.LONG}));
+            }
+        }
+        Object[] totals = (Object[]) session.createCriteria(DatasetEntity.class)
+                                            .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                                            .setProjection(projections)
+                                            .uniqueResult();
+        List<Object[]> types = session.createCriteria(DatasetEntity.class)
+                                      .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                                      .setProjection(Projections.projectionList()
+                                                                .add(Projections.groupProperty(
+                                                                        DatasetEntity.PROPERTY_DATASET_TYPE))
+                                                                .add(Projections.groupProperty(
+                                                                        DatasetEntity.PROPERTY_OBSERVATION_TYPE))
+                                                                .add(Projections.groupProperty(
+                                                                        DatasetEntity.PROPERTY_VALUE_TYPE))
+                                                                .add(Projections.rowCount())
+                                                                .add(Projections.sum(DescribableEntity.PROPERTY_ID)))
+                                      .list();
+        List<Object> signature = new ArrayList<>(Arrays.asList(totals));
+        types.stream()
+             .map(Arrays::asList)
+             .map(Object::toString)
+             .sorted()
+             .forEach(signature::add);
+        return signature;
+    }
+
+    /**
+     * @return tuples of id, phenomenon, procedure, offering, feature, category and platform id as well as the
+     *         dataset, observation and value type of all published datasets
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getCatalogueEntries() {
+        Criteria criteria = session.createCriteria(DatasetEntity.class)
+                                   .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                                   .setProjection(Projections.projectionList()
+                                                             .add(Projections.id())
+                                                             .add(createIdProjection(
+                                                                     DatasetEntity.PROPERTY_PHENOMENON))
+                                                             .add(createIdProjection(
+                                                                     DatasetEntity.PROPERTY_PROCEDURE))
+                                                             .add(createIdProjection(
+                                                                     DatasetEntity.PROPERTY_OFFERING))
+                                                             .add(createIdProjection(
+                                                                     DatasetEntity.PROPERTY_FEATURE))
+                                                             .add(createIdProjection(
+                                                                     DatasetEntity.PROPERTY_CATEGORY))
+                                                             .add(createIdProjection(
+                                                                     DatasetEntity.PROPERTY_PLATFORM))
+                                                             .add(Projections.property(
+                                                                     DatasetEntity.PROPERTY_DATASET_TYPE))
+                                                             .add(Projections.property(
+                                                                     DatasetEntity.PROPERTY_OBSERVATION_TYPE))
+                                                             .add(Projections.property(
+                                                                     DatasetEntity.PROPERTY_VALUE_TYPE)));
+        return criteria.list();
+    }
+
+    /**
+     * @param property
+     *        the hierarchical dataset property, i.e. feature, procedure or offering
+     * @return tuples of dataset id and parent id of the given property of all published datasets
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getParentEntries(String property) {
+        String alias = property + "_e";
+        String parents = property + "_p";
+        Criteria criteria = session.createCriteria(DatasetEntity.class)
+                                   .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                                   .createAlias(property, alias)
+                                   .createAlias(QueryUtils.createAssociation(alias, PROPERTY_PARENTS), parents)
+                                   .setProjection(Projections.projectionList()
+                                                             .add(Projections.id())
+                                                             .add(Projections.property(QueryUtils.createAssociation(
+                                                                     parents, DescribableEntity.PROPERTY_ID))));
+        return criteria.list();
+    }
+
+    private Projection createIdProjection(String property) {
+        return Projections.property(QueryUtils.createAssociation(property, DescribableEntity.PROPERTY_ID));
+    }
+
+    /**
+     * Describes the published datasets in a single query per chunk of ids. Reference values are joined and
+     * counted instead of being loaded.
+     *
+     * @param ids
+     *        the ids of the datasets to describe or {@code null} to describe all published datasets
+     * @return the descriptors of the published datasets
+     */
+    public List<DatasetDescriptor> getDescriptors(Collection<Long> ids) {
+        if (ids == null) {
+            return getDescriptors(createDescriptorCriteria());
+        }
+        List<DatasetDescriptor> descriptors = new ArrayList<>();
+        for (List<Long> chunk : Lists.partition(new ArrayList<>(ids), QueryUtils.MAX_IN_LIST_IDS)) {
+            descriptors.addAll(getDescriptors(createDescriptorCriteria()
+                    .add(Restrictions.in(DescribableEntity.PROPERTY_ID, chunk))));
+        }
+        return descriptors;
+    }
+
+    private Criteria createDescriptorCriteria() {
+        String referenceValueId =
+                QueryUtils.createAssociation(PROPERTY_REFERENCE_VALUES, DescribableEntity.PROPERTY_ID);
+        return session.createCriteria(DatasetEntity.class)
+                      .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                      .createAlias(PROPERTY_REFERENCE_VALUES, PROPERTY_REFERENCE_VALUES, JoinType.LEFT_OUTER_JOIN)
+                      .setProjection(Projections.projectionList()
+                                                .add(Projections.groupProperty(DescribableEntity.PROPERTY_ID))
+                                                .add(Projections.groupProperty(DatasetEntity.PROPERTY_DATASET_TYPE))
+                                                .add(Projections.groupProperty(
+                                                        DatasetEntity.PROPERTY_OBSERVATION_TYPE))
+                                                .add(Projections.groupProperty(DatasetEntity.PROPERTY_VALUE_TYPE))
+                                                .add(Projections.groupProperty(
+                                                        DatasetEntity.PROPERTY_FIRST_VALUE_AT))
+                                                .add(Projections.groupProperty(DatasetEntity.PROPERTY_LAST_VALUE_AT))
+                                                .add(Projections.count(referenceValueId)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DatasetDescriptor> getDescriptors(Criteria criteria) {
+        List<Object[]> tuples = criteria.list();
+        return tuples.stream()
+                     .map(t -> new DatasetDescriptor((Long) t[0],
+                                                     (DatasetType) t[1],
+                                                     (ObservationType) t[2],
+                                                     (ValueType) t[3],
+                                                     (Date) t[4],
+                                                     (Date) t[5],
+                                                     ((Number) t[6]).longValue() > 0))
+                     .collect(Collectors.toList());
+    }
+
+    /**
+     * @param featureIds
+     *        the feature ids
+     * @return tuples of feature id and platform id of all published datasets of the given features, ordered by
+     *         platform id
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getPlatformIdsByFeature(Collection<Long> featureIds) {
+        List<Object[]> tuples = new ArrayList<>();
+        Projection featureId = createIdProjection(DatasetEntity.PROPERTY_FEATURE);
+        Projection platformId = createIdProjection(DatasetEntity.PROPERTY_PLATFORM);
+        String featureIdProperty =
+                QueryUtils.createAssociation(DatasetEntity.PROPERTY_FEATURE, DescribableEntity.PROPERTY_ID);
+        String platformIdProperty =
+                QueryUtils.createAssociation(DatasetEntity.PROPERTY_PLATFORM, DescribableEntity.PROPERTY_ID);
+        for (List<Long> ids : Lists.partition(new ArrayList<>(featureIds), QueryUtils.MAX_IN_LIST_IDS)) {
+            Criteria criteria = session.createCriteria(DatasetEntity.class)
+                                       .add(DatasetFilterCompiler.createPublishedDatasetFilter())
+                                       .add(Restrictions.in(featureIdProperty, ids))
+                                       .setProjection(Projections.distinct(Projections.projectionList()
+                                                                                      .add(featureId)
+                                                                                      .add(platformId)))
+                                       .addOrder(Order.asc(platformIdProperty));
+            tuples.addAll(criteria.list());
+        }
+        return tuples;
+    }
+
     @SuppressWarnings("unchecked")
     public List<T> getInstancesWith(FeatureEntity feature, DbQuery query) {
         LOGGER.debug("get instance for feature '{}'", feature);
@@ -233,7 +580,84 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
 
     @Override
     protected Criteria addFetchModes(Criteria criteria, DbQuery q) {
-        return addFetchModes(criteria, q.isExpanded());
+        if (q.isExpanded() || !q.hasFieldsFilter()) {
+            return addFetchModes(criteria, q.isExpanded());
+        }
+        // fetch only associations needed to render the selected fields
+        boolean label = q.isSelected(FIELD_LABEL);
+        if (label || q.isSelected(FIELD_FEATURE)) {
+            criteria.setFetchMode(DatasetEntity.PROPERTY_FEATURE, FetchMode.JOIN);
+            criteria.setFetchMode(getFetchPath(DatasetEntity.PROPERTY_FEATURE, TRANSLATIONS_ALIAS), FetchMode.JOIN);
+        }
+        if (q.isSelected(FIELD_UOM)) {
+            criteria.setFetchMode(DatasetEntity.PROPERTY_UNIT, FetchMode.JOIN);
+        }
+        if (label) {
+            criteria.setFetchMode(DatasetEntity.PROPERTY_PHENOMENON, FetchMode.JOIN);
+            criteria.setFetchMode(DatasetEntity.PROPERTY_PROCEDURE, FetchMode.JOIN);
+            criteria.setFetchMode(DatasetEntity.PROPERTY_OFFERING, FetchMode.JOIN);
+            criteria.setFetchMode(getFetchPath(DatasetEntity.PROPERTY_PHENOMENON, TRANSLATIONS_ALIAS), FetchMode.JOIN);
+            criteria.setFetchMode(getFetchPath(DatasetEntity.PROPERTY_PROCEDURE, TRANSLATIONS_ALIAS), FetchMode.JOIN);
+            criteria.setFetchMode(getFetchPath(DatasetEntity.PROPERTY_OFFERING, TRANSLATIONS_ALIAS), FetchMode.JOIN);
+        }
+        if (q.isSelected(FIELD_HAS_SAMPLINGS) && DataModelUtil.isEntitySupported(SamplingEntity.class, criteria)) {
+            criteria.setFetchMode(getFetchPath(DatasetEntity.PROPERTY_SAMPLING_PROFILE,
+                    SamplingProfileDatasetEntity.PROPERTY_SAMPLINGS), FetchMode.JOIN);
+        }
+        return criteria;
+    }
+
+    /**
+     * Checks if the selected fields are plain dataset columns or the label, so that no associations have to be
+     * fetched with the datasets.
+     *
+     * @param query
+     *        the query
+     * @return {@code true} if a projection on the dataset columns is sufficient
+     */
+    protected boolean isProjectable(DbQuery query) {
+        return !query.isExpanded() && query.isSelectedOnly(PROJECTABLE_FIELDS);
+    }
+
+    private Criteria addProjection(Criteria criteria, DbQuery query) {
+        // types are always needed to check for supported datasets and to create hrefs
+        ProjectionList projections = Projections.projectionList()
+                .add(Projections.property(DescribableEntity.PROPERTY_ID), DescribableEntity.PROPERTY_ID)
+                .add(Projections.property(DatasetEntity.PROPERTY_DATASET_TYPE), DatasetEntity.PROPERTY_DATASET_TYPE)
+                .add(Projections.property(DatasetEntity.PROPERTY_OBSERVATION_TYPE),
+                        DatasetEntity.PROPERTY_OBSERVATION_TYPE)
+                .add(Projections.property(DatasetEntity.PROPERTY_VALUE_TYPE), DatasetEntity.PROPERTY_VALUE_TYPE);
+        if (query.isSelected(FIELD_LABEL)) {
+            // labels are resolved from the parameters, each distinct parameter is loaded once per session
+            for (String property : LABEL_PROPERTIES) {
+                projections.add(Projections.property(property), property);
+            }
+        }
+        if (query.isSelected(FIELD_DOMAIN_ID)) {
+            projections.add(Projections.property(DescribableEntity.PROPERTY_DOMAIN_ID),
+                    DescribableEntity.PROPERTY_DOMAIN_ID);
+        }
+        if (query.isSelected(FIELD_MOBILE)) {
+            projections.add(Projections.property(DatasetEntity.PROPERTY_MOBILE), DatasetEntity.PROPERTY_MOBILE);
+        }
+        if (query.isSelected(FIELD_INSITU)) {
+            projections.add(Projections.property(DatasetEntity.PROPERTY_INSITU), DatasetEntity.PROPERTY_INSITU);
+        }
+        boolean timeStart = query.isSelected(FIELD_SAMPLING_TIME_START);
+        boolean timeEnd = query.isSelected(FIELD_SAMPLING_TIME_END);
+        if (timeStart || timeEnd || query.isSelected(FIELD_ORIGIN_TIMEZONE)) {
+            projections.add(Projections.property(PROPERTY_ORIGIN_TIMEZONE), PROPERTY_ORIGIN_TIMEZONE);
+        }
+        if (timeStart) {
+            projections.add(Projections.property(DatasetEntity.PROPERTY_FIRST_VALUE_AT),
+                    DatasetEntity.PROPERTY_FIRST_VALUE_AT);
+        }
+        if (timeEnd) {
+            projections.add(Projections.property(DatasetEntity.PROPERTY_LAST_VALUE_AT),
+                    DatasetEntity.PROPERTY_LAST_VALUE_AT);
+        }
+        return criteria.setProjection(Projections.distinct(projections))
+                       .setResultTransformer(Transformers.aliasToBean(getEntityClass()));
     }
 
     @Override
@@ -242,15 +666,23 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
     }
 
     @Override
-    protected Criteria addDatasetFilters(DbQuery query, Criteria criteria) {
-        // on dataset itself there is no explicit join neccessary
+    protected Criteria getUnpagedFilteredCriteria(DbQuery query) {
+        return query.addDetachedFilters(getDatasetProperty(), getDefaultCriteria(query), session);
+    }
+
+    @Override
+    protected Criteria addDatasetFilters(DbQuery query, Criteria criteria, boolean parameterFilters) {
+        // on dataset itself there is no explicit join neccessary, parameter filters are added by
+        // DbQuery#addFilters(Criteria, String, Session)
         Criteria filter = criteria.add(createPublishedDatasetFilter());
         if (query.getLastValueMatches() != null) {
             filter.add(createLastValuesFilter(query));
         }
-        query.addSpatialFilter(filter.createCriteria(DatasetEntity.PROPERTY_FEATURE,
-                                                     FEATURE_PATH_ALIAS,
-                                                     JoinType.LEFT_OUTER_JOIN));
+        query.addFeatureSpatialFilter(filter.createCriteria(DatasetEntity.PROPERTY_FEATURE,
+                                                            FEATURE_PATH_ALIAS,
+                                                            JoinType.LEFT_OUTER_JOIN));
+        addMobileInsituFilter(getDatasetProperty(), criteria, query);
+        addDatasetTypesFilter(getDatasetProperty(), criteria, query);
         return criteria;
     }
 
@@ -272,6 +704,99 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
         return criteria.list();
     }
 
+    /**
+     * Creates the change marker of a single dataset.
+     *
+     * @param dataset
+     *        the dataset id (or domain id when matching domain ids)
+     * @param query
+     *        the query
+     * @return the dataset's change marker or {@code null} if the database cannot compute it
+     */
+    public DatasetChangeMarker getChangeMarker(String dataset, DbQuery query) {
+        Criteria criteria = getDefaultCriteria(getDefaultAlias(), false, query);
+        if (query.isMatchDomainIds()) {
+            criteria.add(Restrictions.eq(DescribableEntity.PROPERTY_DOMAIN_ID, dataset));
+        } else {
+            criteria.add(Restrictions.eq(DescribableEntity.PROPERTY_ID, Long.parseLong(dataset)));
+        }
+        return getChangeMarker(criteria);
+    }
+
+    /**
+     * Creates the change marker of all datasets matching the given query, regardless of the requested page.
+     *
+     * @param q
+     *        the query
+     * @return the change marker over all matching datasets or {@code null} if the database cannot compute it
+     */
+    public DatasetChangeMarker getChangeMarker(DbQuery q) {
+        DbQuery query = checkLevelParameterForHierarchyQuery(q);
+        return getChangeMarker(getUnpagedFilteredCriteria(query));
+    }
+
+    /**
+     * Aggregates the matching datasets in a single query: their number, first and last value time and an MD5
+     * checksum summed over the ids, value times, labels, units, first and last observations and the related
+     * parameters and their labels of all datasets. The checksum requires PostgreSQL.
+     */
+    private DatasetChangeMarker getChangeMarker(Criteria criteria) {
+        String checksum = createChangeChecksum();
+        if (checksum == null) {
+            return null;
+        }
+        ProjectionList projection = Projections.projectionList()
+                .add(Projections.countDistinct(DescribableEntity.PROPERTY_ID))
+                .add(Projections.min(DatasetEntity.PROPERTY_FIRST_VALUE_AT))
+                .add(Projections.max(DatasetEntity.PROPERTY_LAST_VALUE_AT))
+                .add(Projections.sqlProjection(checksum,
+                                               new String[] {CHANGE_CHECKSUM_ALIAS},
+                                               new Type[] {StandardBasicTypes.BIG_DECIMAL}));
+        criteria.setProjection(projection);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(toSQLString(criteria));
+        }
+        Object[] row = (Object[]) criteria.uniqueResult();
+        DatasetChangeMarker marker = new DatasetChangeMarker();
+        long count = row[0] != null
+                ? ((Number) row[0]).longValue()
+                : 0;
+        if (count > 0) {
+            marker.addAll(count, (Date) row[1], (Date) row[2], row[3]);
+        }
+        return marker;
+    }
+
+    private String createChangeChecksum() {
+        if (!DataModelUtil.isPostgisDialect(session)) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        for (String property : CHANGE_MARKER_PROPERTIES) {
+            String column = DataModelUtil.getColumnName(property, DatasetEntity.class, session);
+            if (column == null) {
+                return null;
+            }
+            fields.add("{alias}." + column);
+        }
+        for (String property : PARAMETER_PROPERTIES) {
+            // parameter labels are part of the dataset outputs
+            String label = DataModelUtil.getAssociatedColumnSubquery(property, DescribableEntity.PROPERTY_NAME,
+                                                                     "cm_" + property, DatasetEntity.class, session);
+            String column = DataModelUtil.getColumnName(property, DatasetEntity.class, session);
+            if (label == null || column == null) {
+                return null;
+            }
+            fields.add("{alias}." + column);
+            fields.add(label);
+        }
+        String row = fields.stream()
+                           .map(field -> "coalesce(" + field + "::text, '')")
+                           .collect(Collectors.joining(", ", "concat_ws(chr(31), ", ")"));
+        // the first 60 bits of each row's MD5 hash, summed up as numeric
+        return "sum(('x' || substr(md5(" + row + "), 1, 15))::bit(60)::bigint) as " + CHANGE_CHECKSUM_ALIAS;
+    }
+
     /**
      * Offering time extrema {@link ResultTransformer}
      *
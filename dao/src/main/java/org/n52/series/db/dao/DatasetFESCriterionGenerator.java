@@ -28,18 +28,19 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.Collection;
 import java.util.Optional;
 
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
-import org.hibernate.criterion.MoreRestrictions;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.dataset.ValueType;
 import org.n52.shetland.ogc.filter.ComparisonFilter;
 import org.n52.shetland.ogc.filter.Filter;
 import org.n52.shetland.ogc.filter.SpatialFilter;
@@ -69,6 +70,25 @@ public class DatasetFESCriterionGenerator extends FESCriterionGenerator {
         super(criteria, unsupportedIsTrue, matchDomainIds, complexParent);
     }
 
+    /**
+     * Creates a new {@code DatasetFESCriterionGenerator}.
+     *
+     * @param criteria          the criteria
+     * @param unsupportedIsTrue if the generator encounters a filter expression it could not translate it may generate a
+     *                          criterion that is always {@code true} or always {@code false} depending on this flag
+     * @param matchDomainIds    if filter on observation parameters like feature, offering or procedure should match on
+     *                          their respective domain identifiers or on the primary keys in the database
+     * @param complexParent     if the queries should result in the parent observation and hide the child observations
+     * @param valueTypes        the value types of the filtered datasets, an empty set queries all types
+     */
+    public DatasetFESCriterionGenerator(Criteria criteria,
+                                        boolean unsupportedIsTrue,
+                                        boolean matchDomainIds,
+                                        boolean complexParent,
+                                        Collection<ValueType> valueTypes) {
+        super(criteria, unsupportedIsTrue, matchDomainIds, complexParent, valueTypes);
+    }
+
     @Override
     protected Criterion createDataCriterion(Criterion criterion) {
         DetachedCriteria subquery = DetachedCriteria.forClass(DataEntity.class)
@@ -106,13 +126,11 @@ public class DatasetFESCriterionGenerator extends FESCriterionGenerator {
 
     @Override
     protected Criterion createResultCriterion(ComparisonFilter filter) {
-        return getResultSubqueries(filter)
+        return createResultDisjunction(getResultSubqueries(filter)
                 // just get the dataset ID from the data entities
                 .map(q -> q.setProjection(Projections.property(DataEntity.PROPERTY_DATASET)))
                 // create a property IN expression for each query
-                .map(q -> Subqueries.propertyIn(DatasetEntity.PROPERTY_ID, q))
-                // and wrap everything into a disjunction
-                .collect(MoreRestrictions.toDisjunction());
+                .map(q -> Subqueries.propertyIn(DatasetEntity.PROPERTY_ID, q)));
     }
 
 
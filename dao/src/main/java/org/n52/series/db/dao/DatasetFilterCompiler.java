@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.sql.JoinType;
+import org.n52.io.request.FilterResolver;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.beans.dataset.DatasetType;
+import org.n52.series.db.beans.dataset.ObservationType;
+import org.n52.series.db.beans.dataset.ValueType;
+import org.n52.series.db.beans.sampling.SamplingEntity;
+import org.n52.series.db.beans.sampling.SamplingProfileDatasetEntity;
+
+/**
+ * Compiles the dataset level predicates of a query into a single subquery on the dataset table. Instead of
+ * nesting one {@code IN (SELECT ...)} layer for the published state, the mobile/insitu flags, the dataset
+ * types, the spatial filter and the parameter filters (phenomena, procedures, offerings, features, ...), all
+ * predicates are added to the same dataset row. Each association is joined at most once and the
+ * {@code deleted}/{@code published} conditions are added only once.
+ */
+public class DatasetFilterCompiler {
+
+    private static final String PROPERTY_ID = "id";
+
+    private static final String PROPERTY_PARENTS = "parents";
+
+    private static final String FEATURE_PREFIX = "feat_";
+
+    private static final String PROCEDURE_PREFIX = "proc_";
+
+    private static final String OFFERING_PREFIX = "off_";
+
+    private final DbQuery query;
+
+    private final Session session;
+
+    private final Set<String> aliases = new HashSet<>();
+
+    private boolean parameterFilters;
+
+    /**
+     * @param query
+     *        the query
+     * @param session
+     *        the session to check the supported data model, may be {@code null} if hierarchies and samplings
+     *        are not supported
+     */
+    public DatasetFilterCompiler(DbQuery query, Session session) {
+        this.query = query;
+        this.session = session;
+    }
+
+    /**
+     * @param parameterFilters
+     *        if the parameter filters (phenomena, procedures, offerings, features, categories, platforms,
+     *        samplings, measuring programs and datasets) shall be compiled as well
+     * @return this instance
+     */
+    public DatasetFilterCompiler withParameterFilters(boolean parameterFilters) {
+        this.parameterFilters = parameterFilters;
+        return this;
+    }
+
+    /**
+     * Compiles all dataset level predicates into a single subquery.
+     *
+     * @param datasetProperty
+     *        the dataset property referencing the filtered entity or an empty string if datasets are filtered
+     * @return the subquery projecting the ids of the filtered entity
+     */
+    public DetachedCriteria compile(String datasetProperty) {
+        IoParameters parameters = query.getParameters();
+        DetachedCriteria filter = DetachedCriteria.forClass(DatasetEntity.class)
+                                                  .add(createPublishedDatasetFilter());
+        if (query.getLastValueMatches() != null) {
+            filter.add(createLastValuesFilter(query));
+        }
+        Criterion mobileInsitu = createMobileInsituCriterion(parameters);
+        if (mobileInsitu != null) {
+            filter.add(mobileInsitu);
+        }
+        Set<Long> catalogueIds = parameterFilters
+                ? getCatalogueIds(true)
+                : null;
+        Criterion datasetTypes = createDatasetTypesCriterion(parameters);
+        if (catalogueIds != null) {
+            filter.add(createIdsCriterion(catalogueIds));
+        } else {
+            if (datasetTypes != null) {
+                filter.add(datasetTypes);
+            }
+            if (parameterFilters) {
+                addParameterRestrictions(filter);
+            }
+        }
+        if (query.getSpatialFilter() != null) {
+            String featureAlias = addAlias(filter, DatasetEntity.PROPERTY_FEATURE,
+                                           getAlias(DatasetEntity.PROPERTY_FEATURE));
+            filter.add(query.createFeatureSpatialFilter(featureAlias));
+        }
+        return setProjection(datasetProperty, filter);
+    }
+
+    /**
+     * Compiles the parameter filters only.
+     *
+     * @param datasetProperty
+     *        the dataset property referencing the filtered entity or an empty string if datasets are filtered
+     * @return the subquery projecting the ids of the filtered entity or {@code null} if no parameter filter has
+     *         been requested
+     */
+    public DetachedCriteria compileParameterFilters(String datasetProperty) {
+        if (!hasParameterFilters()) {
+            return null;
+        }
+        DetachedCriteria filter = DetachedCriteria.forClass(DatasetEntity.class);
+        Set<Long> catalogueIds = getCatalogueIds(false);
+        if (catalogueIds != null) {
+            filter.add(createIdsCriterion(catalogueIds));
+        } else {
+            addParameterRestrictions(filter);
+        }
+        return setProjection(datasetProperty, filter);
+    }
+
+    /**
+     * @return if the query contains any parameter filter
+     */
+    public boolean hasParameterFilters() {
+        IoParameters parameters = query.getParameters();
+        return hasValues(parameters.getPlatforms())
+                || hasValues(parameters.getPhenomena())
+                || hasValues(parameters.getProcedures())
+                || hasValues(parameters.getOfferings())
+                || hasValues(parameters.getFeatures())
+                || hasValues(parameters.getCategories())
+                || hasValues(parameters.getDatasets())
+                || isSamplingSupported();
+    }
+
+    private Set<Long> getCatalogueIds(boolean includeTypes) {
+        DatasetCatalogue catalogue = query.getDatasetCatalogue();
+        return catalogue != null
+                ? catalogue.getDatasetIds(query, includeTypes, session)
+                : null;
+    }
+
+    private Criterion createIdsCriterion(Set<Long> ids) {
+        return ids.isEmpty()
+                // no dataset matches, ids are never null
+                ? Restrictions.isNull(PROPERTY_ID)
+                : Restrictions.in(PROPERTY_ID, ids);
+    }
+
+    private DetachedCriteria setProjection(String datasetProperty, DetachedCriteria filter) {
+        String projectionProperty = QueryUtils.createAssociation(datasetProperty, PROPERTY_ID);
+        return filter.setProjection(Projections.property(projectionProperty));
+    }
+
+    private void addParameterRestrictions(DetachedCriteria filter) {
+        IoParameters parameters = query.getParameters();
+        addRestriction(filter, DatasetEntity.PROPERTY_PHENOMENON, parameters.getPhenomena());
+        addProcedureRestriction(filter, parameters.getProcedures());
+        addOfferingRestriction(filter, parameters.getOfferings());
+        addFeatureRestriction(filter, parameters.getFeatures());
+        addRestriction(filter, DatasetEntity.PROPERTY_CATEGORY, parameters.getCategories());
+        addRestriction(filter, DatasetEntity.PROPERTY_PLATFORM, parameters.getPlatforms());
+        if (isSamplingSupported()) {
+            addSamplingRestriction(filter, SamplingProfileDatasetEntity.PROPERTY_SAMPLINGS,
+                                   parameters.getSamplings());
+            addSamplingRestriction(filter, SamplingProfileDatasetEntity.PROPERTY_MEASURING_PROGRAMS,
+                                   parameters.getMeasuringPrograms());
+        }
+        Set<String> datasets = parameters.getDatasets();
+        if (hasValues(datasets)) {
+            filter.add(query.createIdCriterion(datasets, null));
+        }
+    }
+
+    private void addProcedureRestriction(DetachedCriteria filter, Set<String> procedures) {
+        if (query.isIncludeHierarchy() && isPropertySupported(ProcedureEntity.PROPERTY_PARENTS,
+                                                              ProcedureEntity.class)) {
+            addHierarchicalRestriction(filter, DatasetEntity.PROPERTY_PROCEDURE, procedures, PROCEDURE_PREFIX);
+        } else {
+            addRestriction(filter, DatasetEntity.PROPERTY_PROCEDURE, procedures);
+        }
+    }
+
+    private void addOfferingRestriction(DetachedCriteria filter, Set<String> offerings) {
+        if (query.isIncludeHierarchy() && isPropertySupported(OfferingEntity.PROPERTY_PARENTS,
+                                                              OfferingEntity.class)) {
+            addHierarchicalRestriction(filter, DatasetEntity.PROPERTY_OFFERING, offerings, OFFERING_PREFIX);
+        } else {
+            addRestriction(filter, DatasetEntity.PROPERTY_OFFERING, offerings);
+        }
+    }
+
+    private void addFeatureRestriction(DetachedCriteria filter, Set<String> features) {
+        if (query.isIncludeHierarchy()) {
+            addHierarchicalRestriction(filter, DatasetEntity.PROPERTY_FEATURE, features, FEATURE_PREFIX);
+        } else {
+            addRestriction(filter, DatasetEntity.PROPERTY_FEATURE, features);
+        }
+    }
+
+    private void addHierarchicalRestriction(DetachedCriteria filter,
+                                            String property,
+                                            Set<String> values,
+                                            String prefix) {
+        if (hasValues(values)) {
+            String alias = addAlias(filter, property, getAlias(property));
+            // join the parents to enable filtering via parent ids
+            String parents = addAlias(filter,
+                                      QueryUtils.createAssociation(alias, PROPERTY_PARENTS),
+                                      prefix + "p",
+                                      JoinType.LEFT_OUTER_JOIN);
+            filter.add(Restrictions.or(query.createIdCriterion(values, alias),
+                                       Restrictions.in(QueryUtils.createAssociation(parents, PROPERTY_ID),
+                                                       QueryUtils.parseToIds(values))));
+        }
+    }
+
+    private void addRestriction(DetachedCriteria filter, String property, Set<String> values) {
+        if (hasValues(values)) {
+            // ids can be matched on the foreign key column, domain ids need a join
+            String member = query.isMatchDomainIds()
+                    ? addAlias(filter, property, getAlias(property))
+                    : property;
+            filter.add(query.createIdCriterion(values, member));
+        }
+    }
+
+    private void addSamplingRestriction(DetachedCriteria filter, String property, Set<String> values) {
+        if (hasValues(values)) {
+            String path = QueryUtils.createAssociation(DatasetEntity.PROPERTY_SAMPLING_PROFILE, property);
+            filter.createCriteria(path)
+                  .add(query.createIdCriterion(values, null));
+        }
+    }
+
+    private String getAlias(String property) {
+        // a single alias per association, so that each association is joined once
+        if (DatasetEntity.PROPERTY_FEATURE.equals(property)) {
+            return FEATURE_PREFIX + "e";
+        } else if (DatasetEntity.PROPERTY_PROCEDURE.equals(property)) {
+            return PROCEDURE_PREFIX + "e";
+        } else if (DatasetEntity.PROPERTY_OFFERING.equals(property)) {
+            return OFFERING_PREFIX + "e";
+        }
+        return property + "_e";
+    }
+
+    private String addAlias(DetachedCriteria filter, String path, String alias) {
+        return addAlias(filter, path, alias, JoinType.INNER_JOIN);
+    }
+
+    private String addAlias(DetachedCriteria filter, String path, String alias, JoinType joinType) {
+        if (aliases.add(alias)) {
+            filter.createAlias(path, alias, joinType);
+        }
+        return alias;
+    }
+
+    private boolean isSamplingSupported() {
+        IoParameters parameters = query.getParameters();
+        return (hasValues(parameters.getSamplings()) || hasValues(parameters.getMeasuringPrograms()))
+                && session != null
+                && DataModelUtil.isEntitySupported(SamplingEntity.class, session);
+    }
+
+    private boolean isPropertySupported(String property, Class<?> clazz) {
+        return session != null && DataModelUtil.isPropertyNameSupported(property, clazz, session);
+    }
+
+    private static boolean hasValues(Set<String> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    /**
+     * @param query
+     *        the query
+     * @return if the query restricts datasets beyond their published state, i.e. by last values, mobile/insitu
+     *         flags, types, space or an OData filter
+     */
+    public static boolean hasDatasetRestrictions(DbQuery query) {
+        IoParameters parameters = query.getParameters();
+        return query.getLastValueMatches() != null
+                || createMobileInsituCriterion(parameters) != null
+                || createDatasetTypesCriterion(parameters) != null
+                || query.getSpatialFilter() != null
+                || parameters.containsParameter(ODataFilterCache.PARAMETER);
+    }
+
+    static Conjunction createPublishedDatasetFilter() {
+        return Restrictions.and(Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED, true),
+                                Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false),
+                                Restrictions.isNotNull(DatasetEntity.PROPERTY_FIRST_VALUE_AT),
+                                Restrictions.isNotNull(DatasetEntity.PROPERTY_LAST_VALUE_AT));
+    }
+
+    static Criterion createLastValuesFilter(DbQuery query) {
+        return Restrictions.between(DatasetEntity.PROPERTY_LAST_VALUE_AT,
+                                    query.getLastValueMatches().getStart().toDate(),
+                                    query.getLastValueMatches().getEnd().toDate());
+    }
+
+    /**
+     * @param parameters
+     *        the request parameters
+     * @return the mobile and insitu restrictions or {@code null} if all datasets shall be included
+     */
+    static Criterion createMobileInsituCriterion(IoParameters parameters) {
+        FilterResolver filterResolver = parameters.getFilterResolver();
+        if (filterResolver.shallIncludeAllDatasets()) {
+            return null;
+        }
+        Conjunction conjunction = Restrictions.conjunction();
+        if (filterResolver.hasMobileFilter()) {
+            conjunction.add(Restrictions.eq(DatasetEntity.PROPERTY_MOBILE, filterResolver.isMobileFilter()));
+        }
+        if (filterResolver.hasInsituFilter()) {
+            conjunction.add(Restrictions.eq(DatasetEntity.PROPERTY_INSITU, filterResolver.isInsituFilter()));
+        }
+        return conjunction.conditions().iterator().hasNext() ? conjunction : null;
+    }
+
+    /**
+     * @param parameters
+     *        the request parameters
+     * @return the dataset, observation and value type restrictions or {@code null} if all types shall be
+     *         included
+     */
+    static Criterion createDatasetTypesCriterion(IoParameters parameters) {
+        Set<String> datasetTypes = parameters.getDatasetTypes();
+        Set<String> observationsTypes = parameters.getObservationTypes();
+        Set<String> valueTypes = parameters.getValueTypes();
+        if (datasetTypes.isEmpty() && observationsTypes.isEmpty() && valueTypes.isEmpty()) {
+            return null;
+        }
+        FilterResolver filterResolver = parameters.getFilterResolver();
+        if (!parameters.shallBehaveBackwardsCompatible() && filterResolver.shallIncludeAllDatasetTypes()) {
+            return null;
+        }
+        Conjunction conjunction = Restrictions.conjunction();
+        if (!datasetTypes.isEmpty()) {
+            conjunction.add(Restrictions.in(DatasetEntity.PROPERTY_DATASET_TYPE, DatasetType.convert(datasetTypes)));
+        }
+        if (!observationsTypes.isEmpty()) {
+            conjunction.add(Restrictions.in(DatasetEntity.PROPERTY_OBSERVATION_TYPE,
+                                            ObservationType.convert(observationsTypes)));
+        }
+        if (!valueTypes.isEmpty()) {
+            conjunction.add(Restrictions.in(DatasetEntity.PROPERTY_VALUE_TYPE, ValueType.convert(valueTypes)));
+        }
+        return conjunction;
+    }
+
+}
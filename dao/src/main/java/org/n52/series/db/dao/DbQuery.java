@@ -28,8 +28,14 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
@@ -37,7 +43,6 @@ import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Order;
-import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
 import org.hibernate.spatial.criterion.SpatialFilter;
@@ -46,8 +51,11 @@ import org.hibernate.sql.JoinType;
 import org.joda.time.DateTime;
 import org.joda.time.Instant;
 import org.joda.time.Interval;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
 import org.n52.io.IntervalWithTimeZone;
 import org.n52.io.crs.BoundingBox;
 import org.n52.io.crs.CRSUtils;
@@ -58,10 +66,8 @@ import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.IdEntity;
-import org.n52.series.db.beans.OfferingEntity;
-import org.n52.series.db.beans.ProcedureEntity;
-import org.n52.series.db.beans.sampling.SamplingEntity;
-import org.n52.series.db.beans.sampling.SamplingProfileDatasetEntity;
+import org.n52.series.db.beans.dataset.ValueType;
+import org.n52.web.exception.BadRequestException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
@@ -69,8 +75,21 @@ import org.slf4j.LoggerFactory;
 
 public class DbQuery {
 
+    /**
+     * Parameter requesting simplified geometries, see {@link #getResolution()}.
+     */
+    public static final String RESOLUTION = "resolution";
+
+    /**
+     * Alias of {@link #RESOLUTION}.
+     */
+    public static final String TOLERANCE = "tolerance";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DbQuery.class);
 
+    // lon/lat in XY axis order, the inner CRS of CRSUtils
+    private static final GeometryFactory INNER_GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
     private static final String PROPERTY_ID = "id";
 
     private static final String PROPERTY_LOCALE = "locale";
@@ -79,12 +98,36 @@ public class DbQuery {
 
     private static final int DEFAULT_LIMIT = 10000;
 
+    private static final CRSUtils CRS_UTILS = CRSUtils.createEpsgForcedXYAxisOrder();
+
     private IoParameters parameters = IoParameters.createDefaults();
 
     private String databaseSridCode = "EPSG:4326";
 
     private boolean includeHierarchy = true;
 
+    private Set<ValueType> resultValueTypes;
+
+    private ODataFilterCache odataFilterCache;
+
+    private Interval dataBounds;
+
+    private Set<Long> coveredDatasetIds;
+
+    private Interval coveredTimespan;
+
+    private DatasetCatalogue datasetCatalogue;
+
+    private PrefetchedObservations prefetchedObservations;
+
+    private Envelope spatialEnvelope;
+
+    private Set<Long> spatialFeatureIds;
+
+    private IoParameters nearFilterParameters;
+
+    private NearFilter nearFilter;
+
     public DbQuery(IoParameters parameters) {
         if (parameters != null) {
             this.parameters = parameters;
@@ -98,7 +141,8 @@ public class DbQuery {
      */
     public DbQuery removeSpatialFilter() {
         return new DbQuery(parameters.removeAllOf(Parameters.BBOX)
-                                     .removeAllOf(Parameters.NEAR));
+                                     .removeAllOf(Parameters.NEAR)
+                                     .removeAllOf(NearFilter.RADIUS));
     }
 
     /**
@@ -129,6 +173,30 @@ public class DbQuery {
         return new DbQuery(ioParameters);
     }
 
+    /**
+     * Creates a new instance for the given parameters and carries over all other state of this query, e.g. the
+     * value types, data bounds and ids resolved in advance. The near filter is derived from the new parameters.
+     *
+     * @param ioParameters
+     *        the parameters of the new instance
+     * @return a new instance with the given parameters and the state of this query
+     */
+    public DbQuery withParameters(IoParameters ioParameters) {
+        DbQuery query = new DbQuery(ioParameters);
+        query.databaseSridCode = databaseSridCode;
+        query.includeHierarchy = includeHierarchy;
+        query.resultValueTypes = resultValueTypes;
+        query.odataFilterCache = odataFilterCache;
+        query.dataBounds = dataBounds;
+        query.coveredDatasetIds = coveredDatasetIds;
+        query.coveredTimespan = coveredTimespan;
+        query.datasetCatalogue = datasetCatalogue;
+        query.prefetchedObservations = prefetchedObservations;
+        query.spatialEnvelope = spatialEnvelope;
+        query.spatialFeatureIds = spatialFeatureIds;
+        return query;
+    }
+
     public String getDatabaseSridCode() {
         return databaseSridCode;
     }
@@ -163,12 +231,25 @@ public class DbQuery {
     }
 
     public Envelope getSpatialFilter() {
-        BoundingBox spatialFilter = parameters.getSpatialFilter();
-        if (spatialFilter != null) {
+        NearFilter near = getNearFilter();
+        Envelope envelope = spatialEnvelope != null
+                ? spatialEnvelope
+                : near != null
+                        ? near.getEnvelope()
+                        : null;
+        BoundingBox spatialFilter = envelope == null
+                ? getBoundingBox(near)
+                : null;
+        if (envelope != null || spatialFilter != null) {
             try {
-                CRSUtils crsUtils = CRSUtils.createEpsgForcedXYAxisOrder();
-                Point ll = (Point) crsUtils.transformInnerToOuter(spatialFilter.getLowerLeft(), databaseSridCode);
-                Point ur = (Point) crsUtils.transformInnerToOuter(spatialFilter.getUpperRight(), databaseSridCode);
+                Point lowerLeft = envelope != null
+                        ? createInnerPoint(envelope.getMinX(), envelope.getMinY())
+                        : spatialFilter.getLowerLeft();
+                Point upperRight = envelope != null
+                        ? createInnerPoint(envelope.getMaxX(), envelope.getMaxY())
+                        : spatialFilter.getUpperRight();
+                Point ll = (Point) CRS_UTILS.transformInnerToOuter(lowerLeft, databaseSridCode);
+                Point ur = (Point) CRS_UTILS.transformInnerToOuter(upperRight, databaseSridCode);
                 return new Envelope(ll.getCoordinate(), ur.getCoordinate());
             } catch (FactoryException e) {
                 LOGGER.error("Could not create transformation facilities.", e);
@@ -179,6 +260,32 @@ public class DbQuery {
         return null;
     }
 
+    private BoundingBox getBoundingBox(NearFilter near) {
+        // a near=lon,lat filter is no valid legacy near parameter
+        return near != null
+                ? parameters.removeAllOf(Parameters.NEAR).getSpatialFilter()
+                : parameters.getSpatialFilter();
+    }
+
+    /**
+     * @return the nearest-neighbour filter or {@code null} if no {@code near=lon,lat} has been requested
+     * @throws BadRequestException
+     *         if the near filter is invalid
+     */
+    public NearFilter getNearFilter() {
+        // parse once per parameters instance, parameters are replaced rather than modified
+        IoParameters current = parameters;
+        if (nearFilterParameters != current) {
+            nearFilter = NearFilter.from(current);
+            nearFilterParameters = current;
+        }
+        return nearFilter;
+    }
+
+    private Point createInnerPoint(double x, double y) {
+        return INNER_GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+    }
+
     public boolean isExpanded() {
         return parameters.isExpanded();
     }
@@ -230,7 +337,7 @@ public class DbQuery {
     public Criteria addTimespanTo(Criteria criteria) {
         IntervalWithTimeZone timespan = parameters.getTimespan();
         if (timespan != null) {
-            Interval interval = timespan.toInterval();
+            Interval interval = clipToDataBounds(timespan.toInterval());
             DateTime startDate = interval.getStart();
             DateTime endDate = interval.getEnd();
             Date start = startDate.toDate();
@@ -241,6 +348,19 @@ public class DbQuery {
         return criteria;
     }
 
+    private Interval clipToDataBounds(Interval interval) {
+        if (dataBounds == null || !dataBounds.overlaps(interval)) {
+            return interval;
+        }
+        DateTime start = interval.getStart().isBefore(dataBounds.getStart())
+                ? dataBounds.getStart()
+                : interval.getStart();
+        DateTime end = interval.getEnd().isAfter(dataBounds.getEnd())
+                ? dataBounds.getEnd()
+                : interval.getEnd();
+        return new Interval(start, end);
+    }
+
     public Criteria addFilters(Criteria criteria, String datasetProperty, Session session) {
         addLimitAndOffsetFilter(criteria);
         addDetachedFilters(datasetProperty, criteria, session);
@@ -248,26 +368,120 @@ public class DbQuery {
     }
 
     public Criteria addOdataFilterForData(Criteria criteria) {
-        FESCriterionGenerator generator =
-                new DataFESCriterionGenerator(criteria, true, isMatchDomainIds(), isComplexParent());
+        return addOdataFilterForData(criteria, null);
+    }
+
+    /**
+     * Adds the OData filter to data criteria. Result filters are created for the {@link #getResultValueTypes()
+     * result value types} only and are applied directly to the data row if {@code entityClass} is of the only
+     * remaining value type.
+     *
+     * @param criteria the data criteria
+     * @param entityClass the data entity class of the criteria root, may be {@code null}
+     * @return the criteria
+     */
+    public Criteria addOdataFilterForData(Criteria criteria, Class<?> entityClass) {
+        FESCriterionGenerator generator = new DataFESCriterionGenerator(criteria,
+                                                                        true,
+                                                                        isMatchDomainIds(),
+                                                                        isComplexParent(),
+                                                                        getResultValueTypes(),
+                                                                        entityClass);
         return addOdataFilter(generator, criteria);
     }
 
     public Criteria addOdataFilterForDataset(Criteria criteria) {
-        FESCriterionGenerator generator =
-                new DatasetFESCriterionGenerator(criteria, true, isMatchDomainIds(), isComplexParent());
+        FESCriterionGenerator generator = new DatasetFESCriterionGenerator(criteria,
+                                                                           true,
+                                                                           isMatchDomainIds(),
+                                                                           isComplexParent(),
+                                                                           getResultValueTypes());
         return addOdataFilter(generator, criteria);
     }
 
     private Criteria addOdataFilter(FESCriterionGenerator generator, Criteria criteria) {
+        if (odataFilterCache != null) {
+            Optional<Criterion> criterion = odataFilterCache.translate(parameters, generator);
+            odataFilterCache.logStatistics();
+            return criterion.map(criteria::add)
+                            .orElse(criteria);
+        }
         return parameters.getODataFilter()
                          .map(generator::create)
                          .map(criteria::add)
                          .orElse(criteria);
     }
 
-    private Criteria addLimitAndOffsetFilter(Criteria criteria) {
-        if (getParameters().containsParameter(Parameters.OFFSET)) {
+    /**
+     * @return the keyset cursor of the requested page or {@code null} if no cursor has been passed
+     */
+    public KeysetCursor getCursor() {
+        String cursor = parameters.getAsString(KeysetCursor.PARAMETER);
+        return cursor != null && !cursor.isEmpty()
+                ? KeysetCursor.decode(cursor)
+                : null;
+    }
+
+    /**
+     * @return the requested geometry resolution, i.e. the simplification tolerance in units of the database
+     *         CRS, or {@code null} if geometries are requested at full resolution. Invalid values are ignored,
+     *         requests are expected to be validated via {@link #parseResolution(String)} beforehand.
+     */
+    public Double getResolution() {
+        try {
+            return parseResolution(getResolutionParameter(parameters));
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Ignoring invalid resolution.", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param parameters
+     *        the parameters
+     * @return the value of the {@link #RESOLUTION} parameter or its alias {@link #TOLERANCE}, may be {@code null}
+     */
+    public static String getResolutionParameter(IoParameters parameters) {
+        return parameters.containsParameter(RESOLUTION)
+                ? parameters.getAsString(RESOLUTION)
+                : parameters.getAsString(TOLERANCE);
+    }
+
+    /**
+     * @param resolution
+     *        the resolution parameter value, may be {@code null}
+     * @return the simplification tolerance or {@code null} if geometries are requested at full resolution
+     * @throws IllegalArgumentException
+     *         if the resolution is not a non-negative number
+     */
+    public static Double parseResolution(String resolution) {
+        if (resolution == null || resolution.isEmpty()) {
+            return null;
+        }
+        double tolerance;
+        try {
+            tolerance = Double.parseDouble(resolution);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid resolution: " + resolution, e);
+        }
+        if (tolerance < 0 || Double.isNaN(tolerance) || Double.isInfinite(tolerance)) {
+            throw new IllegalArgumentException("Invalid resolution: " + resolution);
+        }
+        return tolerance > 0
+                ? tolerance
+                : null;
+    }
+
+    public Criteria addLimitAndOffsetFilter(Criteria criteria) {
+        if (getNearFilter() != null) {
+            // near results are ordered and limited by distance, see FeatureDao#getNearest
+            return criteria;
+        }
+        KeysetCursor cursor = getCursor();
+        if (cursor != null) {
+            // seek to the page instead of skipping all preceding rows
+            criteria.add(Restrictions.gt(IdEntity.PROPERTY_ID, cursor.getLastId()));
+        } else if (getParameters().containsParameter(Parameters.OFFSET)) {
             int limit = (getParameters().containsParameter(Parameters.LIMIT))
                     ? getParameters().getLimit()
                     : DEFAULT_LIMIT;
@@ -284,134 +498,17 @@ public class DbQuery {
     }
 
     public Criteria addDetachedFilters(String datasetName, Criteria criteria, Session session) {
-        Set<String> categories = parameters.getCategories();
-        Set<String> procedures = parameters.getProcedures();
-        Set<String> phenomena = parameters.getPhenomena();
-        Set<String> offerings = parameters.getOfferings();
-        Set<String> platforms = parameters.getPlatforms();
-        Set<String> features = parameters.getFeatures();
-        Set<String> datasets = parameters.getDatasets();
-//        Set<String> series = parameters.getSeries();
-
-        Set<String> samplings = parameters.getSamplings();
-        Set<String> measuringPrograms = parameters.getMeasuringPrograms();
-
-        boolean samplingSupported = DataModelUtil.isEntitySupported(SamplingEntity.class, criteria)
-                ? hasValues(samplings) || hasValues(measuringPrograms)
-                : false;
-
-        if (!(hasValues(platforms)
-                || hasValues(phenomena)
-                || hasValues(procedures)
-                || hasValues(offerings)
-                || hasValues(features)
-                || hasValues(categories)
-                || hasValues(datasets)
-                || samplingSupported)) {
+        DetachedCriteria filter = new DatasetFilterCompiler(this, session).compileParameterFilters(datasetName);
+        if (filter == null) {
             // no subquery neccessary
             return criteria;
         }
-
-        DetachedCriteria filter = DetachedCriteria.forClass(DatasetEntity.class);
-//        if (hasValues(platforms)) {
-//            features.addAll(getStationaryIds(platforms));
-//            procedures.addAll(getMobileIds(platforms));
-//        }
-
-        addFilterRestriction(phenomena, DatasetEntity.PROPERTY_PHENOMENON, filter);
-        // FIXME check for simple or full db models
-
-        addProcedureRestriction(procedures, filter, session);
-        addOfferingRestriction(offerings, filter, session);
-        addFeatureRestriction(features, filter);
-        addFilterRestriction(categories, DatasetEntity.PROPERTY_CATEGORY, filter);
-        addFilterRestriction(platforms, DatasetEntity.PROPERTY_PLATFORM, filter);
-        if (samplingSupported) {
-            if (hasValues(samplings)) {
-                addFilterRestriction(samplings, DatasetEntity.PROPERTY_SAMPLING_PROFILE + "."
-                        + SamplingProfileDatasetEntity.PROPERTY_SAMPLINGS, filter);
-            }
-            if (hasValues(measuringPrograms)) {
-                addFilterRestriction(measuringPrograms, DatasetEntity.PROPERTY_SAMPLING_PROFILE + "."
-                        + SamplingProfileDatasetEntity.PROPERTY_MEASURING_PROGRAMS, filter);
-            }
-        }
-//        addFilterRestriction(series, filter);
-
-        addFilterRestriction(datasets, filter);
-
-        // TODO refactory/simplify projection
-        String projectionProperty = QueryUtils.createAssociation(datasetName, PROPERTY_ID);
-        filter.setProjection(Property.forName(projectionProperty));
-
         String filterProperty = QueryUtils.createAssociation(datasetName, PROPERTY_ID);
         criteria.add(Subqueries.propertyIn(filterProperty, filter));
         return criteria;
     }
 
-    private void addProcedureRestriction(Set<String> procedures, DetachedCriteria filter, Session session) {
-        if (isIncludeHierarchy() && DataModelUtil.isPropertyNameSupported(ProcedureEntity.PROPERTY_PARENTS,
-                ProcedureEntity.class, session)) {
-            addHierarchicalFilterRestriction(procedures, DatasetEntity.PROPERTY_PROCEDURE, filter, "proc_");
-        } else {
-            addFilterRestriction(procedures, DatasetEntity.PROPERTY_PROCEDURE, filter);
-        }
-    }
-
-    private void addOfferingRestriction(Set<String> offerings, DetachedCriteria filter, Session session) {
-        if (isIncludeHierarchy() && DataModelUtil.isPropertyNameSupported(OfferingEntity.PROPERTY_PARENTS,
-                OfferingEntity.class, session)) {
-            addHierarchicalFilterRestriction(offerings, DatasetEntity.PROPERTY_OFFERING, filter, "off_");
-        } else {
-            addFilterRestriction(offerings, DatasetEntity.PROPERTY_OFFERING, filter);
-        }
-    }
-
-    private void addFeatureRestriction(Set<String> features, DetachedCriteria filter) {
-        if (isIncludeHierarchy()) {
-            addHierarchicalFilterRestriction(features, DatasetEntity.PROPERTY_FEATURE, filter, "feat_");
-        } else {
-            addFilterRestriction(features, DatasetEntity.PROPERTY_FEATURE, filter);
-        }
-    }
-
-    private DetachedCriteria addHierarchicalFilterRestriction(Set<String> values,
-                                                              String entity,
-                                                              DetachedCriteria filter,
-                                                              String prefix) {
-        if (hasValues(values)) {
-            filter.createCriteria(entity, prefix + "e")
-                  // join the parents to enable filtering via parent ids
-                  .createAlias(prefix + "e.parents", prefix + "p", JoinType.LEFT_OUTER_JOIN)
-                  .add(Restrictions.or(createIdCriterion(values, prefix + "e"),
-                                       Restrictions.in(prefix + "p.id", QueryUtils.parseToIds(values))));
-        }
-        return filter;
-    }
-
-    private DetachedCriteria addFilterRestriction(Set<String> values, DetachedCriteria filter) {
-        return addFilterRestriction(values, null, filter);
-    }
-
-    private DetachedCriteria addFilterRestriction(Set<String> values, String entity, DetachedCriteria filter) {
-        if (hasValues(values)) {
-            Criterion restriction = createIdCriterion(values);
-            if (entity == null || entity.isEmpty()) {
-                return filter.add(restriction);
-            } else {
-                // return subquery for further chaining
-                return filter.createCriteria(entity)
-                        .add(restriction);
-            }
-        }
-        return filter;
-    }
-
-    private Criterion createIdCriterion(Set<String> values) {
-        return createIdCriterion(values, null);
-    }
-
-    private Criterion createIdCriterion(Set<String> values, String alias) {
+    Criterion createIdCriterion(Set<String> values, String alias) {
         return parameters.isMatchDomainIds()
                 ? createDomainIdFilter(values, alias)
                 : createIdFilter(values, alias);
@@ -429,10 +526,6 @@ public class DbQuery {
         return Restrictions.in(column, QueryUtils.parseToIds(filterValues));
     }
 
-    private boolean hasValues(Set<String> values) {
-        return values != null && !values.isEmpty();
-    }
-
     public Criteria addResultTimeFilter(Criteria criteria) {
         if (parameters.shallClassifyByResultTimes()) {
             criteria.add(parameters.getResultTimes().stream()
@@ -455,10 +548,61 @@ public class DbQuery {
     }
 
     public SpatialFilter createSpatialFilter() {
+        return createSpatialFilter(null);
+    }
+
+    /**
+     * Adds the spatial filter to a criteria on features, see {@link #createFeatureSpatialFilter(String)}.
+     *
+     * @param criteria
+     *        the criteria on features
+     * @return the criteria
+     */
+    public Criteria addFeatureSpatialFilter(Criteria criteria) {
+        Criterion filter = createFeatureSpatialFilter(null);
+        return filter != null ? criteria.add(filter) : criteria;
+    }
+
+    /**
+     * Adds the spatial filter to a criteria on features, see {@link #createFeatureSpatialFilter(String)}.
+     *
+     * @param criteria
+     *        the criteria on features
+     * @return the criteria
+     */
+    public DetachedCriteria addFeatureSpatialFilter(DetachedCriteria criteria) {
+        Criterion filter = createFeatureSpatialFilter(null);
+        return filter != null ? criteria.add(filter) : criteria;
+    }
+
+    /**
+     * Creates the spatial filter on features. If the features within the spatial filter have been resolved in
+     * advance (see {@link #setSpatialFeatureIds(Set)}), the features are filtered by id, otherwise by geometry. The
+     * number of resolved ids is bounded by the resolving index, see {@code FeatureSpatialIndex#setMaxIds(int)}.
+     *
+     * @param alias the alias of the feature entity, may be {@code null}
+     * @return the spatial filter or {@code null} if no spatial filter has been requested
+     */
+    public Criterion createFeatureSpatialFilter(String alias) {
+        if (spatialFeatureIds == null) {
+            return createSpatialFilter(alias);
+        }
+        return spatialFeatureIds.isEmpty()
+                ? Restrictions.sqlRestriction("1=0")
+                : QueryUtils.createChunkedIn(QueryUtils.createAssociation(alias, IdEntity.PROPERTY_ID),
+                                             spatialFeatureIds);
+    }
+
+    /**
+     * @param alias the alias of the entity holding the geometry, may be {@code null}
+     * @return the spatial filter or {@code null} if no spatial filter has been requested
+     */
+    public SpatialFilter createSpatialFilter(String alias) {
         Envelope envelope = getSpatialFilter();
         if (envelope != null) {
             int databaseSrid = CRSUtils.getSrsIdFrom(databaseSridCode);
-            String geometryMember = DataEntity.PROPERTY_GEOMETRY_ENTITY + ".geometry";
+            String geometryMember =
+                    QueryUtils.createAssociation(alias, DataEntity.PROPERTY_GEOMETRY_ENTITY + ".geometry");
             return SpatialRestrictions.filter(geometryMember, envelope, databaseSrid);
 
             // TODO intersect with linestring
@@ -485,6 +629,52 @@ public class DbQuery {
         return new DbQuery(parameters.removeAllOf(Parameters.FILTER_FIELDS));
     }
 
+    /**
+     * @return the fields selected via {@code fields} parameter (lower case) or an empty set if all fields are
+     *         requested
+     */
+    public Set<String> getFields() {
+        String fields = parameters.getAsString(Parameters.FILTER_FIELDS);
+        if (fields == null || fields.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(fields.split(","))
+                     .map(String::trim)
+                     .filter(f -> !f.isEmpty())
+                     .map(f -> f.toLowerCase(Locale.ROOT))
+                     .collect(Collectors.toSet());
+    }
+
+    public boolean hasFieldsFilter() {
+        return !getFields().isEmpty();
+    }
+
+    /**
+     * @param field
+     *        the output field
+     * @return {@code true} if no fields filter is set or the given field is selected
+     */
+    public boolean isSelected(String field) {
+        Set<String> fields = getFields();
+        return fields.isEmpty() || fields.contains(field.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param fields
+     *        the output fields which can be served
+     * @return {@code true} if a fields filter is set and all selected fields are contained in the given ones
+     */
+    public boolean isSelectedOnly(String... fields) {
+        Set<String> selected = getFields();
+        if (selected.isEmpty()) {
+            return false;
+        }
+        Set<String> available = Arrays.stream(fields)
+                                      .map(f -> f.toLowerCase(Locale.ROOT))
+                                      .collect(Collectors.toSet());
+        return available.containsAll(selected);
+    }
+
     public boolean expandWithNextValuesBeyondInterval() {
         return parameters.isExpandWithNextValuesBeyondInterval();
     }
@@ -505,4 +695,145 @@ public class DbQuery {
         return this;
     }
 
+    /**
+     * @return the value types result filters have to be created for. Falls back to the requested value types
+     *         if not set explicitly. An empty set means all value types.
+     */
+    public Set<ValueType> getResultValueTypes() {
+        if (resultValueTypes != null) {
+            return resultValueTypes;
+        }
+        Set<ValueType> valueTypes = EnumSet.noneOf(ValueType.class);
+        for (String valueType : getValueTypes()) {
+            try {
+                valueTypes.add(ValueType.valueOf(valueType));
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Ignoring unknown value type '{}' for result filters.", valueType);
+            }
+        }
+        return valueTypes;
+    }
+
+    /**
+     * @param resultValueTypes the value types of the queried datasets, e.g. when the dataset is already known
+     * @return this query
+     */
+    public DbQuery setResultValueTypes(Set<ValueType> resultValueTypes) {
+        this.resultValueTypes = resultValueTypes;
+        return this;
+    }
+
+    public Interval getDataBounds() {
+        return dataBounds;
+    }
+
+    /**
+     * @param dataBounds the time bounds of the queried dataset's data. The requested timespan gets clipped to
+     *        these bounds when data is queried, so that observations are scanned over the narrowest range.
+     * @return this query
+     */
+    public DbQuery setDataBounds(Interval dataBounds) {
+        this.dataBounds = dataBounds;
+        return this;
+    }
+
+    public Set<Long> getCoveredDatasetIds() {
+        return coveredDatasetIds;
+    }
+
+    /**
+     * @param coveredDatasetIds the ids of the datasets having data within the requested timespan, resolved in
+     *        advance from an in-memory index. {@code null} if no temporal dataset filter applies.
+     * @return this query
+     */
+    public DbQuery setCoveredDatasetIds(Set<Long> coveredDatasetIds) {
+        this.coveredDatasetIds = coveredDatasetIds;
+        return this;
+    }
+
+    public Interval getCoveredTimespan() {
+        return coveredTimespan;
+    }
+
+    /**
+     * @param coveredTimespan the timespan datasets must have data within, checked on the datasets' first and last
+     *        value times in the database if the covered dataset ids have not been resolved in advance. {@code null}
+     *        if no temporal dataset filter applies.
+     * @return this query
+     */
+    public DbQuery setCoveredTimespan(Interval coveredTimespan) {
+        this.coveredTimespan = coveredTimespan;
+        return this;
+    }
+
+    public DatasetCatalogue getDatasetCatalogue() {
+        return datasetCatalogue;
+    }
+
+    /**
+     * @param datasetCatalogue the in-memory dataset catalogue to evaluate parameter filters against, may be
+     *        {@code null} to evaluate all filters via SQL
+     * @return this query
+     */
+    public DbQuery setDatasetCatalogue(DatasetCatalogue datasetCatalogue) {
+        this.datasetCatalogue = datasetCatalogue;
+        return this;
+    }
+
+    public PrefetchedObservations getPrefetchedObservations() {
+        return prefetchedObservations;
+    }
+
+    /**
+     * @param prefetchedObservations the first and last observations of the queried datasets loaded in advance,
+     *        may be {@code null} to look them up per dataset
+     * @return this query
+     */
+    public DbQuery setPrefetchedObservations(PrefetchedObservations prefetchedObservations) {
+        this.prefetchedObservations = prefetchedObservations;
+        return this;
+    }
+
+    public Envelope getSpatialEnvelope() {
+        return spatialEnvelope;
+    }
+
+    /**
+     * @param spatialEnvelope a lon/lat envelope used as spatial filter instead of the requested bbox, e.g. the
+     *        bounds of a map tile. {@code null} to filter by the request parameters.
+     * @return this query
+     */
+    public DbQuery setSpatialEnvelope(Envelope spatialEnvelope) {
+        this.spatialEnvelope = spatialEnvelope;
+        return this;
+    }
+
+    public Set<Long> getSpatialFeatureIds() {
+        return spatialFeatureIds;
+    }
+
+    /**
+     * @param spatialFeatureIds the ids of the features within the spatial filter, resolved in advance from an
+     *        in-memory index. {@code null} to filter by geometry.
+     * @return this query
+     */
+    public DbQuery setSpatialFeatureIds(Set<Long> spatialFeatureIds) {
+        this.spatialFeatureIds = spatialFeatureIds;
+        return this;
+    }
+
+    public ODataFilterCache getODataFilterCache() {
+        return odataFilterCache;
+    }
+
+    /**
+     * @param odataFilterCache the cache of parsed OData filters, may be {@code null} to parse filters on each
+     *        request
+     * @return this query
+     */
+    public DbQuery setODataFilterCache(ODataFilterCache odataFilterCache) {
+        this.odataFilterCache = odataFilterCache;
+        return this;
+    }
+
 }
@@ -39,11 +39,15 @@ public class DefaultDbQueryFactory implements DbQueryFactory {
     private static final String EPSG_PREFIX = "EPSG:";
     private String databaseSrid = "EPSG:4326";
     private Integer epsgCode;
+    private ODataFilterCache odataFilterCache;
+    private DatasetCatalogue datasetCatalogue;
 
     @Override
     public DbQuery createFrom(IoParameters parameters) {
         DbQuery query = new DbQuery(parameters);
         query.setDatabaseSridCode(getDatabaseSrid());
+        query.setODataFilterCache(odataFilterCache);
+        query.setDatasetCatalogue(datasetCatalogue);
         return query;
     }
 
@@ -59,6 +63,22 @@ public class DefaultDbQueryFactory implements DbQueryFactory {
         }
     }
 
+    public ODataFilterCache getODataFilterCache() {
+        return odataFilterCache;
+    }
+
+    public void setODataFilterCache(ODataFilterCache odataFilterCache) {
+        this.odataFilterCache = odataFilterCache;
+    }
+
+    public DatasetCatalogue getDatasetCatalogue() {
+        return datasetCatalogue;
+    }
+
+    public void setDatasetCatalogue(DatasetCatalogue datasetCatalogue) {
+        this.datasetCatalogue = datasetCatalogue;
+    }
+
     @Setting(STORAGE_EPSG_KEY)
     public void setStorageEpsg(int epsgCode) {
         this.epsgCode = epsgCode;
@@ -31,7 +31,11 @@ package org.n52.series.db.dao;
 import static java.util.stream.Collectors.toList;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -64,6 +68,7 @@ import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.beans.ProfileDataEntity;
 import org.n52.series.db.beans.QuantityDataEntity;
 import org.n52.series.db.beans.TextDataEntity;
+import org.n52.series.db.beans.dataset.ValueType;
 import org.n52.shetland.ogc.filter.BinaryLogicFilter;
 import org.n52.shetland.ogc.filter.ComparisonFilter;
 import org.n52.shetland.ogc.filter.Filter;
@@ -104,10 +109,13 @@ public abstract class FESCriterionGenerator {
     private static final String VR_PHENOMENON_TIME = "om:phenomenonTime";
     private static final String VR_RESULT_TIME = "om:resultTime";
     private static final String VR_RESULT = "om:result";
+    private static final List<ValueType> RESULT_TYPES = Collections.unmodifiableList(
+            Arrays.asList(ValueType.count, ValueType.quantity, ValueType.text, ValueType.category));
     private final boolean unsupportedIsTrue;
     private final boolean matchDomainIds;
     private final boolean complexParent;
     private final Criteria criteria;
+    private final Set<ValueType> valueTypes;
     private final Set<String> aliases = new HashSet<>();
 
     /**
@@ -128,10 +136,38 @@ public abstract class FESCriterionGenerator {
                                  boolean unsupportedIsTrue,
                                  boolean matchDomainIds,
                                  boolean complexParent) {
+        this(criteria, unsupportedIsTrue, matchDomainIds, complexParent, Collections.emptySet());
+    }
+
+    /**
+     * Creates a new {@code FESCriterionGenerator}.
+     *
+     * @param criteria
+     *        the criteria
+     * @param unsupportedIsTrue
+     *        if the generator encounters a filter expression it could not translate it may generate a
+     *        criterion that is always {@code true} or always {@code false} depending on this flag
+     * @param matchDomainIds
+     *        if filter on observation parameters like feature, offering or procedure should match on
+     *        their respective domain identifiers or on the primary keys in the database
+     * @param complexParent
+     *        if the queries should result in the parent observation and hide the child observations
+     * @param valueTypes
+     *        the value types of the filtered datasets, result filters are only created for these types. An
+     *        empty set queries all types.
+     */
+    public FESCriterionGenerator(Criteria criteria,
+                                 boolean unsupportedIsTrue,
+                                 boolean matchDomainIds,
+                                 boolean complexParent,
+                                 Collection<ValueType> valueTypes) {
         this.criteria = Objects.requireNonNull(criteria);
         this.unsupportedIsTrue = unsupportedIsTrue;
         this.matchDomainIds = matchDomainIds;
         this.complexParent = complexParent;
+        this.valueTypes = valueTypes == null || valueTypes.isEmpty()
+                ? EnumSet.noneOf(ValueType.class)
+                : EnumSet.copyOf(valueTypes);
     }
 
     /**
@@ -174,6 +210,17 @@ public abstract class FESCriterionGenerator {
         return this.complexParent;
     }
 
+    /**
+     * Checks if result filters have to be created for the given value type.
+     *
+     * @param valueType
+     *        the value type
+     * @return if datasets of the given value type are queried
+     */
+    protected boolean isQueried(ValueType valueType) {
+        return valueTypes.isEmpty() || valueTypes.contains(valueType);
+    }
+
     /**
      * Add a alias for the specified property to the criteria.
      *
@@ -182,17 +229,30 @@ public abstract class FESCriterionGenerator {
      * @return the alias
      */
     protected String addAlias(String property) {
+        return addAlias(property, "odf_" + property);
+    }
+
+    /**
+     * Add a alias for the specified association path to the criteria. An existing alias for the path is
+     * reused.
+     *
+     * @param path
+     *        the association path
+     * @param alias
+     *        the alias to create if the path is not joined yet
+     * @return the alias
+     */
+    protected String addAlias(String path, String alias) {
         Iterator<Subcriteria> subcriteria = ((CriteriaImpl) this.criteria).iterateSubcriteria();
         while (subcriteria.hasNext()) {
             Subcriteria sc = subcriteria.next();
             if (sc.getPath()
-                  .equals(property)) {
+                  .equals(path) && sc.getAlias() != null) {
                 return sc.getAlias();
             }
         }
-        String alias = "odf_" + property;
         if (!this.aliases.contains(alias)) {
-            this.criteria.createAlias(property, alias);
+            this.criteria.createAlias(path, alias);
             this.aliases.add(alias);
         }
         return alias;
@@ -385,8 +445,7 @@ public abstract class FESCriterionGenerator {
                 if (!(v instanceof String)) {
                     throw new Error("Could not apply PropertyIsLike to non string value");
                 }
-                filter.setValue((String) v);
-                return createLike(filter);
+                return createLike(filter, (String) v);
             case PropertyIsNull:
             case PropertyIsNil:
                 return Restrictions.isNull(filter.getValueReference());
@@ -1012,44 +1071,42 @@ public abstract class FESCriterionGenerator {
     }
 
     /**
-     * Create a {@code Criterion} for the specified {@code PropertyIsLike} comparison filter.
+     * Create a {@code Criterion} for the specified {@code PropertyIsLike} comparison filter. The filter itself is
+     * left untouched, as parsed filters may be shared between requests.
      *
      * @param filter the filter
+     * @param pattern the pattern to match
      *
      * @return the criterion
      */
-    private Criterion createLike(ComparisonFilter filter) {
+    private Criterion createLike(ComparisonFilter filter, String pattern) {
 
         String escapeString = "\\";
         String filterEscapeString = filter.getEscapeString();
-        if (filter.isSetEscapeString()) {
-            if (filterEscapeString.length() != 1) {
-                String escapeStringRegex = "\\\\";
-                filter.setValue(filter.getValue().replaceAll(escapeStringRegex, escapeString + escapeString));
-                filter.setValue(filter.getValue().replaceAll(Pattern.quote(filterEscapeString), escapeString));
-                filter.setEscapeString(escapeString);
-            }
-        } else {
-            filter.setEscapeString(escapeString);
+        String value = pattern;
+        if (filter.isSetEscapeString() && filterEscapeString.length() != 1) {
+            String escapeStringRegex = "\\\\";
+            value = value.replaceAll(escapeStringRegex, escapeString + escapeString);
+            value = value.replaceAll(Pattern.quote(filterEscapeString), escapeString);
         }
 
         if (filter.isSetSingleChar()) {
             String underscore = "_";
             if (!filter.getSingleChar().equals(underscore)) {
-                filter.setValue(filter.getValue().replaceAll(underscore, filterEscapeString + underscore));
-                filter.setValue(filter.getValue().replaceAll(Pattern.quote(filter.getSingleChar()), underscore));
+                value = value.replaceAll(underscore, filterEscapeString + underscore);
+                value = value.replaceAll(Pattern.quote(filter.getSingleChar()), underscore);
             }
         }
 
         if (filter.isSetWildCard()) {
             String stringWildcard = "%";
             if (!filter.getWildCard().equals(stringWildcard)) {
-                filter.setValue(filter.getValue().replaceAll(stringWildcard, filterEscapeString + stringWildcard));
-                filter.setValue(filter.getValue().replaceAll(Pattern.quote(filter.getWildCard()), stringWildcard));
+                value = value.replaceAll(stringWildcard, filterEscapeString + stringWildcard);
+                value = value.replaceAll(Pattern.quote(filter.getWildCard()), stringWildcard);
             }
         }
         return MoreRestrictions.like(filter.getValueReference(),
-                                     filter.getValue(),
+                                     value,
                                      filterEscapeString,
                                      !filter.isMatchCase());
     }
@@ -1154,36 +1211,20 @@ public abstract class FESCriterionGenerator {
      * @return a stream of subqueries for the {@linkplain DataEntity data entity}
      */
     protected Stream<DetachedCriteria> getResultSubqueries(ComparisonFilter filter) {
-        filter.setValueReference(DataEntity.PROPERTY_VALUE);
-        //        Optional<DetachedCriteria> count = parseLong(filter.getValue())
-        Optional<DetachedCriteria> count = parseInt(filter.getValue())
-                // we can't apply PropertyIsLike to count values
-                .filter(v -> filter.getOperator() != ComparisonOperator.PropertyIsLike)
-                .map(lv -> DetachedCriteria.forClass(CountDataEntity.class)
-                .add(createComparison(filter, lv)));
-        /* TODO uncomment when BooleanDataEntity exists
-        Optional<DetachedCriteria> bool = parseBoolean(filter.getValue())
-                // we can't apply PropertyIsLike to boolean values
-                .filter(v -> filter.getOperator() != ComparisonOperator.PropertyIsLike)
-                .map(lv -> DetachedCriteria.forClass(BooleanDataEntity.class)
-                .add(createComparison(filter, lv)));
-        */
-        Optional<DetachedCriteria> quantity = parseBigDecimal(filter.getValue())
-                // we can't apply PropertyIsLike to numeric values
-                .filter(v -> filter.getOperator() != ComparisonOperator.PropertyIsLike)
-                .map(dv -> DetachedCriteria.forClass(QuantityDataEntity.class)
-                .add(createComparison(filter, dv)));
-
-        Optional<DetachedCriteria> text = Optional.of(DetachedCriteria.forClass(TextDataEntity.class)
-                .add(createComparison(filter)));
-        Optional<DetachedCriteria> category = Optional.of(DetachedCriteria.forClass(CategoryDataEntity.class)
-                .add(createComparison(filter)));
-        // subqueries resulting in the ids of matching observations
-        List<DetachedCriteria> subqueries = Stream.of(count, quantity, text, category/*, bool*/)
+        // subqueries resulting in the ids of matching observations, pruned to the queried value types
+        List<DetachedCriteria> subqueries = RESULT_TYPES.stream()
+                .filter(this::isQueried)
+                .map(type -> createResultComparison(type, filter)
+                        .map(c -> DetachedCriteria.forClass(getResultEntityClass(type)).add(c)))
                 .filter(Optional::isPresent).map(Optional::get)
                 .map(q -> q.add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE)))
                 .collect(toList());
 
+        if (subqueries.isEmpty()) {
+            // no queried value type can be compared with the value
+            return Stream.empty();
+        }
+
         if (!isComplexParent()) {
 
             // we are not returning top-level observations but the children,
@@ -1212,6 +1253,85 @@ public abstract class FESCriterionGenerator {
         return Stream.concat(Stream.of(profile), topLevelPrimitives);
     }
 
+    /**
+     * Wraps the result subquery criterions into a disjunction. As an empty disjunction matches every row, no
+     * remaining subquery results in a criterion that is always {@code false}.
+     *
+     * @param criterions the criterions created from the {@linkplain #getResultSubqueries(ComparisonFilter)
+     *                   result subqueries}
+     *
+     * @return the disjunction
+     */
+    protected Criterion createResultDisjunction(Stream<? extends Criterion> criterions) {
+        List<Criterion> list = criterions.collect(toList());
+        if (list.isEmpty()) {
+            return MoreRestrictions.alwaysFalse();
+        }
+        return list.stream().collect(MoreRestrictions.toDisjunction());
+    }
+
+    /**
+     * Creates a comparison directly on the value of the data row if the result filter has to be applied to a
+     * single value type only and the filtered entity is of this type. This avoids the subqueries created by
+     * {@link #getResultSubqueries(ComparisonFilter)}.
+     *
+     * @param filter the filter
+     * @param entityClass the class of the filtered data entity
+     *
+     * @return the direct comparison or an empty {@code Optional} if subqueries are needed
+     */
+    protected Optional<Criterion> getDirectResultCriterion(ComparisonFilter filter, Class<?> entityClass) {
+        if (isComplexParent() || entityClass == null) {
+            return Optional.empty();
+        }
+        List<ValueType> queried = RESULT_TYPES.stream().filter(this::isQueried).collect(toList());
+        if (queried.size() != 1 || !getResultEntityClass(queried.get(0)).isAssignableFrom(entityClass)) {
+            return Optional.empty();
+        }
+        return createResultComparison(queried.get(0), filter);
+    }
+
+    /**
+     * Creates the comparison on the value of the given value type. Values which can not be compared with the
+     * type (e.g. a non-numeric value for quantities) result in an empty {@code Optional}.
+     *
+     * @param valueType the value type
+     * @param filter the filter
+     *
+     * @return the comparison
+     */
+    private Optional<Criterion> createResultComparison(ValueType valueType, ComparisonFilter filter) {
+        filter.setValueReference(DataEntity.PROPERTY_VALUE);
+        // we can't apply PropertyIsLike to numeric values
+        boolean like = filter.getOperator() == ComparisonOperator.PropertyIsLike;
+        switch (valueType) {
+            case count:
+                return parseInt(filter.getValue()).filter(v -> !like).map(v -> createComparison(filter, v));
+            case quantity:
+                return parseBigDecimal(filter.getValue()).filter(v -> !like).map(v -> createComparison(filter, v));
+            case text:
+            case category:
+                return Optional.of(createComparison(filter));
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private Class<? extends DataEntity> getResultEntityClass(ValueType valueType) {
+        switch (valueType) {
+            case count:
+                return CountDataEntity.class;
+            case quantity:
+                return QuantityDataEntity.class;
+            case text:
+                return TextDataEntity.class;
+            case category:
+                return CategoryDataEntity.class;
+            default:
+                return DataEntity.class;
+        }
+    }
+
     /**
      * Creates a spatial filter criterion for the sampling geometry.
      *
@@ -28,25 +28,47 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Session;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.AbstractFeatureEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.beans.i18n.I18nFeatureEntity;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
 public class FeatureDao extends HierarchicalDao<FeatureEntity, I18nFeatureEntity> {
 
+    private static final String GEOMETRY_PATH = FeatureEntity.PROPERTY_GEOMETRY_ENTITY + ".geometry";
+
+    /**
+     * Prime the feature ids are reduced by before weighting the envelopes, keeping the checksum small.
+     */
+    private static final int SIGNATURE_MODULUS = 1009;
+
     public FeatureDao(Session session) {
         super(session);
     }
@@ -71,6 +93,208 @@ public class FeatureDao extends HierarchicalDao<FeatureEntity, I18nFeatureEntity
         return getCriteria(query).list();
     }
 
+    /**
+     * @param query
+     *        the query filtering the features via their datasets
+     * @return tuples of id, geometry and name of all matching features
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getGeometries(DbQuery query) {
+        Criteria criteria = getFilteredCriteria(query);
+        criteria.setProjection(Projections.projectionList()
+                                          .add(Projections.id())
+                                          .add(Projections.property(FeatureEntity.PROPERTY_GEOMETRY_ENTITY))
+                                          .add(Projections.property(FeatureEntity.PROPERTY_NAME)));
+        return criteria.list();
+    }
+
+    /**
+     * @param query
+     *        the query filtering the features via their datasets
+     * @return tuples of id and name of all matching features lacking a geometry, e.g. mobile features whose
+     *         track has to be built from their sampling geometries
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getWithoutGeometry(DbQuery query) {
+        Criteria criteria = getFilteredCriteria(query).add(Restrictions.isNull(GEOMETRY_PATH));
+        criteria.setProjection(Projections.projectionList()
+                                          .add(Projections.id())
+                                          .add(Projections.property(FeatureEntity.PROPERTY_NAME)));
+        return criteria.list();
+    }
+
+    /**
+     * @return the number and the highest id of all features having a geometry, changing whenever such a feature is
+     *         added or removed. Where supported (PostGIS) a checksum of the features' envelopes is added, changing
+     *         whenever a geometry is moved.
+     */
+    public List<Object> getGeometrySignature() {
+        ProjectionList projections = Projections.projectionList()
+                                                .add(Projections.rowCount())
+                                                .add(Projections.max(FeatureEntity.PROPERTY_ID));
+        String idColumn = DataModelUtil.getColumnName(FeatureEntity.PROPERTY_ID, FeatureEntity.class, session);
+        String column = DataModelUtil.getColumnName(GEOMETRY_PATH, FeatureEntity.class, session);
+        if (DataModelUtil.isPostgisDialect(session) && idColumn != null && column != null) {
+            String geometry = "{alias}." + column;
+            // exact numeric sum, so the checksum does not depend on the order of summation
+            String checksum = "sum(mod({alias}." + idColumn + ", " + SIGNATURE_MODULUS + ") * (ST_XMin(" + geometry
+                    + ") + ST_YMin(" + geometry + ") + ST_XMax(" + geometry + ") + ST_YMax(" + geometry
+                    + "))::numeric) as geometry_checksum";
+            projections.add(Projections.sqlProjection(checksum,
+                                                      new String[] {"geometry_checksum"},
+                                                      new Type[] {StandardBasicTypes.BIG_DECIMAL}));
+        }
+        Object[] signature = (Object[]) session.createCriteria(getEntityClass())
+                                               .add(Restrictions.isNotNull(GEOMETRY_PATH))
+                                               .setProjection(projections)
+                                               .uniqueResult();
+        return Arrays.asList(signature);
+    }
+
+    /**
+     * @return tuples of id and geometry of all features having a geometry, regardless of their datasets
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getAllGeometries() {
+        Criteria criteria = session.createCriteria(getEntityClass())
+                                   .add(Restrictions.isNotNull(GEOMETRY_PATH));
+        criteria.setProjection(Projections.projectionList()
+                                          .add(Projections.id())
+                                          .add(Projections.property(FeatureEntity.PROPERTY_GEOMETRY_ENTITY)));
+        return criteria.list();
+    }
+
+    /**
+     * Aggregates the envelope of the given features' geometries, in the database where supported (PostGIS
+     * {@code ST_Extent}), otherwise from the geometries.
+     *
+     * @param featureIds
+     *        a subquery projecting the ids of the features
+     * @return the envelope in the database CRS or {@code null} if none of the features has a geometry
+     */
+    public Envelope getExtent(DetachedCriteria featureIds) {
+        Criteria criteria = session.createCriteria(getEntityClass())
+                                   .add(Subqueries.propertyIn(FeatureEntity.PROPERTY_ID, featureIds))
+                                   .add(Restrictions.isNotNull(GEOMETRY_PATH));
+        String column = DataModelUtil.getColumnName(GEOMETRY_PATH, FeatureEntity.class, session);
+        if (DataModelUtil.isPostgisDialect(session) && column != null) {
+            String extent = "ST_Extent({alias}." + column + ")";
+            String select = "ST_XMin(" + extent + ") as min_x, ST_YMin(" + extent + ") as min_y, "
+                    + "ST_XMax(" + extent + ") as max_x, ST_YMax(" + extent + ") as max_y";
+            String[] aliases = {"min_x", "min_y", "max_x", "max_y"};
+            Type[] types = new Type[aliases.length];
+            Arrays.fill(types, StandardBasicTypes.DOUBLE);
+            Object[] bounds = (Object[]) criteria.setProjection(Projections.sqlProjection(select, aliases, types))
+                                                 .uniqueResult();
+            return bounds == null || bounds[0] == null
+                    ? null
+                    : new Envelope((Double) bounds[0], (Double) bounds[2], (Double) bounds[1], (Double) bounds[3]);
+        }
+        // transfer the geometries only instead of the features
+        criteria.setProjection(Projections.property(FeatureEntity.PROPERTY_GEOMETRY_ENTITY));
+        Envelope envelope = new Envelope();
+        for (Object element : criteria.list()) {
+            GeometryEntity geometryEntity = (GeometryEntity) element;
+            if (geometryEntity != null && geometryEntity.isSetGeometry()) {
+                envelope.expandToInclude(geometryEntity.getGeometry().getEnvelopeInternal());
+            }
+        }
+        return envelope.isNull()
+                ? null
+                : envelope;
+    }
+
+    /**
+     * Groups the matching features by the cells of a regular grid in the database (PostGIS), so only one row per
+     * occupied cell is transferred. A cell's index is the floored distance to the origin in cell units.
+     *
+     * @param query
+     *        the query filtering the features via their datasets
+     * @param originX
+     *        the grid origin's x in the database CRS
+     * @param originY
+     *        the grid origin's y in the database CRS
+     * @param cellSize
+     *        the cell size in units of the database CRS, must be positive
+     * @return tuples of count, centroid x and y as well as min x, min y, max x and max y per cell in the database
+     *         CRS, or {@code null} if the database cannot group by grid cells
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getClusters(DbQuery query, double originX, double originY, double cellSize) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellSize);
+        }
+        String column = DataModelUtil.getColumnName(GEOMETRY_PATH, FeatureEntity.class, session);
+        if (!DataModelUtil.isPostgisDialect(session) || column == null) {
+            return null;
+        }
+        String geometry = "{alias}." + column;
+        String centroid = "ST_Centroid(ST_Collect(" + geometry + "))";
+        String extent = "ST_Extent(" + geometry + ")";
+        // floor the cell indices like StationRepository does when clustering in memory
+        String cell = "floor((ST_X(" + geometry + ") - " + originX + ") / " + cellSize + "), "
+                + "floor((ST_Y(" + geometry + ") - " + originY + ") / " + cellSize + ")";
+        String select = "count(*) as cluster_count, "
+                + "ST_X(" + centroid + ") as centroid_x, ST_Y(" + centroid + ") as centroid_y, "
+                + "ST_XMin(" + extent + ") as min_x, ST_YMin(" + extent + ") as min_y, "
+                + "ST_XMax(" + extent + ") as max_x, ST_YMax(" + extent + ") as max_y";
+        String[] aliases = {"cluster_count", "centroid_x", "centroid_y", "min_x", "min_y", "max_x", "max_y"};
+        Type[] types = new Type[aliases.length];
+        Arrays.fill(types, StandardBasicTypes.DOUBLE);
+        types[0] = StandardBasicTypes.LONG;
+        // aggregate over all matching features, paging applies to listings only
+        Criteria criteria = getUnpagedFilteredCriteria(query).add(Restrictions.isNotNull(GEOMETRY_PATH));
+        criteria.setProjection(Projections.sqlGroupProjection(select, cell, aliases, types));
+        return criteria.list();
+    }
+
+    /**
+     * Selects the features nearest to the center of the query's near filter, ordered by their distance on the
+     * spheroid. A radius is checked on the spheroid as well.
+     *
+     * @param query
+     *        the query filtering the features via their datasets, must contain a near filter
+     * @return the ids of at most {@code limit} features ordered by distance, or {@code null} if the database cannot
+     *         order by distance
+     */
+    public List<Long> getNearest(DbQuery query) {
+        NearFilter near = query.getNearFilter();
+        return near != null
+                ? getNearest(query, near.getLimit())
+                : null;
+    }
+
+    /**
+     * @param query
+     *        the query filtering the features via their datasets, must contain a near filter
+     * @param limit
+     *        the maximum number of features, overriding the near filter's limit
+     * @return the ids of at most {@code limit} features ordered by distance, or {@code null} if the database cannot
+     *         order by distance
+     * @see #getNearest(DbQuery)
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> getNearest(DbQuery query, int limit) {
+        NearFilter near = query.getNearFilter();
+        String column = DataModelUtil.getColumnName(GEOMETRY_PATH, FeatureEntity.class, session);
+        if (near == null || !DataModelUtil.isPostgisDialect(session) || column == null) {
+            return null;
+        }
+        Coordinate center = near.getCenter();
+        String point = "ST_SetSRID(ST_MakePoint(" + center.x + ", " + center.y + "), 4326)::geography";
+        String geography = "ST_Transform({alias}." + column + ", 4326)::geography";
+        Criteria criteria = getFilteredCriteria(query).add(Restrictions.isNotNull(GEOMETRY_PATH));
+        if (near.getRadius() != null) {
+            criteria.add(Restrictions.sqlRestriction("ST_DWithin(" + geography + ", " + point + ", "
+                    + near.getRadius() + ")"));
+        }
+        // order by distance on the spheroid, the k nearest by planar distance in the database CRS may differ
+        criteria.setProjection(Projections.id())
+                .addOrder(new SqlOrder("ST_Distance(" + geography + ", " + point + ")"))
+                .setMaxResults(limit);
+        return criteria.list();
+    }
+
     @Override
     public Set<Long> getChildrenIds(DbQuery query) {
         Set<String> features = query.getParameters().getFeatures();
@@ -88,7 +312,7 @@ public class FeatureDao extends HierarchicalDao<FeatureEntity, I18nFeatureEntity
             c.add(query.getParameters().isMatchDomainIds() ? createDomainIdFilter(parameters.getFeatures())
                     : createIdFilter(parameters.getFeatures()));
         }
-        query.addSpatialFilter(c);
+        query.addFeatureSpatialFilter(c);
         return c;
     }
 
@@ -137,4 +361,29 @@ public class FeatureDao extends HierarchicalDao<FeatureEntity, I18nFeatureEntity
         }
         return criteria;
     }
+
+    /**
+     * Orders by an SQL expression, e.g. a distance operator not known to the criteria API.
+     */
+    private static final class SqlOrder extends Order {
+
+        private static final long serialVersionUID = 5405196924535916390L;
+
+        private final String sql;
+
+        SqlOrder(String sql) {
+            super(sql, true);
+            this.sql = sql;
+        }
+
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) {
+            return sql.replace("{alias}", criteriaQuery.getSQLAlias(criteria));
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
 }
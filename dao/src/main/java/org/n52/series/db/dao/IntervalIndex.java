@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable interval tree over closed {@code [start, end]} intervals of ids. The intervals are sorted by their
+ * start and stored as an implicit balanced tree in which each node holds the maximum end of its subtree. Finding
+ * all intervals overlapping a query interval takes {@code O(log n + k)} for {@code k} matches.
+ */
+public final class IntervalIndex {
+
+    private static final IntervalIndex EMPTY = new IntervalIndex(new long[0], new long[0], new long[0]);
+
+    private final long[] ids;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long[] maxEnds;
+
+    private IntervalIndex(long[] ids, long[] starts, long[] ends) {
+        this.ids = ids;
+        this.starts = starts;
+        this.ends = ends;
+        this.maxEnds = new long[ids.length];
+        buildMaxEnds(0, ids.length);
+    }
+
+    public static IntervalIndex empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param start
+     *        the start of the query interval (inclusive)
+     * @param end
+     *        the end of the query interval (inclusive)
+     * @return the ids of all intervals overlapping the query interval
+     */
+    public Set<Long> getOverlapping(long start, long end) {
+        Set<Long> result = new HashSet<>();
+        if (start <= end) {
+            collectOverlapping(0, ids.length, start, end, result);
+        }
+        return result;
+    }
+
+    private void collectOverlapping(int lo, int hi, long start, long end, Set<Long> result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] < start) {
+            // all intervals of this subtree end before the query interval
+            return;
+        }
+        collectOverlapping(lo, mid, start, end, result);
+        if (starts[mid] <= end) {
+            if (ends[mid] >= start) {
+                result.add(ids[mid]);
+            }
+            collectOverlapping(mid + 1, hi, start, end, result);
+        }
+        // otherwise the right subtree starts after the query interval
+    }
+
+    private long buildMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid), buildMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    public static final class Builder {
+
+        private long[] ids = new long[16];
+
+        private long[] starts = new long[16];
+
+        private long[] ends = new long[16];
+
+        private int size;
+
+        private Builder() {
+        }
+
+        public Builder add(long id, long start, long end) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            ids[size] = id;
+            starts[size] = Math.min(start, end);
+            ends[size] = Math.max(start, end);
+            size++;
+            return this;
+        }
+
+        public IntervalIndex build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+            long[] sortedIds = new long[size];
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = ids[order[i]];
+                sortedStarts[i] = starts[order[i]];
+                sortedEnds[i] = ends[order[i]];
+            }
+            return new IntervalIndex(sortedIds, sortedStarts, sortedEnds);
+        }
+
+    }
+
+}
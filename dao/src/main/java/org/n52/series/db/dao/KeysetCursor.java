@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.n52.web.exception.BadRequestException;
+
+/**
+ * Opaque cursor for keyset (seek) pagination. The cursor encodes the key of the last item of a page, so the
+ * next page is selected via {@code id > :last} instead of skipping all preceding rows.
+ */
+public final class KeysetCursor {
+
+    public static final String PARAMETER = "cursor";
+
+    private static final String ID_KEY = "id:";
+
+    private final Long lastId;
+
+    private KeysetCursor(Long lastId) {
+        this.lastId = lastId;
+    }
+
+    public static KeysetCursor after(Long lastId) {
+        if (lastId == null) {
+            throw new IllegalArgumentException("lastId must not be null");
+        }
+        return new KeysetCursor(lastId);
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(ID_KEY)) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+            return new KeysetCursor(Long.parseLong(decoded.substring(ID_KEY.length())));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        byte[] key = (ID_KEY + lastId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key);
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{lastId=" + lastId + "}";
+    }
+
+}
@@ -28,30 +28,43 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.joda.time.Interval;
+import org.locationtech.jts.geom.Envelope;
 import org.n52.io.IntervalWithTimeZone;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.i18n.I18nMeasuringProgramEntity;
 import org.n52.series.db.beans.sampling.MeasuringProgramEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 public class MeasuringProgramDao extends AbstractDao<MeasuringProgramEntity>
         implements SearchableDao<MeasuringProgramEntity> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MeasuringProgramDao.class);
 
+    private static final String DATASET_ALIAS = "mp_ds";
+
     public MeasuringProgramDao(Session session) {
         super(session);
     }
@@ -93,6 +106,54 @@ public class MeasuringProgramDao extends AbstractDao<MeasuringProgramEntity>
         return query.addFilters(datasetCriteria, getDatasetProperty(), session);
     }
 
+    /**
+     * @param programIds
+     *        the measuring programs
+     * @return per program the number and the sum of the ids of its datasets and of their features, changing whenever
+     *         a dataset is added to or removed from the program or a dataset's feature is replaced. Programs without
+     *         datasets are omitted.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, List<Object>> getDatasetSignatures(Collection<Long> programIds) {
+        String datasetId = QueryUtils.createAssociation(DATASET_ALIAS, DescribableEntity.PROPERTY_ID);
+        String feature = QueryUtils.createAssociation(DATASET_ALIAS, DatasetEntity.PROPERTY_FEATURE);
+        String featureId = QueryUtils.createAssociation(feature, DescribableEntity.PROPERTY_ID);
+        Map<Long, List<Object>> signatures = new HashMap<>();
+        for (List<Long> ids : Lists.partition(new ArrayList<>(programIds), QueryUtils.MAX_IN_LIST_IDS)) {
+            List<Object[]> rows = session.createCriteria(getEntityClass())
+                                         .add(Restrictions.in(DescribableEntity.PROPERTY_ID, ids))
+                                         .createAlias(MeasuringProgramEntity.PROPERTY_DATASETS, DATASET_ALIAS)
+                                         .setProjection(Projections.projectionList()
+                                                                   .add(Projections.groupProperty(
+                                                                           DescribableEntity.PROPERTY_ID))
+                                                                   .add(Projections.count(datasetId))
+                                                                   .add(Projections.sum(datasetId))
+                                                                   .add(Projections.sum(featureId)))
+                                         .list();
+            for (Object[] row : rows) {
+                signatures.put((Long) row[0], Arrays.asList(Arrays.copyOfRange(row, 1, row.length)));
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * @param programId
+     *        the measuring program
+     * @return the envelope of the features of the program's datasets in the database CRS or {@code null} if none of
+     *         the features has a geometry
+     */
+    public Envelope getObservedArea(Long programId) {
+        String feature = QueryUtils.createAssociation(DATASET_ALIAS, DatasetEntity.PROPERTY_FEATURE);
+        String featureId = QueryUtils.createAssociation(feature, DescribableEntity.PROPERTY_ID);
+        DetachedCriteria featureIds = DetachedCriteria.forClass(getEntityClass())
+                                                      .add(Restrictions.idEq(programId))
+                                                      .createAlias(MeasuringProgramEntity.PROPERTY_DATASETS,
+                                                                   DATASET_ALIAS)
+                                                      .setProjection(Projections.property(featureId));
+        return new FeatureDao(session).getExtent(featureIds);
+    }
+
     public Criteria addTimespanTo(Criteria criteria, IoParameters parameters) {
         if (parameters.containsParameter(Parameters.TIMESPAN)) {
             IntervalWithTimeZone timespan = parameters.getTimespan();
@@ -109,6 +170,11 @@ public class MeasuringProgramDao extends AbstractDao<MeasuringProgramEntity>
         return criteria;
     }
 
+    @Override
+    protected Criteria getUnpagedFilteredCriteria(DbQuery query) {
+        return query.addDetachedFilters(getDatasetProperty(), getDefaultCriteria(query), session);
+    }
+
     @Override
     protected Criteria getDefaultCriteria(String alias, DbQuery query, Class<?> clazz) {
 //        String nonNullAlias = alias != null ? alias : getDefaultAlias();
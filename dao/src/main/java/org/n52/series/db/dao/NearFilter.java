@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.web.exception.BadRequestException;
+
+/**
+ * Nearest-neighbour filter given as {@code near=lon,lat}, optionally bounded by a {@code radius} in meters and
+ * limited to the {@code limit} nearest entries. The legacy JSON form of {@code near} is not handled here but
+ * resolved to a bbox by the IO layer.
+ */
+public final class NearFilter {
+
+    public static final String RADIUS = "radius";
+
+    static final int DEFAULT_LIMIT = 100;
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private final Coordinate center;
+
+    private final Double radius;
+
+    private final int limit;
+
+    private NearFilter(Coordinate center, Double radius, int limit) {
+        this.center = center;
+        this.radius = radius;
+        this.limit = limit;
+    }
+
+    /**
+     * @param parameters
+     *        the request parameters
+     * @return the near filter or {@code null} if no {@code near=lon,lat} has been requested
+     * @throws BadRequestException
+     *         if center, radius or limit are invalid
+     */
+    public static NearFilter from(IoParameters parameters) {
+        String near = parameters.getAsString(Parameters.NEAR);
+        if (!isNearFilter(near)) {
+            return null;
+        }
+        String[] lonLat = near.split(",");
+        if (lonLat.length != 2) {
+            throw new BadRequestException("Invalid near: " + near + ". Expected lon,lat.");
+        }
+        double lon = parseNumber(lonLat[0], Parameters.NEAR);
+        double lat = parseNumber(lonLat[1], Parameters.NEAR);
+        if (Math.abs(lon) > 180 || Math.abs(lat) > 90) {
+            throw new BadRequestException("Invalid near: " + near + ". Coordinates exceed lon/lat bounds.");
+        }
+        String radius = parameters.getAsString(RADIUS);
+        Double meters = radius != null && !radius.isEmpty()
+                ? parseNumber(radius, RADIUS)
+                : null;
+        if (meters != null && meters <= 0) {
+            throw new BadRequestException("Invalid radius: " + radius);
+        }
+        String limit = parameters.getAsString(Parameters.LIMIT);
+        int k = limit != null && !limit.isEmpty()
+                ? (int) parseNumber(limit, Parameters.LIMIT)
+                : DEFAULT_LIMIT;
+        if (k <= 0) {
+            throw new BadRequestException("Invalid limit: " + limit);
+        }
+        return new NearFilter(new Coordinate(lon, lat), meters, k);
+    }
+
+    /**
+     * @param near
+     *        the value of the {@code near} parameter, may be {@code null}
+     * @return {@code true} if the value requests a distance ordered {@code lon,lat} filter rather than a bbox-like
+     *         near object
+     */
+    public static boolean isNearFilter(String near) {
+        return near != null && !near.isEmpty() && !near.trim().startsWith("{");
+    }
+
+    private static double parseNumber(String value, String parameter) {
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                throw new BadRequestException("Invalid " + parameter + ": " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid " + parameter + ": " + value, e);
+        }
+    }
+
+    /**
+     * @return the center in lon/lat
+     */
+    public Coordinate getCenter() {
+        return new Coordinate(center);
+    }
+
+    /**
+     * @return the radius in meters or {@code null} if the distance is unbounded
+     */
+    public Double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return the maximum number of nearest entries
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the lon/lat envelope enclosing the radius around the center, e.g. to let a spatial index select the
+     *         candidates, or {@code null} if the distance is unbounded
+     */
+    public Envelope getEnvelope() {
+        if (radius == null) {
+            return null;
+        }
+        double dLat = Math.toDegrees(radius / EARTH_RADIUS);
+        double minLat = center.y - dLat;
+        double maxLat = center.y + dLat;
+        if (minLat <= -90 || maxLat >= 90) {
+            // the circle encloses a pole
+            return new Envelope(-180, 180, Math.max(minLat, -90), Math.min(maxLat, 90));
+        }
+        double sinLon = Math.sin(radius / EARTH_RADIUS) / Math.cos(Math.toRadians(center.y));
+        double dLon = Math.toDegrees(Math.asin(Math.min(1, sinLon)));
+        double minLon = center.x - dLon;
+        double maxLon = center.x + dLon;
+        return minLon < -180 || maxLon > 180
+                ? new Envelope(-180, 180, minLat, maxLat)
+                : new Envelope(minLon, maxLon, minLat, maxLat);
+    }
+
+    /**
+     * @param location
+     *        a lon/lat location
+     * @return the great-circle distance from the center in meters
+     */
+    public double distance(Coordinate location) {
+        double dLat = Math.toRadians(location.y - center.y);
+        double dLon = Math.toRadians(location.x - center.x);
+        double a = Math.pow(Math.sin(dLat / 2), 2) + Math.cos(Math.toRadians(center.y))
+                * Math.cos(Math.toRadians(location.y)) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @param location
+     *        a lon/lat location
+     * @return {@code true} if the location lies within the radius or the distance is unbounded
+     */
+    public boolean isWithinRadius(Coordinate location) {
+        return radius == null || distance(location) <= radius;
+    }
+
+    @Override
+    public String toString() {
+        return "NearFilter{center=" + center + ", radius=" + radius + ", limit=" + limit + "}";
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.hibernate.criterion.Criterion;
+import org.n52.io.request.IoParameters;
+import org.n52.shetland.ogc.filter.BinaryLogicFilter;
+import org.n52.shetland.ogc.filter.ComparisonFilter;
+import org.n52.shetland.ogc.filter.Filter;
+import org.n52.shetland.ogc.filter.SpatialFilter;
+import org.n52.shetland.ogc.filter.UnaryLogicFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of parsed OData {@code $filter} expressions keyed by the normalized filter string. Clients
+ * tend to send the same filter expressions over and over, so repeated requests skip the parsing and only
+ * translate the cached filter tree to a {@link Criterion}.
+ *
+ * The translation to criteria can not be cached itself, as the generators register aliases on the criteria of
+ * the current request. Cached filter trees are shared between requests, so the generators must not change the
+ * filter values, and the value references they rewrite during translation are reset afterwards.
+ */
+public class ODataFilterCache {
+
+    public static final String PARAMETER = "$filter";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ODataFilterCache.class);
+
+    private static final long DEFAULT_MAX_SIZE = 1000;
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private boolean enabled = true;
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    private final LongAdder translations = new LongAdder();
+
+    private final LongAdder translationNanos = new LongAdder();
+
+    private volatile Cache<String, ParsedFilter> cache;
+
+    public ODataFilterCache() {
+        this.cache = createCache();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.cache = createCache();
+    }
+
+    /**
+     * Translates the OData filter of the given parameters via the given generator. The parsed filter is taken
+     * from the cache if the same (normalized) filter expression has been requested before.
+     *
+     * @param parameters
+     *        the request parameters
+     * @param generator
+     *        the generator creating the criterion
+     * @return the criterion or an empty {@code Optional} if no filter has been requested
+     */
+    public Optional<Criterion> translate(IoParameters parameters, FESCriterionGenerator generator) {
+        String expression = parameters.getAsString(PARAMETER);
+        if (!enabled || expression == null || expression.trim().isEmpty()) {
+            return timed(() -> parameters.getODataFilter().map(generator::create));
+        }
+        ParsedFilter parsed = getParsedFilter(normalize(expression), parameters);
+        if (parsed.filter == null) {
+            return Optional.empty();
+        }
+        synchronized (parsed) {
+            try {
+                return timed(() -> Optional.of(generator.create(parsed.filter)));
+            } finally {
+                parsed.reset();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStatistics() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public long getTranslationCount() {
+        return translations.sum();
+    }
+
+    /**
+     * @return the mean time in milliseconds spent to translate a filter to a criterion
+     */
+    public double getMeanTranslationTime() {
+        long count = translations.sum();
+        return count == 0 ? 0d : translationNanos.sum() / (double) count / NANOS_PER_MILLI;
+    }
+
+    public void logStatistics() {
+        if (LOGGER.isDebugEnabled()) {
+            CacheStats stats = getStatistics();
+            LOGGER.debug("OData filter cache: size={}, hits={}, misses={}, hitRate={}, translations={}, "
+                    + "meanTranslationTime={}ms", size(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                    getTranslationCount(), getMeanTranslationTime());
+        }
+    }
+
+    private ParsedFilter getParsedFilter(String key, IoParameters parameters) {
+        ParsedFilter parsed = cache.getIfPresent(key);
+        if (parsed == null) {
+            parsed = new ParsedFilter(parameters.getODataFilter().orElse(null));
+            cache.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    private Optional<Criterion> timed(Supplier<Optional<Criterion>> translation) {
+        long start = System.nanoTime();
+        try {
+            return translation.get();
+        } finally {
+            translationNanos.add(System.nanoTime() - start);
+            translations.increment();
+        }
+    }
+
+    /**
+     * Normalizes the filter expression by trimming and collapsing whitespace outside of string literals.
+     *
+     * @param expression
+     *        the filter expression
+     * @return the normalized expression
+     */
+    static String normalize(String expression) {
+        StringBuilder normalized = new StringBuilder(expression.length());
+        boolean literal = false;
+        boolean whitespace = false;
+        for (char c : expression.trim().toCharArray()) {
+            if (c == '\'') {
+                literal = !literal;
+            }
+            if (!literal && Character.isWhitespace(c)) {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace) {
+                normalized.append(' ');
+                whitespace = false;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    private Cache<String, ParsedFilter> createCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * A parsed filter tree remembering the original value references of its leaf filters.
+     */
+    static final class ParsedFilter {
+
+        private final Filter<?> filter;
+
+        private final Map<Filter<?>, String> valueReferences = new IdentityHashMap<>();
+
+        ParsedFilter(Filter<?> filter) {
+            this.filter = filter;
+            collectValueReferences(filter);
+        }
+
+        Filter<?> getFilter() {
+            return filter;
+        }
+
+        /**
+         * Resets the value references rewritten during a translation.
+         */
+        void reset() {
+            valueReferences.forEach((f, valueReference) -> {
+                if (f instanceof ComparisonFilter) {
+                    ((ComparisonFilter) f).setValueReference(valueReference);
+                } else if (f instanceof SpatialFilter) {
+                    ((SpatialFilter) f).setValueReference(valueReference);
+                }
+            });
+        }
+
+        private void collectValueReferences(Filter<?> f) {
+            if (f instanceof ComparisonFilter) {
+                valueReferences.put(f, ((ComparisonFilter) f).getValueReference());
+            } else if (f instanceof SpatialFilter) {
+                valueReferences.put(f, ((SpatialFilter) f).getValueReference());
+            } else if (f instanceof BinaryLogicFilter) {
+                ((BinaryLogicFilter) f).getFilterPredicates().forEach(this::collectValueReferences);
+            } else if (f instanceof UnaryLogicFilter) {
+                collectValueReferences(((UnaryLogicFilter) f).getFilterPredicate());
+            }
+        }
+
+    }
+
+}
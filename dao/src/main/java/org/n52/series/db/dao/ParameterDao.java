@@ -33,7 +33,10 @@ import java.util.List;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Session;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.transform.Transformers;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.i18n.I18nEntity;
@@ -45,6 +48,18 @@ public abstract class ParameterDao<T extends DescribableEntity, I extends I18nEn
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ParameterDao.class);
 
+    private static final String FIELD_LABEL = "label";
+
+    private static final String FIELD_DOMAIN_ID = "domainId";
+
+    private static final String[] PROJECTABLE_FIELDS = {
+        "id",
+        FIELD_LABEL,
+        FIELD_DOMAIN_ID,
+        "hrefBase",
+        "href"
+    };
+
     public ParameterDao(Session session) {
         super(session);
     }
@@ -56,11 +71,10 @@ public abstract class ParameterDao<T extends DescribableEntity, I extends I18nEn
     public List<T> find(DbQuery q) {
         DbQuery query = checkLevelParameterForHierarchyQuery(q);
         LOGGER.debug("find instance: {}", query);
-        Criteria criteria = getDefaultCriteria(query);
+        Criteria criteria = getFilteredCriteria(query);
         addFetchModes(criteria, query);
         criteria = i18n(getI18NEntityClass(), criteria, query);
         criteria.add(Restrictions.ilike(DescribableEntity.PROPERTY_NAME, "%" + query.getSearchTerm() + "%"));
-        criteria = query.addFilters(criteria, getDatasetProperty(), session);
         long start = System.currentTimeMillis();
         try {
             return criteria.list();
@@ -78,10 +92,59 @@ public abstract class ParameterDao<T extends DescribableEntity, I extends I18nEn
     public List<T> getAllInstances(DbQuery q) throws DataAccessException {
         DbQuery query = checkLevelParameterForHierarchyQuery(q);
         LOGGER.debug("get all instances: {}", query);
-        Criteria criteria = getDefaultCriteria(query);
+        if (isProjectable(query)) {
+            return getAllProjectedInstances(query);
+        }
+        Criteria criteria = getFilteredCriteria(query);
         addFetchModes(criteria, query);
         criteria = i18n(getI18NEntityClass(), criteria, query);
-        criteria = query.addFilters(criteria, getDatasetProperty(), session);
+        long start = System.currentTimeMillis();
+        try {
+            return criteria.list();
+        } finally {
+            logProcessingTime(start);
+        }
+    }
+
+    /**
+     * Checks if the selected fields can be served by plain columns, so that no full entity has to be loaded.
+     *
+     * @param query
+     *        the query
+     * @return {@code true} if a narrow projection of the entity is sufficient
+     */
+    protected boolean isProjectable(DbQuery query) {
+        if (query.isExpanded() || !query.isSelectedOnly(PROJECTABLE_FIELDS)) {
+            return false;
+        }
+        // translated labels are only available via the translations
+        return !query.isSelected(FIELD_LABEL) || !hasTranslation(query, getI18NEntityClass());
+    }
+
+    /**
+     * Loads entities containing only the columns needed for the selected fields.
+     *
+     * @param query
+     *        the query
+     * @return detached entities with id, and, if selected, name and identifier set
+     */
+    @SuppressWarnings("unchecked")
+    protected List<T> getAllProjectedInstances(DbQuery query) {
+        ProjectionList projections = Projections.projectionList()
+                .add(Projections.property(DescribableEntity.PROPERTY_ID), DescribableEntity.PROPERTY_ID);
+        if (query.isSelected(FIELD_LABEL)) {
+            projections.add(Projections.property(DescribableEntity.PROPERTY_NAME), DescribableEntity.PROPERTY_NAME);
+        }
+        if (query.isSelected(FIELD_LABEL) || query.isSelected(FIELD_DOMAIN_ID)) {
+            projections.add(Projections.property(DescribableEntity.PROPERTY_DOMAIN_ID),
+                    DescribableEntity.PROPERTY_DOMAIN_ID);
+        }
+        Criteria criteria = getFilteredCriteria(query);
+        criteria.setProjection(Projections.distinct(projections))
+                .setResultTransformer(Transformers.aliasToBean(getEntityClass()));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(toSQLString(criteria));
+        }
         long start = System.currentTimeMillis();
         try {
             return criteria.list();
@@ -28,14 +28,21 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.PlatformEntity;
 import org.n52.series.db.beans.i18n.I18nPlatformEntity;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.collect.Lists;
+
 @Transactional
 public class PlatformDao extends ParameterDao<PlatformEntity, I18nPlatformEntity> {
 
@@ -43,6 +50,23 @@ public class PlatformDao extends ParameterDao<PlatformEntity, I18nPlatformEntity
         super(session);
     }
 
+    /**
+     * @param ids
+     *        the platform ids
+     * @param query
+     *        the query
+     * @return the platforms with the given ids matching the query's dataset filters
+     */
+    @SuppressWarnings("unchecked")
+    public List<PlatformEntity> getInstances(Collection<Long> ids, DbQuery query) {
+        List<PlatformEntity> platforms = new ArrayList<>();
+        for (List<Long> chunk : Lists.partition(new ArrayList<>(ids), QueryUtils.MAX_IN_LIST_IDS)) {
+            Criteria criteria = getDefaultCriteria(query).add(Restrictions.in(PlatformEntity.PROPERTY_ID, chunk));
+            platforms.addAll(criteria.list());
+        }
+        return platforms;
+    }
+
     private Long count(AbstractDao<?> dao, DbQuery query) {
         Criteria criteria = dao.getDefaultCriteria(query);
         return (Long) criteria.setProjection(Projections.rowCount()).uniqueResult();
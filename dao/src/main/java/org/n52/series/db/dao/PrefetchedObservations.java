@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+
+/**
+ * First and last observations of a set of datasets loaded with two set-based queries, so that assembling the
+ * first and last values of many datasets does not require a query per dataset. Only datasets lacking the mapped
+ * first or last observation are prefetched.
+ */
+public class PrefetchedObservations {
+
+    private final Map<Long, DataEntity<?>> firstObservations;
+
+    private final Map<Long, DataEntity<?>> lastObservations;
+
+    private PrefetchedObservations(Map<Long, DataEntity<?>> firstObservations,
+                                   Map<Long, DataEntity<?>> lastObservations) {
+        this.firstObservations = firstObservations;
+        this.lastObservations = lastObservations;
+    }
+
+    /**
+     * Prefetches the first and last observations of those datasets which lack the mapped first or last
+     * observation and hands them to the query, if applicable to the query.
+     *
+     * @param datasets
+     *        the datasets
+     * @param query
+     *        the query
+     * @param session
+     *        the session
+     */
+    public static void prefetch(List<? extends DatasetEntity> datasets, DbQuery query, Session session) {
+        if (!isApplicable(query)) {
+            return;
+        }
+        List<Long> missingFirst = datasets.stream()
+                                          .filter(d -> d.getFirstObservation() == null && d.isSetFirstValueAt())
+                                          .map(DatasetEntity::getId)
+                                          .collect(Collectors.toList());
+        List<Long> missingLast = datasets.stream()
+                                         .filter(d -> d.getLastObservation() == null && d.isSetLastValueAt())
+                                         .map(DatasetEntity::getId)
+                                         .collect(Collectors.toList());
+        if (missingFirst.size() > 1 || missingLast.size() > 1) {
+            query.setPrefetchedObservations(load(missingFirst, missingLast, session));
+        }
+    }
+
+    /**
+     * Loads the first and last observations of the given datasets.
+     *
+     * @param firstDatasets
+     *        the ids of the datasets to load the first observation for
+     * @param lastDatasets
+     *        the ids of the datasets to load the last observation for
+     * @param session
+     *        the session
+     * @return the prefetched observations
+     */
+    public static PrefetchedObservations load(Collection<Long> firstDatasets,
+                                              Collection<Long> lastDatasets,
+                                              Session session) {
+        DataDao<DataEntity<?>> dao = new DataDao<>(session);
+        return new PrefetchedObservations(firstDatasets.isEmpty()
+                                                  ? Collections.emptyMap()
+                                                  : dao.getFirstObservations(firstDatasets),
+                                          lastDatasets.isEmpty()
+                                                  ? Collections.emptyMap()
+                                                  : dao.getLastObservations(lastDatasets));
+    }
+
+    /**
+     * Prefetched observations are unfiltered and for multiple observations at the same time the one with the
+     * latest result time is taken, so they cannot replace lookups filtered by result times, space or an OData
+     * filter.
+     *
+     * @param query
+     *        the query
+     * @return if first and last values of the given query can be prefetched
+     */
+    public static boolean isApplicable(DbQuery query) {
+        IoParameters parameters = query.getParameters();
+        return !parameters.isAllResultTimes()
+                && parameters.getResultTimes().isEmpty()
+                && query.getSpatialFilter() == null
+                && !parameters.containsParameter(ODataFilterCache.PARAMETER);
+    }
+
+    /**
+     * @param dataset
+     *        the dataset id
+     * @return the first observation or {@code null} if it has not been prefetched or could not be found
+     */
+    public DataEntity<?> getFirst(Long dataset) {
+        return firstObservations.get(dataset);
+    }
+
+    /**
+     * @param dataset
+     *        the dataset id
+     * @return the last observation or {@code null} if it has not been prefetched or could not be found
+     */
+    public DataEntity<?> getLast(Long dataset) {
+        return lastObservations.get(dataset);
+    }
+
+}
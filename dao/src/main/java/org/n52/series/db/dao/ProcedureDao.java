@@ -79,6 +79,11 @@ public class ProcedureDao extends HierarchicalDao<ProcedureEntity, I18nProcedure
         return getDefaultCriteria(query, true);
     }
 
+    @Override
+    protected Criteria getUnpagedFilteredCriteria(DbQuery query) {
+        return super.getUnpagedFilteredCriteria(query).add(Restrictions.eq(COLUMN_REFERENCE, Boolean.FALSE));
+    }
+
     private Criteria getDefaultCriteria(DbQuery query, boolean ignoreReferenceProcedures) {
         return ignoreReferenceProcedures
                 ? super.getDefaultCriteria(query).add(Restrictions.eq(COLUMN_REFERENCE, Boolean.FALSE))
@@ -28,19 +28,31 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.PropertyProjection;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.SimpleExpression;
 import org.n52.series.db.beans.DescribableEntity;
 
+import com.google.common.collect.Lists;
+
 public class QueryUtils {
 
+    /**
+     * The maximum number of values passed to a single IN list, as some databases limit the list length (e.g.
+     * Oracle to 1000 entries).
+     */
+    public static final int MAX_IN_LIST_IDS = 1000;
+
     public static String createAssociation(String alias, String property) {
         return alias != null && !alias.isEmpty()
                 ? alias + "." + property
@@ -117,6 +129,28 @@ public class QueryUtils {
         // }
     }
 
+    /**
+     * Creates an IN restriction on the given property, split into a disjunction of IN lists of at most
+     * {@link #MAX_IN_LIST_IDS} values each.
+     *
+     * @param property
+     *        the property
+     * @param values
+     *        the values to match
+     * @return the restriction
+     */
+    public static Criterion createChunkedIn(String property, Collection<?> values) {
+        List<?> list = new ArrayList<>(values);
+        if (list.size() <= MAX_IN_LIST_IDS) {
+            return Restrictions.in(property, list);
+        }
+        Disjunction chunks = Restrictions.disjunction();
+        for (List<?> chunk : Lists.partition(list, MAX_IN_LIST_IDS)) {
+            chunks.add(Restrictions.in(property, chunk));
+        }
+        return chunks;
+    }
+
     public static Set<Long> parseToIds(Collection<String> ids) {
         return ids.stream()
                   .map(e -> parseToId(e))
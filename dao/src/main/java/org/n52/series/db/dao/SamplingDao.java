@@ -123,6 +123,11 @@ public class SamplingDao extends AbstractDao<SamplingEntity> implements Searchab
         return getInstance(key, query, clazz, criteria);
     }
 
+    @Override
+    protected Criteria getUnpagedFilteredCriteria(DbQuery query) {
+        return query.addDetachedFilters(getDatasetProperty(), getDefaultCriteria(query), session);
+    }
+
     @Override
     protected Criteria getDefaultCriteria(String alias, DbQuery query, Class<?> clazz) {
 //      String nonNullAlias = alias != null ? alias : getDefaultAlias();
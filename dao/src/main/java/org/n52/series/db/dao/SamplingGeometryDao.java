@@ -28,24 +28,40 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.FeatureEntity;
 import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.beans.SamplingGeometryEntity;
 
+import com.google.common.collect.Lists;
+
 public class SamplingGeometryDao {
 
     private static final String COLUMN_TIMESTAMP = "timestamp";
 
     private static final String PROPERTY_DATASET = "dataset";
 
+    private static final String PROPERTY_GEOMETRY_ENTITY = "geometryEntity";
+
+    private static final String GEOMETRY_PATH = PROPERTY_GEOMETRY_ENTITY + ".geometry";
+
+    private static final String DATASET_ALIAS = "sg_ds";
+
     private final Session session;
 
     public SamplingGeometryDao(Session session) {
@@ -65,6 +81,87 @@ public class SamplingGeometryDao {
         return toGeometryEntities(criteria.list());
     }
 
+    /**
+     * Loads the sampling geometries of many features at once.
+     *
+     * @param featureIds
+     *        the feature ids
+     * @param query
+     *        the query
+     * @return the sampling geometries ordered by timestamp per feature id
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, List<GeometryEntity>> getGeometriesOrderedByTimestamp(Collection<Long> featureIds,
+                                                                           DbQuery query) {
+        Map<Long, List<GeometryEntity>> geometries = new LinkedHashMap<>();
+        String featureId = QueryUtils.createAssociation(DATASET_ALIAS,
+                QueryUtils.createAssociation(DatasetEntity.PROPERTY_FEATURE, FeatureEntity.PROPERTY_ID));
+        for (List<Long> ids : Lists.partition(new ArrayList<>(featureIds), QueryUtils.MAX_IN_LIST_IDS)) {
+            Criteria criteria = session.createCriteria(SamplingGeometryEntity.class)
+                                       .createAlias(PROPERTY_DATASET, DATASET_ALIAS)
+                                       .add(Restrictions.in(featureId, ids))
+                                       .setProjection(Projections.projectionList()
+                                                                 .add(Projections.property(featureId))
+                                                                 .add(Projections.property(PROPERTY_GEOMETRY_ENTITY)))
+                                       .addOrder(Order.asc(COLUMN_TIMESTAMP));
+            query.addSpatialFilter(criteria);
+            for (Object[] row : (List<Object[]>) criteria.list()) {
+                geometries.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                          .add((GeometryEntity) row[1]);
+            }
+        }
+        return geometries;
+    }
+
+    /**
+     * Builds the trajectories of the given features in the database, i.e. the line through their sampling
+     * geometries ordered by timestamp (PostGIS {@code ST_MakeLine}). If a tolerance is given, the lines are
+     * simplified via {@code ST_SimplifyPreserveTopology} before being transferred.
+     *
+     * @param featureIds
+     *        the feature ids
+     * @param tolerance
+     *        the simplification tolerance in units of the database CRS, may be {@code null}
+     * @param query
+     *        the query, its spatial filter restricts the sampling geometries the lines are built from
+     * @return the trajectories as WKB per feature id or {@code null} if the database cannot build them
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, byte[]> getTrajectories(Collection<Long> featureIds, Double tolerance, DbQuery query) {
+        if (!DataModelUtil.isPostgisDialect(session)) {
+            return null;
+        }
+        String geometry = DataModelUtil.getColumnName(GEOMETRY_PATH, SamplingGeometryEntity.class, session);
+        String timestamp = DataModelUtil.getColumnName(COLUMN_TIMESTAMP, SamplingGeometryEntity.class, session);
+        if (geometry == null || timestamp == null) {
+            return null;
+        }
+        String line = "ST_MakeLine({alias}." + geometry + " ORDER BY {alias}." + timestamp + ")";
+        String trajectory = tolerance != null
+                ? "ST_SimplifyPreserveTopology(" + line + ", " + tolerance + ")"
+                : line;
+        String featureId = QueryUtils.createAssociation(DATASET_ALIAS,
+                QueryUtils.createAssociation(DatasetEntity.PROPERTY_FEATURE, FeatureEntity.PROPERTY_ID));
+        Map<Long, byte[]> trajectories = new LinkedHashMap<>();
+        for (List<Long> ids : Lists.partition(new ArrayList<>(featureIds), QueryUtils.MAX_IN_LIST_IDS)) {
+            Criteria criteria = session.createCriteria(SamplingGeometryEntity.class)
+                                       .createAlias(PROPERTY_DATASET, DATASET_ALIAS)
+                                       .add(Restrictions.in(featureId, ids))
+                                       .add(Restrictions.isNotNull(GEOMETRY_PATH))
+                                       .setProjection(Projections.projectionList()
+                                                                 .add(Projections.groupProperty(featureId))
+                                                                 .add(Projections.sqlProjection(
+                                                                         "ST_AsBinary(" + trajectory + ") as wkb",
+                                                                         new String[] {"wkb"},
+                                                                         new Type[] {StandardBasicTypes.BINARY})));
+            query.addSpatialFilter(criteria);
+            for (Object[] row : (List<Object[]>) criteria.list()) {
+                trajectories.put((Long) row[0], (byte[]) row[1]);
+            }
+        }
+        return trajectories;
+    }
+
     protected List<Long> getFeatureIds(DbQuery query) {
         return query.getParameters()
                     .getFeatures()
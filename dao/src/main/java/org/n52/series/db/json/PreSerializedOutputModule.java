@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.json;
+
+import java.util.function.Predicate;
+
+import org.n52.io.response.FeatureOutput;
+import org.n52.io.response.PhenomenonOutput;
+import org.n52.io.response.ServiceOutput;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Jackson module which keeps the encoded JSON of frequently repeated metadata outputs (phenomena, services and
+ * features) and embeds the ready-made fragments instead of serializing the same instances again.
+ *
+ * Fragments are cached per output instance in a single cache shared by all serializers of the module. Only
+ * instances accepted by the given predicate are pre-serialized, i.e. outputs shared between datasets and requests
+ * (see {@link org.n52.series.db.da.CondensedOutputCache#isShared(Object)}). All other outputs are serialized as
+ * usual. Shared outputs must not be modified once they have been serialized.
+ */
+public class PreSerializedOutputModule extends SimpleModule {
+
+    private static final long serialVersionUID = 4203625591796287469L;
+
+    private static final long DEFAULT_MAX_SIZE = 50000;
+
+    private static final Class<?>[] FRAGMENT_TYPES = {
+        PhenomenonOutput.class,
+        ServiceOutput.class,
+        FeatureOutput.class
+    };
+
+    private final Predicate<Object> shared;
+
+    private final Cache<Object, SerializedString> fragments;
+
+    /**
+     * @param shared
+     *        decides which output instances are shared and thus worth pre-serializing
+     */
+    public PreSerializedOutputModule(Predicate<Object> shared) {
+        this(shared, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param shared
+     *        decides which output instances are shared and thus worth pre-serializing
+     * @param maxSize
+     *        the maximum number of cached fragments
+     */
+    public PreSerializedOutputModule(Predicate<Object> shared, long maxSize) {
+        super(PreSerializedOutputModule.class.getSimpleName());
+        this.shared = shared;
+        // weak keys compare by identity, so fragments live as long as the shared output instance
+        this.fragments = CacheBuilder.newBuilder().weakKeys().maximumSize(maxSize).build();
+        setSerializerModifier(new FragmentSerializerModifier());
+    }
+
+    private static boolean isFragmentType(Class<?> type) {
+        for (Class<?> fragmentType : FRAGMENT_TYPES) {
+            if (fragmentType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class FragmentSerializerModifier extends BeanSerializerModifier {
+
+        private static final long serialVersionUID = -1372545930390372618L;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc,
+                JsonSerializer<?> serializer) {
+            return isFragmentType(beanDesc.getBeanClass())
+                    ? new PreSerializedOutputSerializer((JsonSerializer<Object>) serializer, shared, fragments)
+                    : serializer;
+        }
+
+    }
+
+}
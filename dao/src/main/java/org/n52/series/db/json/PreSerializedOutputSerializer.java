@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.google.common.cache.Cache;
+
+/**
+ * Serializes a shared output via its bean serializer once and writes the cached fragment for every further
+ * occurrence of the same instance. Outputs which are not shared are serialized by the bean serializer directly.
+ */
+class PreSerializedOutputSerializer extends JsonSerializer<Object>
+        implements ContextualSerializer, ResolvableSerializer {
+
+    private static final JsonFactory FRAGMENT_FACTORY = new JsonFactory();
+
+    private final JsonSerializer<Object> delegate;
+
+    private final Predicate<Object> shared;
+
+    private final Cache<Object, SerializedString> fragments;
+
+    PreSerializedOutputSerializer(JsonSerializer<Object> delegate, Predicate<Object> shared,
+            Cache<Object, SerializedString> fragments) {
+        this.delegate = delegate;
+        this.shared = shared;
+        this.fragments = fragments;
+    }
+
+    @Override
+    public void serialize(Object value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (gen.getPrettyPrinter() != null || serializers.getActiveView() != null) {
+            delegate.serialize(value, gen, serializers);
+            return;
+        }
+        SerializedString fragment = fragments.getIfPresent(value);
+        if (fragment == null) {
+            if (!shared.test(value)) {
+                // encoding an output used once only would just double the work
+                delegate.serialize(value, gen, serializers);
+                return;
+            }
+            fragment = new SerializedString(encode(value, gen, serializers));
+            fragments.put(value, fragment);
+        }
+        gen.writeRawValue(fragment);
+    }
+
+    @Override
+    public void serializeWithType(Object value, JsonGenerator gen, SerializerProvider serializers,
+            TypeSerializer typeSer) throws IOException {
+        delegate.serializeWithType(value, gen, serializers, typeSer);
+    }
+
+    private String encode(Object value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator fragmentGenerator = FRAGMENT_FACTORY.createGenerator(writer)) {
+            fragmentGenerator.overrideStdFeatures(gen.getFeatureMask(), ~0);
+            fragmentGenerator.setCodec(gen.getCodec());
+            delegate.serialize(value, fragmentGenerator, serializers);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public void resolve(SerializerProvider provider) throws JsonMappingException {
+        if (delegate instanceof ResolvableSerializer) {
+            ((ResolvableSerializer) delegate).resolve(provider);
+        }
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider prov, BeanProperty property)
+            throws JsonMappingException {
+        if (delegate instanceof ContextualSerializer) {
+            JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(prov, property);
+            if (contextual != delegate) {
+                // property specific serialization may differ from the cached fragments
+                return contextual;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isEmpty(SerializerProvider provider, Object value) {
+        return delegate.isEmpty(provider, value);
+    }
+
+    @Override
+    public Class<Object> handledType() {
+        return delegate.handledType();
+    }
+
+}
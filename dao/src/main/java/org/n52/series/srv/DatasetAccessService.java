@@ -28,6 +28,7 @@
  */
 package org.n52.series.srv;
 
+import java.util.EnumSet;
 import java.util.List;
 
 import org.n52.io.TvpDataCollection;
@@ -38,7 +39,9 @@ import org.n52.io.response.dataset.DataCollection;
 import org.n52.io.response.dataset.DatasetOutput;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataRepositoryTypeFactory;
+import org.n52.series.db.DatasetChangeMarker;
 import org.n52.series.db.DatasetTypesMetadata;
+import org.n52.series.db.LatestValue;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.da.DataRepository;
 import org.n52.series.db.da.DatasetRepository;
@@ -83,9 +86,53 @@ public class DatasetAccessService<V extends AbstractValue<?>> extends AccessServ
         }
     }
 
+    /**
+     * @param datasetId
+     *        the dataset id
+     * @param parameters
+     *        the request parameters
+     * @return the change marker of the given dataset or {@code null} if the database cannot compute it
+     */
+    public DatasetChangeMarker getChangeMarker(String datasetId, IoParameters parameters) {
+        try {
+            return getRepository().getChangeMarker(datasetId, parameters);
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Could not get dataset change marker from database.", e);
+        }
+    }
+
+    /**
+     * @param parameters
+     *        the request parameters filtering the datasets
+     * @return the change marker over all matching datasets or {@code null} if the database cannot compute it
+     */
+    public DatasetChangeMarker getChangeMarker(IoParameters parameters) {
+        try {
+            return getRepository().getChangeMarker(parameters);
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Could not get dataset change marker from database.", e);
+        }
+    }
+
+    /**
+     * @param parameters
+     *        the request parameters filtering the datasets
+     * @return the latest values of all matching datasets
+     */
+    public List<LatestValue> getLatestValues(IoParameters parameters) {
+        try {
+            return getRepository().getLatestValues(parameters);
+        } catch (DataAccessException e) {
+            throw new InternalServerException("Could not get latest values from database.", e);
+        }
+    }
+
     private Data<V> getDataFor(DatasetTypesMetadata metadata, IoParameters parameters)
             throws DataAccessException {
         DbQuery dbQuery = dbQueryFactory.createFrom(parameters);
+        if (metadata.getValueType() != null) {
+            dbQuery.setResultValueTypes(EnumSet.of(metadata.getValueType()));
+        }
         Class<? extends DatasetEntity> entityType = DatasetEntity.class;
         DataRepository<? extends DatasetEntity, ?, V, ?> assembler =
                 dataFactory.create(metadata.getObservationType().name(), metadata.getValueType().name(), entityType);
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+package org.n52.series.db;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DatasetChangeMarkerTest {
+
+    @Test
+    public void when_sameFields_then_sameTag() {
+        Assertions.assertEquals(createMarker("temperature", 1L).getTag(),
+                                createMarker("temperature", 1L).getTag());
+    }
+
+    @Test
+    public void when_labelOrUnitChanged_then_tagChanged() {
+        String tag = createMarker("temperature", 1L).getTag();
+        Assertions.assertNotEquals(tag, createMarker("air temperature", 1L).getTag());
+        Assertions.assertNotEquals(tag, createMarker("temperature", 2L).getTag());
+    }
+
+    @Test
+    public void when_variantChanged_then_tagChanged() {
+        DatasetChangeMarker marker = createMarker("temperature", 1L);
+        Assertions.assertNotEquals(marker.getTag("a", "b"), marker.getTag("ab", null));
+        Assertions.assertEquals(marker.getTag("a", "b"), marker.getTag("a", "b"));
+    }
+
+    @Test
+    public void when_datasetsAdded_then_timeBoundsSpanAll() {
+        DatasetChangeMarker marker = new DatasetChangeMarker();
+        marker.add(new Date(10), new Date(20), 1L);
+        marker.add(new Date(5), new Date(15), 2L);
+        Assertions.assertEquals(2, marker.getCount());
+        Assertions.assertEquals(5, marker.getFirstValueAt().getTime());
+        Assertions.assertEquals(20, marker.getLastValueAt().getTime());
+    }
+
+    @Test
+    public void when_checksumChanged_then_tagChanged() {
+        DatasetChangeMarker marker = new DatasetChangeMarker();
+        marker.addAll(2, new Date(5), new Date(20), 42L);
+        DatasetChangeMarker changed = new DatasetChangeMarker();
+        // e.g. a dataset other than the latest one got new values
+        changed.addAll(2, new Date(5), new Date(20), 43L);
+        Assertions.assertEquals(2, changed.getCount());
+        Assertions.assertNotEquals(marker.getTag(), changed.getTag());
+    }
+
+    @Test
+    public void when_noDatasetsAggregated_then_empty() {
+        DatasetChangeMarker marker = new DatasetChangeMarker();
+        marker.addAll(0, null, null, (Object) null);
+        Assertions.assertTrue(marker.isEmpty());
+    }
+
+    private DatasetChangeMarker createMarker(String label, Long unit) {
+        DatasetChangeMarker marker = new DatasetChangeMarker();
+        marker.add(new Date(0), new Date(1000), 1L, label, unit);
+        return marker;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Collections;
+
+import org.hibernate.Session;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.io.response.dataset.Data;
+import org.n52.io.response.dataset.bool.BooleanValue;
+import org.n52.series.db.DatasetDescriptor;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DefaultDbQueryFactory;
+
+public class AbstractDataRepositoryTest {
+
+    private static final DateTime FIRST_VALUE_AT = new DateTime("2020-01-01T00:00:00Z");
+
+    private static final DateTime LAST_VALUE_AT = new DateTime("2020-01-31T00:00:00Z");
+
+    private int observationQueries;
+
+    private Interval queriedBounds;
+
+    private BooleanDataRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository = new BooleanDataRepository() {
+
+            @Override
+            protected Data<BooleanValue> assembleData(Long dataset, DbQuery query, Session session) {
+                observationQueries++;
+                queriedBounds = query.getDataBounds();
+                return new Data<>();
+            }
+        };
+    }
+
+    @Test
+    public void when_timespanAfterLastValue_then_noObservationQuery() {
+        DbQuery query = createQuery("2020-02-01T00:00:00Z/2020-02-02T00:00:00Z", false);
+        Data<BooleanValue> data = repository.assembleWithinDataBounds(42L, createDataset(), query, null);
+        Assertions.assertTrue(data.getValues().isEmpty());
+        Assertions.assertEquals(0, observationQueries);
+    }
+
+    @Test
+    public void when_timespanOverlapsData_then_observationsQueriedWithinDataBounds() {
+        DbQuery query = createQuery("2019-12-01T00:00:00Z/2020-01-15T00:00:00Z", false);
+        repository.assembleWithinDataBounds(42L, createDataset(), query, null);
+        Assertions.assertEquals(1, observationQueries);
+        Assertions.assertEquals(new Interval(FIRST_VALUE_AT, LAST_VALUE_AT), queriedBounds);
+    }
+
+    @Test
+    public void when_referenceValuesRequested_then_observationsNotClippedToDatasetBounds() {
+        DatasetEntity dataset = createDataset();
+        dataset.setReferenceValues(Collections.singletonList(new DatasetEntity()));
+        DbQuery query = createQuery("2020-02-01T00:00:00Z/2020-02-02T00:00:00Z", true);
+        repository.assembleWithinDataBounds(42L, dataset, query, null);
+        // the referenced datasets may have data beyond the bounds of the dataset itself
+        Assertions.assertEquals(1, observationQueries);
+        Assertions.assertNull(queriedBounds);
+    }
+
+    @Test
+    public void when_timespanEndsBeyondDescriptorBounds_then_datasetLoaded() {
+        repository.setDatasetDescriptors(new DatasetDescriptorRegistry() {
+
+            @Override
+            public DatasetDescriptor get(Long id, Session session) {
+                return new DatasetDescriptor(id, null, null, null, FIRST_VALUE_AT.toDate(), LAST_VALUE_AT.toDate(),
+                                             false);
+            }
+        });
+        DbQuery within = createQuery("2019-12-01T00:00:00Z/2020-01-15T00:00:00Z", false);
+        Assertions.assertEquals(new Interval(FIRST_VALUE_AT, LAST_VALUE_AT),
+                                repository.getDescriptorBounds(42L, within, null));
+        // the descriptor's last value time may be outdated, only the loaded dataset tells
+        DbQuery after = createQuery("2020-02-01T00:00:00Z/2020-02-02T00:00:00Z", false);
+        Assertions.assertNull(repository.getDescriptorBounds(42L, after, null));
+        DbQuery overlapping = createQuery("2020-01-15T00:00:00Z/2020-02-15T00:00:00Z", false);
+        Assertions.assertNull(repository.getDescriptorBounds(42L, overlapping, null));
+    }
+
+    private DbQuery createQuery(String timespan, boolean expanded) {
+        return new DefaultDbQueryFactory().createFrom(IoParameters.createDefaults()
+                                                                  .extendWith(Parameters.TIMESPAN, timespan)
+                                                                  .extendWith(Parameters.EXPANDED,
+                                                                              Boolean.toString(expanded)));
+    }
+
+    private DatasetEntity createDataset() {
+        DatasetEntity dataset = new DatasetEntity();
+        dataset.setId(42L);
+        dataset.setFirstValueAt(FIRST_VALUE_AT.toDate());
+        dataset.setLastValueAt(LAST_VALUE_AT.toDate());
+        return dataset;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.io.response.dataset.DatasetOutput;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.PhenomenonEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.beans.ServiceEntity;
+import org.n52.series.db.beans.dataset.DatasetType;
+import org.n52.series.db.beans.dataset.ObservationType;
+import org.n52.series.db.beans.dataset.ValueType;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DefaultDbQueryFactory;
+
+public class DatasetRepositoryTest {
+
+    private final DatasetRepository<?> repository = new DatasetRepository<>();
+
+    @Test
+    public void when_partialProjection_then_condensedFromProjectedColumnsOnly() {
+        DbQuery query = new DefaultDbQueryFactory().createFrom(IoParameters.createDefaults()
+                                                                           .extendWith(Parameters.FILTER_FIELDS,
+                                                                                       "id,datasetType"));
+        DatasetOutput<?> output = repository.createCondensed(createProjectedDataset(), query);
+        Assertions.assertEquals("42", output.getId());
+        Assertions.assertEquals(DatasetType.timeseries.name(), output.getDatasetType());
+    }
+
+    @Test
+    public void when_labelProjected_then_labelFromParameters() {
+        DbQuery query = new DefaultDbQueryFactory().createFrom(IoParameters.createDefaults()
+                                                                           .extendWith(Parameters.FILTER_FIELDS,
+                                                                                       "id,label"));
+        DatasetEntity dataset = createProjectedDataset();
+        dataset.setPhenomenon(setName(new PhenomenonEntity(), "temperature"));
+        dataset.setProcedure(setName(new ProcedureEntity(), "sensor"));
+        dataset.setOffering(setName(new OfferingEntity(), "offering"));
+        dataset.setFeature(setName(new FeatureEntity(), "station"));
+        DatasetOutput<?> output = repository.createCondensed(dataset, query);
+        Assertions.assertEquals("temperature, sensor, station, offering", output.getLabel());
+    }
+
+    private <E extends DescribableEntity> E setName(E entity, String name) {
+        entity.setName(name);
+        return entity;
+    }
+
+    /**
+     * @return a dataset as the DAO's projection would create it, with the always projected columns only
+     */
+    private DatasetEntity createProjectedDataset() {
+        DatasetEntity dataset = new DatasetEntity();
+        dataset.setId(42L);
+        dataset.setDatasetType(DatasetType.timeseries);
+        dataset.setObservationType(ObservationType.simple);
+        dataset.setValueType(ValueType.quantity);
+        dataset.setService(new ServiceEntity());
+        return dataset;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.series.db.DatasetTypesMetadata;
+
+public class DatasetTypesMetadataCacheTest {
+
+    private final List<Collection<String>> loads = new ArrayList<>();
+
+    @Test
+    public void when_cached_then_loadOnlyMissing() {
+        DatasetTypesMetadataCache cache = createCache();
+        cache.getAll(Arrays.asList("1", "2"), this::load);
+        List<DatasetTypesMetadata> result = cache.getAll(Arrays.asList("2", "3", "1"), this::load);
+
+        Assertions.assertEquals(Arrays.asList("2", "3", "1"), toIds(result));
+        Assertions.assertEquals(2, loads.size());
+        Assertions.assertEquals(Arrays.asList("3"), new ArrayList<>(loads.get(1)));
+    }
+
+    @Test
+    public void when_allCached_then_noLoad() {
+        DatasetTypesMetadataCache cache = createCache();
+        cache.getAll(Arrays.asList("1", "2"), this::load);
+        cache.getAll(Arrays.asList("1", "2"), this::load);
+        Assertions.assertEquals(1, loads.size());
+    }
+
+    @Test
+    public void when_unknownDataset_then_omitted() {
+        DatasetTypesMetadataCache cache = createCache();
+        List<DatasetTypesMetadata> result = cache.getAll(Arrays.asList("1", "unknown"), this::load);
+        Assertions.assertEquals(Arrays.asList("1"), toIds(result));
+    }
+
+    @Test
+    public void when_disabled_then_alwaysLoad() {
+        DatasetTypesMetadataCache cache = new DatasetTypesMetadataCache();
+        cache.getAll(Arrays.asList("1"), this::load);
+        cache.getAll(Arrays.asList("1"), this::load);
+        Assertions.assertEquals(2, loads.size());
+    }
+
+    @Test
+    public void when_signatureChanged_then_reload() {
+        DatasetTypesMetadataCache cache = createCache();
+        cache.setCheckSeconds(-1);
+        cache.validate(() -> Arrays.asList(2L, 2L));
+        cache.getAll(Arrays.asList("1", "2"), this::load);
+        cache.validate(() -> Arrays.asList(2L, 2L));
+        cache.getAll(Arrays.asList("1", "2"), this::load);
+        Assertions.assertEquals(1, loads.size());
+
+        cache.validate(() -> Arrays.asList(1L, 2L));
+        cache.getAll(Arrays.asList("1", "2"), this::load);
+        Assertions.assertEquals(2, loads.size());
+    }
+
+    @Test
+    public void when_checkIntervalNotElapsed_then_noSignatureQuery() {
+        DatasetTypesMetadataCache cache = createCache();
+        List<String> queries = new ArrayList<>();
+        cache.validate(() -> {
+            queries.add("signature");
+            return Arrays.asList(2L, 2L);
+        });
+        cache.validate(() -> {
+            queries.add("signature");
+            return Arrays.asList(1L, 2L);
+        });
+        Assertions.assertEquals(1, queries.size());
+    }
+
+    private DatasetTypesMetadataCache createCache() {
+        DatasetTypesMetadataCache cache = new DatasetTypesMetadataCache();
+        cache.setEnabled(true);
+        return cache;
+    }
+
+    private List<DatasetTypesMetadata> load(Collection<String> datasets) {
+        loads.add(datasets);
+        return datasets.stream()
+                       .filter(id -> !"unknown".equals(id))
+                       .map(this::createMetadata)
+                       .collect(Collectors.toList());
+    }
+
+    private DatasetTypesMetadata createMetadata(String id) {
+        DatasetTypesMetadata metadata = new DatasetTypesMetadata();
+        metadata.setId(id);
+        return metadata;
+    }
+
+    private List<String> toIds(List<DatasetTypesMetadata> metadata) {
+        return metadata.stream()
+                       .map(DatasetTypesMetadata::getId)
+                       .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.spatial.criterion.SpatialFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.beans.GeometryEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DefaultDbQueryFactory;
+
+public class FeatureSpatialIndexTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private final List<Object[]> features = new ArrayList<>();
+
+    private List<Object> signature;
+
+    private int builds;
+
+    private FeatureSpatialIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new FeatureSpatialIndex() {
+
+            @Override
+            protected List<Object> getSignature(Session session) {
+                return signature;
+            }
+
+            @Override
+            protected List<Object[]> getGeometries(Session session) {
+                builds++;
+                return new ArrayList<>(features);
+            }
+        };
+        // check the signature on every access
+        index.setCheckSeconds(-1);
+        addFeature(1L, 7.5, 51.5);
+        addFeature(2L, 9.5, 53.5);
+        signature = Arrays.asList(2L, 2L, 1d);
+    }
+
+    @Test
+    public void when_queried_then_featuresWithinEnvelope() {
+        Assertions.assertEquals(Collections.singleton(1L), index.getFeatureIds(new Envelope(7, 8, 51, 52), null));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(1L, 2L)),
+                                index.getFeatureIds(new Envelope(7, 10, 51, 54), null));
+        Assertions.assertTrue(index.getFeatureIds(new Envelope(0, 1, 0, 1), null).isEmpty());
+        Assertions.assertEquals(1, builds);
+    }
+
+    @Test
+    public void when_signatureUnchanged_then_noRebuild() {
+        index.getFeatureIds(new Envelope(7, 8, 51, 52), null);
+        features.clear();
+        Assertions.assertEquals(Collections.singleton(1L), index.getFeatureIds(new Envelope(7, 8, 51, 52), null));
+        Assertions.assertEquals(1, builds);
+    }
+
+    @Test
+    public void when_geometryMoved_then_rebuiltOnChangedSignature() {
+        index.getFeatureIds(new Envelope(7, 8, 51, 52), null);
+        features.clear();
+        addFeature(1L, 0.5, 0.5);
+        addFeature(2L, 9.5, 53.5);
+        // same number and highest id, only the envelope checksum changes
+        signature = Arrays.asList(2L, 2L, 2d);
+        Assertions.assertTrue(index.getFeatureIds(new Envelope(7, 8, 51, 52), null).isEmpty());
+        Assertions.assertEquals(Collections.singleton(1L), index.getFeatureIds(new Envelope(0, 1, 0, 1), null));
+        Assertions.assertEquals(2, builds);
+    }
+
+    @Test
+    public void when_invalidated_then_rebuilt() {
+        index.getFeatureIds(new Envelope(7, 8, 51, 52), null);
+        index.invalidate();
+        index.getFeatureIds(new Envelope(7, 8, 51, 52), null);
+        Assertions.assertEquals(2, builds);
+    }
+
+    @Test
+    public void when_moreFeaturesThanMaxIds_then_geometryFilter() {
+        index.setMaxIds(1);
+        Assertions.assertEquals(Collections.singleton(1L), index.getFeatureIds(new Envelope(7, 8, 51, 52), null));
+        Set<Long> ids = index.getFeatureIds(new Envelope(7, 10, 51, 54), null);
+        Assertions.assertNull(ids);
+
+        IoParameters parameters = IoParameters.createDefaults().extendWith(Parameters.BBOX, "7,51,10,54");
+        DbQuery query = new DefaultDbQueryFactory().createFrom(parameters).setSpatialFeatureIds(ids);
+        Criterion filter = query.createFeatureSpatialFilter("f");
+        Assertions.assertTrue(filter instanceof SpatialFilter, filter.toString());
+    }
+
+    private void addFeature(Long id, double x, double y) {
+        GeometryEntity geometryEntity = new GeometryEntity();
+        geometryEntity.setGeometry(factory.createPoint(new Coordinate(x, y)));
+        features.add(new Object[] {id, geometryEntity});
+    }
+
+}
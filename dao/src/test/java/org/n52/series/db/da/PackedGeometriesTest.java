@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+public class PackedGeometriesTest {
+
+    private static final int POINTS = 100000;
+
+    @Test
+    public void when_creatingLineString_then_packedOrdinates() {
+        LineString line = PackedGeometries.createLineString(new double[] {1, 2, 3, 4}, "EPSG:4326");
+        Assertions.assertTrue(line.getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        Assertions.assertEquals(4326, line.getSRID());
+        Assertions.assertEquals(new Coordinate(3, 4), line.getCoordinateN(1));
+    }
+
+    @Test
+    public void when_convertingLineString_then_packedCopy() {
+        GeometryFactory factory = new GeometryFactory();
+        LineString line = factory.createLineString(new Coordinate[] {new Coordinate(0, 0), new Coordinate(1, 1)});
+        LineString packed = PackedGeometries.toLineString(line, null);
+        Assertions.assertTrue(packed.getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+        Assertions.assertTrue(line.equalsExact(packed));
+    }
+
+    @Test
+    public void when_lineStringPackedAlready_then_notCopied() {
+        LineString line = PackedGeometries.createLineString(new double[] {1, 2, 3, 4}, null);
+        Assertions.assertSame(line, PackedGeometries.toLineString(line, null));
+    }
+
+    @Test
+    public void when_decodingWkbWithPackedFactory_then_packedOrdinates() throws ParseException {
+        LineString line = PackedGeometries.createLineString(new double[] {1, 2, 3, 4, 5, 6}, "EPSG:4326");
+        byte[] wkb = new WKBWriter().write(line);
+        Geometry decoded = new WKBReader(PackedGeometries.getFactory("EPSG:4326")).read(wkb);
+        Assertions.assertTrue(decoded instanceof LineString);
+        Assertions.assertSame(decoded, PackedGeometries.toLineString(decoded, "EPSG:4326"));
+        Assertions.assertTrue(line.equalsExact(decoded));
+    }
+
+    @Test
+    public void when_buildingTrajectory_then_fractionOfPointPerSampleRetainedMemory() {
+        GeometryFactory factory = new GeometryFactory();
+
+        // as trajectories have been built before: a point per sample, collected before creating the line
+        long start = getRetainedBytes();
+        List<Point> points = new ArrayList<>(POINTS);
+        for (int i = 0; i < POINTS; i++) {
+            points.add(factory.createPoint(new Coordinate(i, i)));
+        }
+        long perSample = getRetainedBytes() - start;
+
+        start = getRetainedBytes();
+        double[] ordinates = new double[POINTS * 2];
+        for (int i = 0; i < POINTS; i++) {
+            ordinates[i * 2] = i;
+            ordinates[i * 2 + 1] = i;
+        }
+        LineString line = PackedGeometries.createLineString(ordinates, null);
+        long packed = getRetainedBytes() - start;
+
+        Assumptions.assumeTrue(packed > 0, "heap usage could not be measured");
+        Assertions.assertEquals(points.size(), line.getNumPoints());
+        Assertions.assertTrue(perSample >= 4 * packed, "point per sample: " + perSample + " bytes, packed: " + packed);
+    }
+
+    private long getRetainedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
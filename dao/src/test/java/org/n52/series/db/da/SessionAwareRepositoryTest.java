@@ -28,13 +28,26 @@
  */
 package org.n52.series.db.da;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.joda.time.DateTime;
 import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.GeometryEntity;
 import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DefaultDbQueryFactory;
 
 
 public class SessionAwareRepositoryTest {
@@ -95,6 +108,33 @@ public class SessionAwareRepositoryTest {
         assertTrue(testRepo.getOriginTimeZone("-05:00").getOffset(DateTime.now().getMillis()) == getOffsetFor(-5));
     }
 
+    @Test
+    public void when_nearestInMemory_then_rankedByGreatCircleDistance() {
+        SessionAwareRepository testRepo = new SessionAwareRepository() {
+
+            @Override
+            protected Geometry getGeometry(GeometryEntity geometryEntity, DbQuery query) {
+                return geometryEntity.getGeometry();
+            }
+        };
+        DbQuery query = new DefaultDbQueryFactory().createFrom(IoParameters.createDefaults()
+                                                                           .extendWith(Parameters.NEAR, "0,60"));
+        // closer in lon/lat degrees, but about 133 km away
+        Object[] north = createFeature(1L, 0, 61.2);
+        // farther in lon/lat degrees, but only about 83 km away at this latitude
+        Object[] east = createFeature(2L, 1.5, 60);
+        List<Object[]> features = Arrays.asList(north, east);
+        assertEquals(Collections.singletonList(2L),
+                     testRepo.getNearestInMemory(features, query.getNearFilter(), 1, query));
+        assertEquals(Arrays.asList(2L, 1L), testRepo.getNearestInMemory(features, query.getNearFilter(), 2, query));
+    }
+
+    private Object[] createFeature(Long id, double lon, double lat) {
+        GeometryEntity geometryEntity = new GeometryEntity();
+        geometryEntity.setGeometry(new GeometryFactory().createPoint(new Coordinate(lon, lat)));
+        return new Object[] {id, geometryEntity};
+    }
+
     private int getOffsetFor(int hours) {
         return 60*60*1000*hours;
     }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+public class SimplifiedGeometryCacheTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void when_resolutionsInSameBucket_then_sameTolerance() {
+        Assertions.assertEquals(4d, SimplifiedGeometryCache.toBucket(4d));
+        Assertions.assertEquals(4d, SimplifiedGeometryCache.toBucket(7.9));
+        Assertions.assertEquals(0.125, SimplifiedGeometryCache.toBucket(0.2));
+    }
+
+    @Test
+    public void when_simplifyingLine_then_collinearPointsRemoved() {
+        Geometry line = createLine();
+        Geometry simplified = SimplifiedGeometryCache.simplify(line, 0.5);
+        Assertions.assertEquals(2, simplified.getNumPoints());
+    }
+
+    @Test
+    public void when_simplifyingPoint_then_unchanged() {
+        Geometry point = factory.createPoint(new Coordinate(1, 2));
+        Assertions.assertSame(point, SimplifiedGeometryCache.simplify(point, 10));
+    }
+
+    @Test
+    public void when_cached_then_supplierCalledOnce() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache();
+        cache.setEnabled(true);
+        cache.get(1L, 2d, "EPSG:4326", this::load);
+        cache.get(1L, 2d, "EPSG:4326", this::load);
+        cache.get(1L, 4d, "EPSG:4326", this::load);
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void when_notEnabled_then_alwaysLoad() {
+        SimplifiedGeometryCache cache = new SimplifiedGeometryCache();
+        cache.get(1L, 2d, "EPSG:4326", this::load);
+        cache.get(1L, 2d, "EPSG:4326", this::load);
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    private Geometry load() {
+        loads.incrementAndGet();
+        return createLine();
+    }
+
+    private Geometry createLine() {
+        return factory.createLineString(new Coordinate[] {
+            new Coordinate(0, 0),
+            new Coordinate(1, 0.1),
+            new Coordinate(2, 0),
+            new Coordinate(3, 0.1),
+            new Coordinate(4, 0)
+        });
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.n52.web.exception.BadRequestException;
+
+public class VectorTileTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @Test
+    public void when_worldTile_then_originMapsToTileCenter() {
+        Geometry point = new VectorTile(0, 0, 0).toTileGeometry(factory.createPoint(new Coordinate(0, 0)));
+        Assertions.assertEquals(new Coordinate(2048, 2048), point.getCoordinate());
+    }
+
+    @Test
+    public void when_northWestQuadrant_then_envelopeCoversItWithBuffer() {
+        Envelope envelope = new VectorTile(1, 0, 0).getEnvelope();
+        Assertions.assertTrue(envelope.getMinX() == -180d);
+        Assertions.assertTrue(envelope.getMaxX() > 0d && envelope.getMaxX() < 10d);
+        Assertions.assertTrue(envelope.getMinY() < 0d && envelope.getMinY() > -10d);
+    }
+
+    @Test
+    public void when_outsideTile_then_noGeometry() {
+        VectorTile tile = new VectorTile(1, 0, 0);
+        Assertions.assertNull(tile.toTileGeometry(factory.createPoint(new Coordinate(90, -45))));
+    }
+
+    @Test
+    public void when_lineLeavesTile_then_clippedAtBuffer() {
+        VectorTile tile = new VectorTile(1, 0, 0);
+        Coordinate[] line = new Coordinate[] {new Coordinate(-90, 45), new Coordinate(90, 45)};
+        Envelope clipped = tile.toTileGeometry(factory.createLineString(line)).getEnvelopeInternal();
+        Assertions.assertEquals(4096d + VectorTile.DEFAULT_BUFFER, clipped.getMaxX());
+    }
+
+    @Test
+    public void when_invalidTile_then_badRequest() {
+        Assertions.assertThrows(BadRequestException.class, () -> new VectorTile(2, 4, 0));
+        Assertions.assertThrows(BadRequestException.class, () -> new VectorTile(-1, 0, 0));
+    }
+
+    @Test
+    public void when_encodingPoint_then_specExampleCommands() {
+        // example from the vector tile specification: MoveTo(25, 17)
+        VectorTileEncoder encoder = new VectorTileEncoder(4096);
+        encoder.addFeature("layer", 1L, Collections.emptyMap(), factory.createPoint(new Coordinate(25, 17)));
+        byte[] tile = encoder.encode();
+        Assertions.assertTrue(containsSequence(tile, new byte[] {0x22, 0x03, 0x09, 0x32, 0x22}));
+    }
+
+    @Test
+    public void when_noFeatures_then_emptyTile() {
+        VectorTileEncoder encoder = new VectorTileEncoder(4096);
+        encoder.addFeature("layer", 1L, Collections.emptyMap(), null);
+        Assertions.assertTrue(encoder.isEmpty());
+        Assertions.assertEquals(0, encoder.encode().length);
+    }
+
+    @Test
+    public void when_zigZag_then_signsInterleaved() {
+        Assertions.assertEquals(0, VectorTileEncoder.zigZag(0));
+        Assertions.assertEquals(1, VectorTileEncoder.zigZag(-1));
+        Assertions.assertEquals(2, VectorTileEncoder.zigZag(1));
+        Assertions.assertEquals(3, VectorTileEncoder.zigZag(-2));
+    }
+
+    private static boolean containsSequence(byte[] bytes, byte[] sequence) {
+        for (int i = 0; i <= bytes.length - sequence.length; i++) {
+            int j = 0;
+            while (j < sequence.length && bytes[i + j] == sequence[j]) {
+                j++;
+            }
+            if (j == sequence.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
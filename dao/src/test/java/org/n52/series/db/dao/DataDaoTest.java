@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.series.db.LatestValue;
+import org.n52.series.db.beans.BooleanDataEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.series.db.beans.dataset.ValueType;
+
+public class DataDaoTest {
+
+    @Test
+    public void when_multipleObservationsAtLastValueTime_then_latestResultTimeWins() {
+        List<Object[]> tuples = Arrays.asList(new Object[] {1L, new Date(100), new Date(10), BigDecimal.ONE},
+                                              new Object[] {1L, new Date(100), new Date(30), BigDecimal.TEN},
+                                              new Object[] {1L, new Date(100), new Date(20), BigDecimal.ZERO},
+                                              new Object[] {2L, new Date(200), null, "text"});
+        List<LatestValue> values = DataDao.toLatestValues(tuples);
+        Assertions.assertEquals(Arrays.asList(new LatestValue(1L, 100, BigDecimal.TEN),
+                                              new LatestValue(2L, 200, "text")),
+                                values);
+    }
+
+    @Test
+    public void when_resultTimeMissing_then_observationWithResultTimeWins() {
+        List<Object[]> tuples = Arrays.asList(new Object[] {1L, new Date(100), null, BigDecimal.ONE},
+                                              new Object[] {1L, new Date(100), new Date(10), BigDecimal.TEN});
+        Assertions.assertEquals(Collections.singletonList(new LatestValue(1L, 100, BigDecimal.TEN)),
+                                DataDao.toLatestValues(tuples));
+    }
+
+    @Test
+    public void when_valueMissing_then_omitted() {
+        List<Object[]> tuples = Collections.singletonList(new Object[] {1L, new Date(100), new Date(10), null});
+        Assertions.assertTrue(DataDao.toLatestValues(tuples).isEmpty());
+    }
+
+    @Test
+    public void when_valueTypeNotPlain_then_noValueEntityClass() {
+        Assertions.assertEquals(QuantityDataEntity.class, DataDao.getValueEntityClass(ValueType.quantity));
+        Assertions.assertNull(DataDao.getValueEntityClass(null));
+    }
+
+    @Test
+    public void when_booleanValueType_then_booleanValueEntityClass() {
+        Assertions.assertEquals(BooleanDataEntity.class, DataDao.getValueEntityClass(ValueType.bool));
+    }
+
+    @Test
+    public void when_booleanValuesAtLastValueTime_then_latestResultTimeWins() {
+        List<Object[]> tuples = Arrays.asList(new Object[] {1L, new Date(100), new Date(10), Boolean.TRUE},
+                                              new Object[] {1L, new Date(100), new Date(20), Boolean.FALSE});
+        Assertions.assertEquals(Collections.singletonList(new LatestValue(1L, 100, Boolean.FALSE)),
+                                DataDao.toLatestValues(tuples));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.series.db.beans.dataset.ValueType;
+import org.n52.series.db.dao.DatasetCatalogue.Dimension;
+import org.n52.series.db.dao.DatasetCatalogue.Snapshot;
+
+public class DatasetCatalogueTest {
+
+    private final Snapshot snapshot = Snapshot.builder()
+                                              .add(10, Dimension.PHENOMENON, 1L)
+                                              .add(10, Dimension.FEATURE, 100L)
+                                              .add(10, Dimension.VALUE_TYPE, ValueType.quantity)
+                                              .add(20, Dimension.PHENOMENON, 2L)
+                                              .add(20, Dimension.FEATURE, 101L)
+                                              .add(20, Dimension.FEATURE_PARENT, 100L)
+                                              .add(20, Dimension.VALUE_TYPE, ValueType.text)
+                                              .add(30, Dimension.PHENOMENON, 1L)
+                                              .add(30, Dimension.FEATURE, 102L)
+                                              .add(30, Dimension.VALUE_TYPE, ValueType.quantity)
+                                              .build();
+
+    @Test
+    public void when_singleDimension_then_unionOfValues() {
+        BitSet selected = snapshot.select(Dimension.PHENOMENON, Arrays.asList("1", "2"));
+        Assertions.assertEquals(setOf(10L, 20L, 30L), snapshot.toIds(selected));
+    }
+
+    @Test
+    public void when_multipleDimensions_then_intersection() {
+        Map<Dimension, Set<String>> filters = new EnumMap<>(Dimension.class);
+        filters.put(Dimension.PHENOMENON, Collections.singleton("1"));
+        filters.put(Dimension.VALUE_TYPE, Collections.singleton("quantity"));
+        filters.put(Dimension.FEATURE, Collections.singleton("102"));
+        Assertions.assertEquals(setOf(30L), snapshot.toIds(snapshot.select(filters, false)));
+    }
+
+    @Test
+    public void when_includeHierarchy_then_childrenMatchParent() {
+        Map<Dimension, Set<String>> filters = new EnumMap<>(Dimension.class);
+        filters.put(Dimension.FEATURE, Collections.singleton("100"));
+        Assertions.assertEquals(setOf(10L), snapshot.toIds(snapshot.select(filters, false)));
+        Assertions.assertEquals(setOf(10L, 20L), snapshot.toIds(snapshot.select(filters, true)));
+    }
+
+    @Test
+    public void when_unknownValue_then_noMatch() {
+        Assertions.assertTrue(snapshot.select(Dimension.PHENOMENON, Collections.singleton("42")).isEmpty());
+    }
+
+    @Test
+    public void when_datasetIds_then_positionsOfKnownIds() {
+        BitSet positions = snapshot.positionsOf(Arrays.asList("20", "40", "foo"));
+        Assertions.assertEquals(setOf(20L), snapshot.toIds(positions));
+    }
+
+    private static Set<Long> setOf(Long... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.PropertyProjection;
+import org.hibernate.criterion.SubqueryExpression;
+import org.hibernate.internal.CriteriaImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+
+public class DatasetFilterCompilerTest {
+
+    private final DbQueryFactory dbQueryFactory = new DefaultDbQueryFactory();
+
+    @Test
+    public void when_parameterFilters_then_singleDatasetSubquery() {
+        IoParameters parameters = IoParameters.createDefaults()
+                                              .extendWith(Parameters.FEATURES, "1,2")
+                                              .extendWith(Parameters.PROCEDURES, "3");
+        DbQuery query = dbQueryFactory.createFrom(parameters).setIncludeHierarchy(false);
+        DetachedCriteria filter = new DatasetFilterCompiler(query, null).withParameterFilters(true)
+                                                                        .compile("feature");
+        CriteriaImpl criteria = (CriteriaImpl) filter.getExecutableCriteria(null);
+        List<Criterion> criterions = new ArrayList<>();
+        criteria.iterateExpressionEntries()
+                .forEachRemaining(e -> criterions.add(((CriteriaImpl.CriterionEntry) e).getCriterion()));
+
+        Assertions.assertFalse(criteria.iterateSubcriteria().hasNext(), filter.toString());
+        Assertions.assertTrue(criterions.stream().noneMatch(SubqueryExpression.class::isInstance), filter.toString());
+        // the published filter
+        Assertions.assertEquals(1, criterions.stream().filter(Conjunction.class::isInstance).count(),
+                                filter.toString());
+        Assertions.assertTrue(contains(criterions, "feature.id in"), filter.toString());
+        Assertions.assertTrue(contains(criterions, "procedure.id in"), filter.toString());
+        Assertions.assertTrue(criteria.getProjection() instanceof PropertyProjection);
+        Assertions.assertEquals("feature.id", ((PropertyProjection) criteria.getProjection()).getPropertyName());
+    }
+
+    @Test
+    public void when_noParameterFilters_then_noParameterSubquery() {
+        DbQuery query = dbQueryFactory.createFrom(IoParameters.createDefaults());
+        DetachedCriteria filter = new DatasetFilterCompiler(query, null).compileParameterFilters("feature");
+        Assertions.assertNull(filter);
+    }
+
+    private static boolean contains(List<Criterion> criterions, String restriction) {
+        return criterions.stream().anyMatch(c -> c.toString().startsWith(restriction));
+    }
+
+}
@@ -28,8 +28,23 @@
  */
 package org.n52.series.db.dao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.InExpression;
+import org.joda.time.Interval;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.beans.dataset.ValueType;
 
 public class DbQueryTest {
 
@@ -40,4 +55,89 @@ public class DbQueryTest {
         Assertions.assertNotNull(dbQueryFactory.createFrom(null));
     }
 
+    @Test
+    public void when_noFieldsFilter_then_allFieldsSelected() {
+        DbQuery query = dbQueryFactory.createFrom(IoParameters.createDefaults());
+        Assertions.assertTrue(query.isSelected("label"));
+        Assertions.assertFalse(query.isSelectedOnly("id", "label"));
+    }
+
+    @Test
+    public void when_fieldsFilter_then_onlyGivenFieldsSelected() {
+        IoParameters parameters = IoParameters.createDefaults().extendWith(Parameters.FILTER_FIELDS, "id, Label");
+        DbQuery query = dbQueryFactory.createFrom(parameters);
+        Assertions.assertTrue(query.isSelected("label"));
+        Assertions.assertFalse(query.isSelected("domainId"));
+        Assertions.assertTrue(query.isSelectedOnly("id", "label", "domainId"));
+        Assertions.assertFalse(query.isSelectedOnly("id"));
+    }
+
+    @Test
+    public void when_spatialFeatureIdsResolved_then_featuresFilteredById() {
+        IoParameters parameters = IoParameters.createDefaults().extendWith(Parameters.BBOX, "7,51,8,52");
+        DbQuery query = dbQueryFactory.createFrom(parameters);
+        Assertions.assertFalse(query.createFeatureSpatialFilter("f") instanceof InExpression);
+        query.setSpatialFeatureIds(new HashSet<>(Arrays.asList(1L, 2L)));
+        Criterion filter = query.createFeatureSpatialFilter("f");
+        Assertions.assertTrue(filter instanceof InExpression, filter.toString());
+        Assertions.assertTrue(filter.toString().startsWith("f.id in"));
+    }
+
+    @Test
+    public void when_manySpatialFeatureIdsResolved_then_featuresFilteredByChunkedIds() {
+        IoParameters parameters = IoParameters.createDefaults().extendWith(Parameters.BBOX, "7,51,8,52");
+        DbQuery query = dbQueryFactory.createFrom(parameters);
+        query.setSpatialFeatureIds(LongStream.range(0, QueryUtils.MAX_IN_LIST_IDS + 1)
+                                             .boxed()
+                                             .collect(Collectors.toSet()));
+        Criterion filter = query.createFeatureSpatialFilter("f");
+        Assertions.assertTrue(filter instanceof Disjunction, filter.toString());
+        List<Criterion> chunks = new ArrayList<>();
+        ((Disjunction) filter).conditions().forEach(chunks::add);
+        Assertions.assertEquals(2, chunks.size());
+        Assertions.assertTrue(chunks.stream().allMatch(chunk -> chunk.toString().startsWith("f.id in")));
+    }
+
+    @Test
+    public void when_withParameters_then_stateCarriedOver() {
+        DbQuery query = dbQueryFactory.createFrom(IoParameters.createDefaults());
+        Interval bounds = new Interval(0, 1000);
+        ODataFilterCache cache = new ODataFilterCache();
+        query.setDatabaseSridCode("EPSG:25832");
+        query.setIncludeHierarchy(false)
+             .setResultValueTypes(Collections.singleton(ValueType.quantity))
+             .setODataFilterCache(cache)
+             .setDataBounds(bounds)
+             .setCoveredDatasetIds(Collections.singleton(1L))
+             .setCoveredTimespan(bounds)
+             .setSpatialFeatureIds(Collections.singleton(2L));
+
+        IoParameters parameters = IoParameters.createDefaults().extendWith(Parameters.FEATURES, "3,4");
+        DbQuery copy = query.withParameters(parameters);
+        Assertions.assertSame(parameters, copy.getParameters());
+        Assertions.assertEquals("EPSG:25832", copy.getDatabaseSridCode());
+        Assertions.assertFalse(copy.isIncludeHierarchy());
+        Assertions.assertEquals(query.getResultValueTypes(), copy.getResultValueTypes());
+        Assertions.assertSame(cache, copy.getODataFilterCache());
+        Assertions.assertEquals(bounds, copy.getDataBounds());
+        Assertions.assertEquals(query.getCoveredDatasetIds(), copy.getCoveredDatasetIds());
+        Assertions.assertEquals(bounds, copy.getCoveredTimespan());
+        Assertions.assertEquals(query.getSpatialFeatureIds(), copy.getSpatialFeatureIds());
+    }
+
+    @Test
+    public void when_invalidResolution_then_parseFailsButQueryIgnoresIt() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DbQuery.parseResolution("-1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DbQuery.parseResolution("abc"));
+        IoParameters parameters = IoParameters.createDefaults().extendWith(DbQuery.RESOLUTION, "abc");
+        Assertions.assertNull(dbQueryFactory.createFrom(parameters).getResolution());
+    }
+
+    @Test
+    public void when_toleranceGiven_then_resolution() {
+        IoParameters parameters = IoParameters.createDefaults().extendWith(DbQuery.TOLERANCE, "0.5");
+        Assertions.assertEquals(0.5, dbQueryFactory.createFrom(parameters).getResolution());
+        Assertions.assertNull(DbQuery.parseResolution("0"));
+    }
+
 }
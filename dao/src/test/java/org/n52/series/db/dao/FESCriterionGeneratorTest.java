@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+package org.n52.series.db.dao;
+
+import java.util.Collections;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.internal.CriteriaImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.series.db.beans.TextDataEntity;
+import org.n52.series.db.beans.dataset.ValueType;
+import org.n52.shetland.ogc.filter.ComparisonFilter;
+import org.n52.shetland.ogc.filter.FilterConstants.ComparisonOperator;
+
+public class FESCriterionGeneratorTest {
+
+    @Test
+    public void when_unparsableQuantityLiteral_then_dataCriterionMatchesNothing() {
+        DataFESCriterionGenerator generator = new DataFESCriterionGenerator(
+                new CriteriaImpl(DataEntity.class.getName(), null), false, false, false,
+                Collections.singleton(ValueType.quantity), DataEntity.class);
+        Criterion criterion = generator.create(resultFilter("abc"));
+        Assertions.assertEquals("0=1", criterion.toString());
+    }
+
+    @Test
+    public void when_unparsableQuantityLiteralOnQuantityEntity_then_dataCriterionMatchesNothing() {
+        DataFESCriterionGenerator generator = new DataFESCriterionGenerator(
+                new CriteriaImpl(QuantityDataEntity.class.getName(), null), false, false, false,
+                Collections.singleton(ValueType.quantity), QuantityDataEntity.class);
+        Criterion criterion = generator.create(resultFilter("abc"));
+        Assertions.assertEquals("0=1", criterion.toString());
+    }
+
+    @Test
+    public void when_unparsableQuantityLiteral_then_datasetCriterionMatchesNothing() {
+        DatasetFESCriterionGenerator generator = new DatasetFESCriterionGenerator(
+                new CriteriaImpl(DatasetEntity.class.getName(), null), false, false, false,
+                Collections.singleton(ValueType.quantity));
+        Criterion criterion = generator.create(resultFilter("abc"));
+        Assertions.assertEquals("0=1", criterion.toString());
+    }
+
+    @Test
+    public void when_parsableQuantityLiteral_then_subqueryCreated() {
+        DatasetFESCriterionGenerator generator = new DatasetFESCriterionGenerator(
+                new CriteriaImpl(DatasetEntity.class.getName(), null), false, false, false,
+                Collections.singleton(ValueType.quantity));
+        Criterion criterion = generator.create(resultFilter("5"));
+        Assertions.assertNotEquals("0=1", criterion.toString());
+    }
+
+    @Test
+    public void when_likeFilterTranslatedTwice_then_sameCriterion() {
+        ComparisonFilter filter = new ComparisonFilter(ComparisonOperator.PropertyIsLike, "om:result", "a*b?c");
+        filter.setWildCard("*");
+        filter.setSingleChar("?");
+        ODataFilterCache.ParsedFilter parsed = new ODataFilterCache.ParsedFilter(filter);
+
+        String first = createTextCriterion(parsed).toString();
+        String second = createTextCriterion(parsed).toString();
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals("a*b?c", filter.getValue());
+        Assertions.assertFalse(filter.isSetEscapeString());
+    }
+
+    private static Criterion createTextCriterion(ODataFilterCache.ParsedFilter parsed) {
+        try {
+            return new DataFESCriterionGenerator(new CriteriaImpl(TextDataEntity.class.getName(), null), false,
+                    false, false, Collections.singleton(ValueType.text), TextDataEntity.class)
+                    .create(parsed.getFilter());
+        } finally {
+            parsed.reset();
+        }
+    }
+
+    private static ComparisonFilter resultFilter(String value) {
+        return new ComparisonFilter(ComparisonOperator.PropertyIsEqualTo, "om:result", value);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IntervalIndexTest {
+
+    @Test
+    public void when_emptyIndex_then_noOverlaps() {
+        Assertions.assertTrue(IntervalIndex.empty().getOverlapping(0, 100).isEmpty());
+    }
+
+    @Test
+    public void when_touchingBounds_then_overlapping() {
+        IntervalIndex index = IntervalIndex.builder()
+                                           .add(1, 10, 20)
+                                           .add(2, 20, 30)
+                                           .add(3, 31, 40)
+                                           .build();
+        Assertions.assertEquals(setOf(1L, 2L), index.getOverlapping(15, 20));
+        Assertions.assertEquals(setOf(3L), index.getOverlapping(40, 50));
+        Assertions.assertTrue(index.getOverlapping(41, 50).isEmpty());
+    }
+
+    @Test
+    public void when_randomIntervals_then_sameAsLinearScan() {
+        Random random = new Random(42);
+        int size = 500;
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        IntervalIndex.Builder builder = IntervalIndex.builder();
+        for (int i = 0; i < size; i++) {
+            starts[i] = random.nextInt(10000);
+            ends[i] = starts[i] + random.nextInt(2000);
+            builder.add(i, starts[i], ends[i]);
+        }
+        IntervalIndex index = builder.build();
+        for (int q = 0; q < 200; q++) {
+            long start = random.nextInt(12000);
+            long end = start + random.nextInt(500);
+            Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                if (starts[i] <= end && ends[i] >= start) {
+                    expected.add((long) i);
+                }
+            }
+            Assertions.assertEquals(expected, index.getOverlapping(start, end));
+        }
+    }
+
+    private static Set<Long> setOf(Long... ids) {
+        Set<Long> set = new HashSet<>();
+        for (Long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.web.exception.BadRequestException;
+
+public class NearFilterTest {
+
+    @Test
+    public void when_noNear_then_noFilter() {
+        Assertions.assertNull(NearFilter.from(IoParameters.createDefaults()));
+    }
+
+    @Test
+    public void when_bboxLikeNear_then_noNearFilter() {
+        Assertions.assertFalse(NearFilter.isNearFilter("{\"center\":{}}"));
+        Assertions.assertFalse(NearFilter.isNearFilter(null));
+        Assertions.assertTrue(NearFilter.isNearFilter("7.6,51.9"));
+    }
+
+    @Test
+    public void when_nearWithoutLimit_then_defaultLimitAndUnboundedRadius() {
+        NearFilter near = NearFilter.from(IoParameters.createDefaults().extendWith(Parameters.NEAR, "7.6,51.9"));
+        Assertions.assertEquals(new Coordinate(7.6, 51.9), near.getCenter());
+        Assertions.assertEquals(NearFilter.DEFAULT_LIMIT, near.getLimit());
+        Assertions.assertNull(near.getRadius());
+        Assertions.assertNull(near.getEnvelope());
+    }
+
+    @Test
+    public void when_radius_then_envelopeEnclosesRadius() {
+        NearFilter near = NearFilter.from(IoParameters.createDefaults()
+                                                      .extendWith(Parameters.NEAR, "7.6,51.9")
+                                                      .extendWith(NearFilter.RADIUS, "10000"));
+        Envelope envelope = near.getEnvelope();
+        Assertions.assertTrue(near.isWithinRadius(new Coordinate(7.6, envelope.getMaxY() - 0.001)));
+        Assertions.assertFalse(near.isWithinRadius(new Coordinate(7.6, envelope.getMaxY() + 0.001)));
+        Assertions.assertTrue(near.isWithinRadius(new Coordinate(envelope.getMinX() + 0.001, 51.9)));
+    }
+
+    @Test
+    public void when_oneDegreeLatitude_then_about111Kilometers() {
+        NearFilter near = NearFilter.from(IoParameters.createDefaults().extendWith(Parameters.NEAR, "0,0"));
+        Assertions.assertEquals(111195d, near.distance(new Coordinate(0, 1)), 1d);
+    }
+
+    @Test
+    public void when_invalidNear_then_badRequest() {
+        IoParameters defaults = IoParameters.createDefaults();
+        Assertions.assertThrows(BadRequestException.class,
+            () -> NearFilter.from(defaults.extendWith(Parameters.NEAR, "7.6")));
+        Assertions.assertThrows(BadRequestException.class,
+            () -> NearFilter.from(defaults.extendWith(Parameters.NEAR, "200,51.9")));
+        IoParameters negativeRadius = defaults.extendWith(Parameters.NEAR, "7.6,51.9")
+                                              .extendWith(NearFilter.RADIUS, "-1");
+        Assertions.assertThrows(BadRequestException.class, () -> NearFilter.from(negativeRadius));
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.shetland.ogc.filter.ComparisonFilter;
+import org.n52.shetland.ogc.filter.FilterConstants.ComparisonOperator;
+
+public class ODataFilterCacheTest {
+
+    @Test
+    public void when_whitespaceDiffers_then_sameKey() {
+        Assertions.assertEquals(ODataFilterCache.normalize("result gt 5 and  phenomenonTime lt 2020"),
+                                ODataFilterCache.normalize("  result  gt 5\tand phenomenonTime lt 2020 "));
+    }
+
+    @Test
+    public void when_whitespaceInLiteral_then_keepLiteral() {
+        Assertions.assertEquals("result eq 'a  b'", ODataFilterCache.normalize("result  eq 'a  b'"));
+    }
+
+    @Test
+    public void when_valueReferenceRewritten_then_resetAfterTranslation() {
+        ComparisonFilter filter = new ComparisonFilter(ComparisonOperator.PropertyIsEqualTo, "om:result", "5");
+        ODataFilterCache.ParsedFilter parsed = new ODataFilterCache.ParsedFilter(filter);
+        filter.setValueReference("value");
+        parsed.reset();
+        Assertions.assertEquals("om:result", filter.getValueReference());
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.InExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class QueryUtilsTest {
+
+    @Test
+    public void when_fewIds_then_singleInList() {
+        Criterion criterion = QueryUtils.createChunkedIn("id", createIds(QueryUtils.MAX_IN_LIST_IDS));
+        Assertions.assertTrue(criterion instanceof InExpression, criterion.toString());
+    }
+
+    @Test
+    public void when_manyIds_then_chunkedInLists() {
+        Criterion criterion = QueryUtils.createChunkedIn("id", createIds(2 * QueryUtils.MAX_IN_LIST_IDS + 1));
+        Assertions.assertTrue(criterion instanceof Disjunction, criterion.toString());
+        List<Criterion> chunks = new ArrayList<>();
+        ((Disjunction) criterion).conditions().forEach(chunks::add);
+        Assertions.assertEquals(3, chunks.size());
+        Assertions.assertTrue(chunks.stream().allMatch(InExpression.class::isInstance));
+    }
+
+    private static List<Long> createIds(int count) {
+        return LongStream.range(0, count)
+                         .boxed()
+                         .collect(Collectors.toList());
+    }
+
+}
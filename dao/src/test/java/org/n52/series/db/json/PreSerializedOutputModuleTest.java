@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.json;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.response.FeatureOutput;
+import org.n52.io.response.ParameterOutput;
+import org.n52.io.response.PhenomenonOutput;
+import org.n52.io.response.ServiceOutput;
+import org.n52.io.response.dataset.DatasetParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator.Feature;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PreSerializedOutputModuleTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreSerializedOutputModuleTest.class);
+
+    private static final int DATASETS = 5000;
+
+    private static final int ITERATIONS = 20;
+
+    private static final int SHARED_OUTPUTS = 5 + 50 + 500;
+
+    @Test
+    public void when_outputsAreShared_then_sameJsonAsBeanSerialization() throws JsonProcessingException {
+        List<Map<String, Object>> listing = createListing();
+        String expected = createObjectMapper().writeValueAsString(listing);
+        ObjectMapper om = createObjectMapper().registerModule(new PreSerializedOutputModule(output -> true));
+        Assertions.assertEquals(expected, om.writeValueAsString(listing));
+        // second run is served from the cached fragments
+        Assertions.assertEquals(expected, om.writeValueAsString(listing));
+    }
+
+    @Test
+    public void when_outputsAreShared_then_encodedOnce() throws JsonProcessingException {
+        List<Map<String, Object>> listing = createListing();
+        AtomicInteger encoded = new AtomicInteger();
+        ObjectMapper om = createObjectMapper().registerModule(new PreSerializedOutputModule(output -> {
+            encoded.incrementAndGet();
+            return true;
+        }));
+        om.writeValueAsBytes(listing);
+        Assertions.assertEquals(SHARED_OUTPUTS, encoded.get());
+        om.writeValueAsBytes(listing);
+        Assertions.assertEquals(SHARED_OUTPUTS, encoded.get());
+    }
+
+    @Test
+    public void when_outputsAreNotShared_then_notCached() throws JsonProcessingException {
+        FeatureOutput feature = prepare(new FeatureOutput(), 1, "feature", IoParameters.createDefaults());
+        ObjectMapper om = createObjectMapper().registerModule(new PreSerializedOutputModule(output -> false));
+        String before = om.writeValueAsString(feature);
+        feature.setValue(ParameterOutput.LABEL, "changed", IoParameters.createDefaults(), feature::setLabel);
+        String after = om.writeValueAsString(feature);
+        Assertions.assertNotEquals(before, after);
+        Assertions.assertEquals(createObjectMapper().writeValueAsString(feature), after);
+    }
+
+    @Test
+    public void benchmark_datasetListing() throws JsonProcessingException {
+        List<Map<String, Object>> listing = createListing();
+        ObjectMapper plain = createObjectMapper();
+        // the listing's parameter outputs are shared between datasets, as if served by the condensed output cache
+        ObjectMapper fragments = createObjectMapper()
+                .registerModule(new PreSerializedOutputModule(output -> output instanceof ParameterOutput));
+        Assertions.assertArrayEquals(plain.writeValueAsBytes(listing), fragments.writeValueAsBytes(listing));
+        long plainMillis = measure(plain, listing);
+        long fragmentsMillis = measure(fragments, listing);
+        LOGGER.info("Serializing {} datasets {} times: plain Jackson {} ms, pre-serialized fragments {} ms",
+                DATASETS, ITERATIONS, plainMillis, fragmentsMillis);
+    }
+
+    private long measure(ObjectMapper om, List<Map<String, Object>> listing) throws JsonProcessingException {
+        // warm up serializers and fragment cache
+        om.writeValueAsBytes(listing);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < ITERATIONS; i++) {
+            om.writeValueAsBytes(listing);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private ObjectMapper createObjectMapper() {
+        return new ObjectMapper().setSerializationInclusion(Include.NON_NULL)
+                .configure(Feature.WRITE_BIGDECIMAL_AS_PLAIN, true);
+    }
+
+    private List<Map<String, Object>> createListing() {
+        IoParameters parameters = IoParameters.createDefaults();
+        List<ServiceOutput> services = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            services.add(prepare(new ServiceOutput(), i, "service", parameters));
+        }
+        List<PhenomenonOutput> phenomena = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            phenomena.add(prepare(new PhenomenonOutput(), i, "phenomenon", parameters));
+        }
+        List<FeatureOutput> features = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            features.add(prepare(new FeatureOutput(), i, "feature", parameters));
+        }
+
+        List<Map<String, Object>> listing = new ArrayList<>(DATASETS);
+        for (int i = 0; i < DATASETS; i++) {
+            DatasetParameters datasetParameters = new DatasetParameters();
+            datasetParameters.setService(services.get(i % services.size()));
+            datasetParameters.setPhenomenon(phenomena.get(i % phenomena.size()));
+
+            Map<String, Object> dataset = new LinkedHashMap<>();
+            dataset.put("id", Integer.toString(i));
+            dataset.put("label", "dataset " + i);
+            dataset.put("feature", features.get(i % features.size()));
+            dataset.put("parameters", datasetParameters);
+            listing.add(dataset);
+        }
+        return listing;
+    }
+
+    private <O extends ParameterOutput> O prepare(O output, int id, String label, IoParameters parameters) {
+        output.setId(Integer.toString(id));
+        output.setValue(ParameterOutput.LABEL, label + " " + id, parameters, output::setLabel);
+        output.setValue(ParameterOutput.DOMAIN_ID, label + "_" + id, parameters, output::setDomainId);
+        output.setValue(ParameterOutput.HREF_BASE, "http://localhost:8080/api", parameters, output::setHrefBase);
+        return output;
+    }
+
+}
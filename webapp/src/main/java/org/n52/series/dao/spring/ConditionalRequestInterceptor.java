@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.dao.spring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.DatasetChangeMarker;
+import org.n52.series.srv.DatasetAccessService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Answers conditional GET requests on dataset metadata, dataset data and dataset listings with
+ * {@code 304 Not Modified} when the dataset change markers are unchanged. The validators are computed by a
+ * single metadata query, so unchanged resources are neither loaded nor rendered. Only an entity tag is sent, as no
+ * modification time covers all fields the tag is derived from.
+ */
+public class ConditionalRequestInterceptor implements HandlerInterceptor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConditionalRequestInterceptor.class);
+
+    private static final Set<String> DATASET_COLLECTIONS = new HashSet<>(Arrays.asList("datasets",
+            "timeseries",
+            "individualObservations",
+            "trajectories",
+            "profiles"));
+
+    private static final Set<String> DATA_SUFFIXES = new HashSet<>(Arrays.asList("data", "getData", "observations"));
+
+    private final DatasetAccessService<?> datasetService;
+
+    public ConditionalRequestInterceptor(DatasetAccessService<?> datasetService) {
+        this.datasetService = datasetService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        try {
+            DatasetChangeMarker marker = getChangeMarker(request);
+            if (marker == null || marker.isEmpty()) {
+                return true;
+            }
+            ServletWebRequest webRequest = new ServletWebRequest(request, response);
+            return !webRequest.checkNotModified(createETag(marker, request));
+        } catch (RuntimeException e) {
+            // let the actual handler report invalid requests
+            LOGGER.debug("Could not evaluate conditional request '{}'.", request.getRequestURI(), e);
+            return true;
+        }
+    }
+
+    private DatasetChangeMarker getChangeMarker(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String[] segments = path.replaceAll("^/+|/+$", "").split("/+");
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (DATASET_COLLECTIONS.contains(segments[i])) {
+                int remaining = segments.length - i - 1;
+                if (remaining == 0) {
+                    return datasetService.getChangeMarker(createParameters(request));
+                } else if (remaining == 1 || remaining == 2 && DATA_SUFFIXES.contains(segments[i + 2])) {
+                    return datasetService.getChangeMarker(segments[i + 1], createParameters(request));
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private IoParameters createParameters(HttpServletRequest request) {
+        Map<String, String> query = new HashMap<>();
+        request.getParameterMap().forEach((k, v) -> {
+            if (v != null && v.length > 0) {
+                query.put(k, v[0]);
+            }
+        });
+        return IoParameters.createFromSingleValueMap(query);
+    }
+
+    private String createETag(DatasetChangeMarker marker, HttpServletRequest request) {
+        // the same marker is rendered differently depending on query and requested format
+        String tag = marker.getTag(request.getRequestURI(),
+                                   request.getQueryString(),
+                                   request.getHeader(HttpHeaders.ACCEPT),
+                                   request.getHeader(HttpHeaders.ACCEPT_LANGUAGE));
+        return "W/\"" + tag + "\"";
+    }
+
+}
@@ -28,13 +28,19 @@
  */
 package org.n52.series.dao.spring;
 
+import org.n52.series.db.da.CondensedOutputCache;
+import org.n52.series.db.json.PreSerializedOutputModule;
+import org.n52.series.srv.DatasetAccessService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.http.MediaType;
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewResolverRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
@@ -51,6 +57,19 @@ public class DefaultConfig implements WebMvcConfigurer {
     @Autowired(required = false)
     private ObjectMapper objectMapper;
 
+    @Value("${cache.json.fragments.enabled:false}")
+    private boolean jsonFragmentsEnabled;
+
+    @Autowired(required = false)
+    private CondensedOutputCache condensedOutputCache;
+
+    @Autowired(required = false)
+    @Qualifier("datasetService")
+    private DatasetAccessService<?> datasetService;
+
+    @Value("${request.conditional.enabled:false}")
+    private boolean conditionalRequestsEnabled;
+
     @Override
     public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
         configurer.defaultContentType(MediaType.APPLICATION_JSON)
@@ -58,6 +77,15 @@ public class DefaultConfig implements WebMvcConfigurer {
                   .useRegisteredExtensionsOnly(false);
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ResolutionParameterInterceptor());
+        registry.addInterceptor(new KeysetPaginationInterceptor());
+        if (conditionalRequestsEnabled && datasetService != null) {
+            registry.addInterceptor(new ConditionalRequestInterceptor(datasetService));
+        }
+    }
+
     @Override
     public void configureViewResolvers(ViewResolverRegistry registry) {
         View jsonView = createJsonView();
@@ -73,9 +101,13 @@ public class DefaultConfig implements WebMvcConfigurer {
     }
 
     private ObjectMapper getObjectMapper() {
-        return objectMapper == null
+        ObjectMapper mapper = objectMapper == null
                 ? createDefaultObjectMapper()
                 : objectMapper;
+        // register on a copy, the autowired mapper is shared with other views
+        return jsonFragmentsEnabled && condensedOutputCache != null && condensedOutputCache.isEnabled()
+                ? mapper.copy().registerModule(new PreSerializedOutputModule(condensedOutputCache::isShared))
+                : mapper;
     }
 
     private ObjectMapper createDefaultObjectMapper() {
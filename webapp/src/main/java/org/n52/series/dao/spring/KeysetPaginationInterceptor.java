@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.dao.spring;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.n52.io.request.Parameters;
+import org.n52.io.response.ParameterOutput;
+import org.n52.series.db.dao.KeysetCursor;
+import org.n52.series.db.dao.NearFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Adds a {@code Link: <...>; rel="next"} header to limited listings. The link carries a keyset cursor which
+ * encodes the id of the last item of the current page (see {@link KeysetCursor}). Listings filtered by
+ * {@code near} are ordered by distance rather than by id and are never paged, so they get no link.
+ */
+public class KeysetPaginationInterceptor implements HandlerInterceptor {
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+            ModelAndView modelAndView) {
+        Integer limit = getLimit(request);
+        if (modelAndView == null || limit == null || NearFilter.isNearFilter(request.getParameter(Parameters.NEAR))) {
+            return;
+        }
+        for (Object value : modelAndView.getModel().values()) {
+            if (value instanceof Collection && ((Collection<?>) value).size() >= limit) {
+                Long lastId = getLastId((Collection<?>) value);
+                if (lastId != null) {
+                    response.addHeader(HttpHeaders.LINK, "<" + createNextLink(request, lastId) + ">; rel=\"next\"");
+                }
+                return;
+            }
+        }
+    }
+
+    private Integer getLimit(HttpServletRequest request) {
+        String limit = request.getParameter(Parameters.LIMIT);
+        try {
+            int value = limit != null ? Integer.parseInt(limit) : 0;
+            return value > 0 ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Long getLastId(Collection<?> items) {
+        Object last = items instanceof List
+                ? ((List<?>) items).get(items.size() - 1)
+                : items.stream().reduce((first, second) -> second).orElse(null);
+        if (last instanceof ParameterOutput) {
+            try {
+                return Long.parseLong(((ParameterOutput) last).getId());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private String createNextLink(HttpServletRequest request, Long lastId) {
+        return ServletUriComponentsBuilder.fromRequest(request)
+                .replaceQueryParam(Parameters.OFFSET)
+                .replaceQueryParam(KeysetCursor.PARAMETER, KeysetCursor.after(lastId).encode())
+                .build()
+                .toUriString();
+    }
+
+}
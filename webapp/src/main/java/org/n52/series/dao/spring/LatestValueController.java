@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.dao.spring;
+
+import java.util.List;
+import java.util.Map;
+
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.LatestValue;
+import org.n52.series.srv.DatasetAccessService;
+import org.n52.web.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the latest value of each matching dataset as compact tuples of dataset id, timestamp (epoch
+ * milliseconds) and value, e.g. {@code /latest-values?phenomena=1}. The usual dataset filter parameters apply.
+ * Datasets without plain values (profiles, records) are omitted.
+ */
+@RestController
+public class LatestValueController {
+
+    @Autowired(required = false)
+    @Qualifier("datasetService")
+    private DatasetAccessService<?> datasetService;
+
+    @GetMapping(value = "/latest-values", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<LatestValue> getLatestValues(@RequestParam Map<String, String> query) {
+        if (datasetService == null) {
+            throw new ResourceNotFoundException("Latest values are not available.");
+        }
+        return datasetService.getLatestValues(IoParameters.createFromSingleValueMap(query));
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.dao.spring;
+
+import java.util.List;
+import java.util.Map;
+
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.StationCluster;
+import org.n52.series.db.da.StationRepository;
+import org.n52.series.db.dao.DbQueryFactory;
+import org.n52.web.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves stations clustered by grid cells for zoomed-out map views, e.g.
+ * {@code /clusters/stations?bbox=...&zoom=4}. The usual filter parameters (phenomena, platforms, ...) apply.
+ */
+@RestController
+@RequestMapping("/clusters")
+public class StationClusterController {
+
+    @Autowired(required = false)
+    private StationRepository stationRepository;
+
+    @Autowired(required = false)
+    private DbQueryFactory dbQueryFactory;
+
+    @GetMapping(value = "/stations", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<StationCluster> getStationClusters(@RequestParam Map<String, String> query) {
+        if (stationRepository == null || dbQueryFactory == null) {
+            throw new ResourceNotFoundException("Station clusters are not available.");
+        }
+        IoParameters parameters = IoParameters.createFromSingleValueMap(query);
+        return stationRepository.getClusters(dbQueryFactory.createFrom(parameters));
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.dao.spring;
+
+import java.util.Map;
+
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.da.VectorTileEncoder;
+import org.n52.series.db.da.VectorTileRepository;
+import org.n52.web.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves stations and platform tracks as Mapbox Vector Tiles, e.g. {@code /tiles/stations/{z}/{x}/{y}.mvt}.
+ * The usual filter parameters (phenomena, platforms, ...) apply.
+ */
+@RestController
+@RequestMapping("/tiles")
+public class VectorTileController {
+
+    @Autowired(required = false)
+    private VectorTileRepository vectorTileRepository;
+
+    @GetMapping(value = "/stations/{z}/{x}/{y}.mvt", produces = VectorTileEncoder.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getStationTile(@PathVariable("z") int z,
+                                                 @PathVariable("x") int x,
+                                                 @PathVariable("y") int y,
+                                                 @RequestParam Map<String, String> query) {
+        return createResponse(getRepository().getStationTile(z, x, y, IoParameters.createFromSingleValueMap(query)));
+    }
+
+    @GetMapping(value = "/tracks/{z}/{x}/{y}.mvt", produces = VectorTileEncoder.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getTrackTile(@PathVariable("z") int z,
+                                               @PathVariable("x") int x,
+                                               @PathVariable("y") int y,
+                                               @RequestParam Map<String, String> query) {
+        return createResponse(getRepository().getTrackTile(z, x, y, IoParameters.createFromSingleValueMap(query)));
+    }
+
+    private VectorTileRepository getRepository() {
+        if (vectorTileRepository == null) {
+            throw new ResourceNotFoundException("Vector tiles are not available.");
+        }
+        return vectorTileRepository;
+    }
+
+    private ResponseEntity<byte[]> createResponse(byte[] tile) {
+        return tile.length == 0
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.ok(tile);
+    }
+
+}